@@ -0,0 +1,243 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The ActionJournal writes every action in one game to an append-only file, so the game can be replayed
+ * later for crash recovery or to check what happened (see JournalReplay).<p>
+ * The file is memory-mapped: recording an action only copies a few bytes into memory and the operating system
+ * writes them to disk in the background, so the game never waits on the disk between turns.<p>
+ * File layout: a header (MAGIC, VERSION) followed by records. Each record is a type byte, a 4 byte body length
+ * (2 bytes before version 5, which capped snapshots of big worlds at 64 KB), and the body.
+ * A START record holds the seed, mode, name, world seed (if the game is on a WorldMap), the
+ * fingerprints of the mode's shop prices and town odds (see ItemCatalog.getFingerprint() and
+ * TownOdds.getFingerprint()) and the draws made while setting up the first town.
+ * An ACTION record holds the choice (OTHER_CHOICE for anything but a single ASCII character), the item traded
+ * at the shop or the Direction moved on the world map (if any) and every draw made during the action.
+ * A SNAPSHOT record holds a saved game that was loaded (see TreasureHunter.saveGame()).
+ * Each draw is a kind byte (GameRandom.DOUBLE_DRAW or INT_DRAW) followed by an 8 or 4 byte value.
+ * The type byte is written last, so a record cut off by a crash reads as the end of the journal.
+ */
+
+public class ActionJournal implements Closeable {
+    // constants
+    public static final int MAGIC = 0x54484A31; // "THJ1"
+    public static final byte VERSION = 5; // version 3 journals, without fingerprints, and version 4 still replay
+    public static final byte END = 0;
+    public static final byte START = 1;
+    public static final byte ACTION = 2;
+    public static final byte SNAPSHOT = 3;
+    public static final byte NO_ITEM = 0; // items and directions are stored as (ordinal + 1)
+    public static final byte OTHER_CHOICE = '?'; // any choice that isn't a single ASCII character
+    public static final int HEADER_SIZE = 5;
+    public static final int RECORD_HEADER_SIZE = 5;
+    private static final int INITIAL_MAP_SIZE = 64 * 1024;
+
+    // instance variables
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private ByteBuffer record; // the record being built, copied into the map when it is finished
+    private ByteBuffer draws; // the draws made during the record being built
+    private int drawCount;
+    private byte recordType;
+
+    /**
+     * Creates a new journal file, replacing any old file with the same name.
+     *
+     * @param file The journal file.
+     * @throws IOException If the file can't be created.
+     */
+    public ActionJournal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_MAP_SIZE);
+        map.putInt(MAGIC);
+        map.put(VERSION);
+        record = ByteBuffer.allocate(256);
+        draws = ByteBuffer.allocate(256);
+        recordType = END;
+    }
+
+    /**
+     * Starts the START record. Draws made until endRecord() is called are added to it.
+     *
+     * @param seed The game's seed.
+     * @param mode The game's mode.
+     * @param name The hunter's name.
+     * @param worldSeed The seed of the game's world map, or null if the game has none.
+     */
+    public void beginStart(long seed, GameMode mode, String name, Long worldSeed) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        beginRecord(START);
+        if (record.capacity() < 36 + nameBytes.length) {
+            record = ByteBuffer.allocate(36 + nameBytes.length);
+        }
+        record.putLong(seed);
+        record.put((byte) mode.ordinal());
+        record.putShort((short) nameBytes.length);
+        record.put(nameBytes);
+        if (worldSeed == null) {
+            record.put((byte) 0);
+        } else {
+            record.put((byte) 1);
+            record.putLong(worldSeed);
+        }
+        record.putLong(ItemCatalog.current().getFingerprint(mode));
+        record.putLong(TownOdds.forMode(mode).getFingerprint());
+    }
+
+    /**
+     * Starts an ACTION record. Draws made until endRecord() is called are added to it.
+     *
+     * @param choice The player's menu choice.
+     */
+    public void beginAction(String choice) {
+        beginRecord(ACTION);
+        if (choice.length() == 1 && choice.charAt(0) < 0x80) {
+            record.put((byte) choice.charAt(0));
+        } else {
+            record.put(OTHER_CHOICE);
+        }
+    }
+
+    /**
+     * Appends a SNAPSHOT record for a saved game that was just loaded.
+     *
+     * @param snapshot The saved game.
+     * @throws IOException If the journal file needs to grow and can't.
+     */
+    public void recordSnapshot(byte[] snapshot) throws IOException {
+        beginRecord(SNAPSHOT);
+        if (record.capacity() < snapshot.length) {
+            record = ByteBuffer.allocate(snapshot.length);
+        }
+        record.put(snapshot);
+        endRecord();
+    }
+
+    /**
+     * Records the item traded at the shop during the current action.
+     *
+     * @param item The item the player agreed to buy or sell, or null if they didn't trade.
+     */
+    public void recordTrade(String item) {
+        Item traded = null;
+        if (item != null) {
+            traded = Item.fromName(item);
+        }
+        if (traded == null) {
+            record.put(NO_ITEM);
+        } else {
+            record.put((byte) (traded.ordinal() + 1));
+        }
+    }
+
+    /**
+     * Records the way the hunter headed when moving on the world map during the current action.
+     *
+     * @param direction The way the hunter headed.
+     */
+    public void recordDirection(Direction direction) {
+        record.put((byte) (direction.ordinal() + 1));
+    }
+
+    /**
+     * Adds a random draw to the current record.
+     *
+     * @param kind GameRandom.DOUBLE_DRAW or GameRandom.INT_DRAW.
+     * @param value The draw's raw value.
+     */
+    public void recordDraw(byte kind, long value) {
+        if (recordType == END) {
+            return;
+        }
+        if (draws.remaining() < 9) {
+            draws = grow(draws);
+        }
+        draws.put(kind);
+        if (kind == GameRandom.DOUBLE_DRAW) {
+            draws.putLong(value);
+        } else {
+            draws.putInt((int) value);
+        }
+        drawCount++;
+    }
+
+    /**
+     * Finishes the current record and appends it to the journal.
+     *
+     * @throws IOException If the journal file needs to grow and can't.
+     */
+    public void endRecord() throws IOException {
+        if (recordType == END) {
+            return;
+        }
+        if (recordType == ACTION && record.position() == 1) {
+            // not a shop action, so nothing was traded
+            record.put(NO_ITEM);
+        }
+
+        draws.flip();
+        int bodyLength = record.position() + 2 + draws.remaining();
+        ensureRoom(RECORD_HEADER_SIZE + bodyLength);
+
+        int recordStart = map.position();
+        map.position(recordStart + 1);
+        map.putInt(bodyLength);
+        record.flip();
+        map.put(record);
+        map.putShort((short) drawCount);
+        map.put(draws);
+        // the type goes in last, so a half-written record is never read
+        map.put(recordStart, recordType);
+
+        recordType = END;
+    }
+
+    /**
+     * Writes everything to disk and trims the unused end of the file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        map.force();
+        channel.truncate(map.position());
+        channel.close();
+    }
+
+    private void beginRecord(byte type) {
+        recordType = type;
+        record.clear();
+        draws.clear();
+        drawCount = 0;
+    }
+
+    /**
+     * Maps a bigger part of the file when the next record won't fit.
+     *
+     * @param size The size of the next record.
+     * @throws IOException If the file can't grow.
+     */
+    private void ensureRoom(int size) throws IOException {
+        if (map.remaining() >= size + 1) {
+            return;
+        }
+        int position = map.position();
+        long newSize = Math.max((long) map.capacity() * 2, position + size + 1);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        map.position(position);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+}
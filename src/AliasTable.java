@@ -0,0 +1,113 @@
+/**
+ * The AliasTable picks an index at random according to a set of weights, in constant time.<p>
+ * It uses Vose's alias method: the table is built once from the weights, and each pick then costs
+ * one random number, one multiply and one comparison, no matter how many choices there are.
+ */
+
+public class AliasTable {
+    // instance variables
+    private final double[] probability;
+    private final int[] alias;
+    private final double[] chances; // the weights scaled to add up to 1
+
+    /**
+     * Builds the table.
+     *
+     * @param weights How likely each index is; they don't need to add up to 1.
+     * @throws IllegalArgumentException If there are no weights, a weight is negative, or they are all 0.
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        double total = 0;
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be positive numbers");
+            }
+            total += weight;
+        }
+        if (n == 0 || total <= 0) {
+            throw new IllegalArgumentException("At least one weight must be more than 0");
+        }
+
+        probability = new double[n];
+        alias = new int[n];
+        chances = new double[n];
+        for (int i = 0; i < n; i++) {
+            chances[i] = weights[i] / total;
+        }
+
+        // scale the weights so the average is 1, then pair each small column with a large one
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // whatever is left is (up to rounding) exactly full
+        while (largeCount > 0) {
+            int more = large[--largeCount];
+            probability[more] = 1;
+            alias[more] = more;
+        }
+        while (smallCount > 0) {
+            int less = small[--smallCount];
+            probability[less] = 1;
+            alias[less] = less;
+        }
+    }
+
+    /**
+     * Picks an index.
+     *
+     * @param random The game's random number generator; exactly one draw is made.
+     * @return An index into the weights the table was built from.
+     */
+    public int sample(GameRandom random) {
+        int n = probability.length;
+        double roll = random.nextDouble() * n;
+        int column = (int) roll;
+        if (column >= n) {
+            column = n - 1;
+        }
+        if (roll - column < probability[column]) {
+            return column;
+        }
+        return alias[column];
+    }
+
+    /**
+     * @param index An index into the weights the table was built from.
+     * @return The chance that sample() picks the index.
+     */
+    public double getChance(int index) {
+        return chances[index];
+    }
+
+    /**
+     * @return The number of indexes the table picks from.
+     */
+    public int size() {
+        return probability.length;
+    }
+}
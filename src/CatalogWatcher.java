@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * The CatalogWatcher reloads the ItemCatalog whenever its file is saved, so prices can be
+ * retuned while long simulations are running.<p>
+ * It runs on a daemon thread, so it never keeps the program alive on its own.
+ */
+
+public class CatalogWatcher implements Runnable {
+    // instance variables
+    private Path file;
+    private WatchService watcher;
+
+    /**
+     * Starts watching a catalog file.
+     *
+     * @param file The catalog file.
+     * @return The watcher, which is already running.
+     * @throws IOException If the file's folder can't be watched.
+     */
+    public static CatalogWatcher start(Path file) throws IOException {
+        CatalogWatcher catalogWatcher = new CatalogWatcher(file.toAbsolutePath());
+        Thread thread = new Thread(catalogWatcher, "catalog-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return catalogWatcher;
+    }
+
+    private CatalogWatcher(Path file) throws IOException {
+        this.file = file;
+        watcher = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Waits for changes to the folder and reloads the catalog when the file changes.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+
+                if (changed) {
+                    try {
+                        ItemCatalog.reload(file);
+                        System.err.println("Reloaded " + file.getFileName());
+                    } catch (IOException | IllegalArgumentException e) {
+                        // keep playing with the old prices until the file is fixed
+                        System.err.println("Couldn't reload " + file.getFileName() + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
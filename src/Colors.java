@@ -18,4 +18,31 @@ public static final String RESET = "\033[0m"; // Reset
 
             public static final String WHITE = "\033[0;37m";  // WHITE
 
+            /**
+             * Removes the ANSI color codes from some text, for players who turned colors off.
+             *
+             * @param text Text that may contain color codes.
+             * @return The text without any color codes.
+             */
+            public static String strip(String text) {
+                if (text.indexOf('\033') < 0) {
+                    return text;
+                }
+
+                StringBuilder plain = new StringBuilder(text.length());
+                boolean inCode = false;
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '\033') {
+                        inCode = true;
+                    } else if (inCode) {
+                        // color codes end with an 'm'
+                        inCode = (c != 'm');
+                    } else {
+                        plain.append(c);
+                    }
+                }
+                return plain.toString();
+            }
+
 }
\ No newline at end of file
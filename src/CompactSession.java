@@ -0,0 +1,235 @@
+import java.nio.ByteBuffer;
+
+/**
+ * A CompactSession is a game that nobody is playing at this moment, kept in as little memory as possible so
+ * a server can hold a great many of them. A live TreasureHunter, with its Town, TownVisit, Shop, Hunter,
+ * Messages and output streams, takes tens of kilobytes; a CompactSession is one small object of primitive fields.<p>
+ * The hunter's kit and treasures are the packed ints from Hunter, the terrain, treasure and mode are enum ordinals,
+ * and the town's news is the number of its MessageTemplate (see Messages.newsId()) and the values for its gaps.
+ * The hunter's name is the only String. Games on a WorldMap also keep the world's saved bytes.<p>
+ * A request plays a session by loading it into a TreasureHunter with TreasureHunter.loadGame(CompactSession),
+ * which can be any game that isn't busy (so a few of them can serve every session), and saving it back with
+ * TreasureHunter.saveGame(CompactSession) afterwards. The getters let a session be shown without loading it.
+ */
+
+public final class CompactSession {
+    // constants
+    private static final Item[] ITEMS = Item.values();
+    private static final Terrain[] TERRAINS = Terrain.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+    private static final GameMode[] MODES = GameMode.values();
+    private static final int GAME_WON = 1;
+    private static final int TOUGH_TOWN = 2;
+    private static final int SEARCHED = 4;
+    private static final int DUGGED = 8;
+    private static final byte NONE = -1; // for news without an item, terrain or treasure
+
+    // instance variables
+    private long seed;
+    private long randomState;
+    private long townId;
+    private String hunterName;
+    private byte[] world; // the saved WorldMap, or null if every move makes a new town
+    private int turns;
+    private int gold;
+    private int kit;
+    private int treasures;
+    private int newsGold;
+    private byte mode;
+    private byte kitSize;
+    private byte flags;
+    private byte terrain;
+    private byte townTreasure;
+    private byte news;
+    private byte newsItem;
+    private byte newsTerrain;
+    private byte newsTreasure;
+
+    /**
+     * Keeps the game's own state: its mode, seed, random numbers, turns and whether it has been won.
+     */
+    void setGame(GameMode mode, long seed, long randomState, int turns, boolean gameWon) {
+        this.mode = (byte) mode.ordinal();
+        this.seed = seed;
+        this.randomState = randomState;
+        this.turns = turns;
+        flags = (byte) (gameWon ? GAME_WON : 0);
+    }
+
+    /**
+     * Keeps the hunter. Call this after setGame().
+     */
+    void setHunter(Hunter hunter) {
+        hunterName = hunter.getHunterName();
+        gold = hunter.getGold();
+        kit = hunter.getKitBits();
+        kitSize = (byte) hunter.getKitSize();
+        treasures = hunter.getTreasureSlots();
+    }
+
+    /**
+     * Keeps the town the hunter is in, and its news. Call this after setGame().
+     */
+    void setTown(Town town, Message townNews) {
+        terrain = (byte) town.getTerrain().ordinal();
+        townTreasure = (byte) town.getTreasure().ordinal();
+        if (town.isToughTown()) {
+            flags |= TOUGH_TOWN;
+        }
+        if (town.isSearched()) {
+            flags |= SEARCHED;
+        }
+        if (town.isDugged()) {
+            flags |= DUGGED;
+        }
+        news = (byte) Messages.newsId(townNews.getTemplate());
+        newsGold = townNews.getGold();
+        newsItem = townNews.getItem() == null ? NONE : (byte) townNews.getItem().ordinal();
+        newsTerrain = townNews.getTerrain() == null ? NONE : (byte) townNews.getTerrain().ordinal();
+        newsTreasure = townNews.getTreasure() == null ? NONE : (byte) townNews.getTreasure().ordinal();
+    }
+
+    /**
+     * Keeps the world map and where the hunter is on it.
+     *
+     * @param world The game's world, or null if every move makes a new town.
+     * @param townId The hunter's town on the world.
+     */
+    void setWorld(WorldMap world, long townId) {
+        this.townId = townId;
+        if (world == null) {
+            this.world = null;
+        } else {
+            ByteBuffer save = ByteBuffer.allocate(world.getSavedSize());
+            world.writeTo(save);
+            this.world = new byte[save.position()];
+            save.flip();
+            save.get(this.world);
+        }
+    }
+
+    /**
+     * Puts the saved news back into a town's news.
+     *
+     * @param townNews The news of the town the game was loaded into.
+     */
+    void restoreNews(Message townNews) {
+        townNews.set(Messages.newsTemplate(news)).name(hunterName).gold(newsGold);
+        townNews.item(newsItem == NONE ? null : ITEMS[newsItem]);
+        townNews.terrain(newsTerrain == NONE ? null : TERRAINS[newsTerrain]);
+        townNews.treasure(newsTreasure == NONE ? null : TREASURES[newsTreasure]);
+    }
+
+    /**
+     * @return The saved world, ready to be read with WorldMap.readFrom(), or null if there is no world.
+     */
+    ByteBuffer getSavedWorld() {
+        if (world == null) {
+            return null;
+        }
+        return ByteBuffer.wrap(world);
+    }
+
+    // accessors
+    public GameMode getMode() {
+        return MODES[mode];
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getRandomState() {
+        return randomState;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public boolean isGameWon() {
+        return (flags & GAME_WON) != 0;
+    }
+
+    /**
+     * @return true if the game has ended by winning or by running out of gold.
+     */
+    public boolean isGameOver() {
+        return isGameWon() || gold < 0;
+    }
+
+    public String getHunterName() {
+        return hunterName;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+    public int getKitBits() {
+        return kit;
+    }
+
+    public int getKitSize() {
+        return kitSize;
+    }
+
+    public int getTreasureSlots() {
+        return treasures;
+    }
+
+    public Terrain getTerrain() {
+        return TERRAINS[terrain];
+    }
+
+    public Treasure getTownTreasure() {
+        return TREASURES[townTreasure];
+    }
+
+    public boolean isToughTown() {
+        return (flags & TOUGH_TOWN) != 0;
+    }
+
+    public boolean isSearched() {
+        return (flags & SEARCHED) != 0;
+    }
+
+    public boolean isDugged() {
+        return (flags & DUGGED) != 0;
+    }
+
+    /**
+     * @return Whether the town has been searched and dug, as Town.getVisitFlags() gives them.
+     */
+    public int getVisitFlags() {
+        return (flags & (SEARCHED | DUGGED)) >> 1;
+    }
+
+    /**
+     * @return true if the game is played on a world map.
+     */
+    public boolean hasWorld() {
+        return world != null;
+    }
+
+    public long getTownId() {
+        return townId;
+    }
+
+    /**
+     * Builds the town's news, the way Town.getLatestNews() would.
+     *
+     * @return The news.
+     */
+    public String getLatestNews() {
+        Message message = new Message(Messages.NONE);
+        restoreNews(message);
+        return message.getText();
+    }
+
+    public String toString() {
+        String str = hunterName + " (" + getMode() + ") turn " + turns + ": " + gold + " gold, ";
+        str += Hunter.getTreasureCount(treasures) + " treasures, in " + getTerrain();
+        return str;
+    }
+}
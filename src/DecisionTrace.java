@@ -0,0 +1,233 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The DecisionTrace writes every random decision made in traced sessions to a text file, so a disputed outcome
+ * ("I had boots and still couldn't cross") can be checked roll by roll.<p>
+ * Tracing is switched on for one session at a time by giving its game a SessionTrace from forSession()
+ * (see TreasureHunter.setTrace()); a game without one only pays for a null check at each decision.<p>
+ * Recording never waits: records go into a fixed set of ring buffers, picked by session, which any thread can
+ * add to without locks, and a background thread drains every buffer to the file a few times a second. A session
+ * always uses the same buffer, so its lines stay in order even when its requests run on different threads, and
+ * the memory used doesn't grow with the number of threads. If a buffer fills up before it is drained, new
+ * records are dropped and counted (see getDropped()) rather than slowing the game down.<p>
+ * Each line is: session, event, roll, the chance the roll had to beat, and the outcome, separated by tabs,
+ * e.g. "17 TROUBLE 0.4128 0.66 found". Events without a roll show "-" for both.
+ */
+
+public class DecisionTrace implements Closeable {
+    // constants
+    public static final int DEFAULT_BUFFER_SIZE = 4096; // records per buffer
+    private static final long DRAIN_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final TraceEvent[] EVENTS = TraceEvent.values();
+
+    // instance variables
+    private final TraceBuffer[] buffers;
+    private final int bufferMask;
+    private final BufferedWriter writer;
+    private final Thread drainer;
+    private volatile boolean closed;
+    private volatile long written; // only changed by the drainer, and by close() once it has stopped
+
+    /**
+     * Creates a trace file, replacing any old file with the same name, and starts draining to it.
+     * There are twice as many buffers as processors, rounded up to a power of 2.
+     *
+     * @param file The trace file.
+     * @param bufferSize The number of records each buffer can hold before they are drained; a power of 2.
+     * @throws IOException If the file can't be created.
+     */
+    public DecisionTrace(Path file, int bufferSize) throws IOException {
+        if (Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("The buffer size must be a power of 2: " + bufferSize);
+        }
+        int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+        buffers = new TraceBuffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = new TraceBuffer(bufferSize);
+        }
+        bufferMask = count - 1;
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        drainer = new Thread(this::drainUntilClosed, "decision-trace");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * @param sessionId The number the session's lines start with.
+     * @return A SessionTrace that records the session's decisions here.
+     */
+    public SessionTrace forSession(long sessionId) {
+        return new SessionTrace(this, sessionId);
+    }
+
+    /**
+     * Records one decision in the session's buffer.
+     *
+     * @param sessionId The session the decision was made in.
+     * @param event What was decided.
+     * @param roll The roll, or NaN if the decision didn't need one.
+     * @param chance The chance the roll had to beat, or NaN if the decision didn't need a roll.
+     * @param outcome The outcome (see TraceEvent).
+     */
+    public void record(long sessionId, TraceEvent event, double roll, double chance, int outcome) {
+        // mix the id so sessions numbered one after another spread over the buffers
+        int buffer = (int) ((sessionId * 0x9E3779B97F4A7C15L) >>> 40) & bufferMask;
+        buffers[buffer].add(sessionId, event, roll, chance, outcome);
+    }
+
+    /**
+     * @return The number of lines written to the file so far.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return The number of records dropped because a buffer was full.
+     */
+    public long getDropped() {
+        long dropped = 0;
+        for (TraceBuffer buffer : buffers) {
+            dropped += buffer.dropped.get();
+        }
+        return dropped;
+    }
+
+    /**
+     * Stops the drainer, writes everything still in the buffers and closes the file. Decisions recorded
+     * after this are lost.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        writer.close();
+    }
+
+    private void drainUntilClosed() {
+        while (!closed) {
+            LockSupport.parkNanos(DRAIN_NANOS);
+            try {
+                drain();
+            } catch (IOException e) {
+                System.err.println("Couldn't write the decision trace: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes out every buffer.
+     */
+    private void drain() throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        long lines = 0;
+        for (TraceBuffer buffer : buffers) {
+            lines += buffer.drainTo(writer, line);
+        }
+        written += lines;
+        writer.flush();
+    }
+
+    /**
+     * A ring of records that any thread adds to and the drainer takes from, without locks.
+     * Each record takes four longs: the session, the event and outcome, and the bits of the roll and the chance.
+     * Each slot also has a sequence number: a thread may write the record numbered n into a slot whose
+     * sequence is n, and marks it as written by setting the sequence to n + 1; the drainer frees the slot
+     * for the record one lap later by setting it to n + size.
+     */
+    private static class TraceBuffer {
+        private final long[] records;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong claimed; // records claimed by the threads adding them
+        private long taken; // records drained, only touched by the drainer
+        private final AtomicLong dropped;
+
+        TraceBuffer(int size) {
+            records = new long[size * 4];
+            sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                sequences.set(i, i);
+            }
+            mask = size - 1;
+            claimed = new AtomicLong();
+            taken = 0;
+            dropped = new AtomicLong();
+        }
+
+        void add(long sessionId, TraceEvent event, double roll, double chance, int outcome) {
+            long next;
+            int index;
+            while (true) {
+                next = claimed.get();
+                index = (int) (next & mask);
+                long sequence = sequences.get(index);
+                if (sequence < next) {
+                    // the slot still holds a record from the last lap that hasn't been drained
+                    dropped.incrementAndGet();
+                    return;
+                } else if (sequence == next && claimed.compareAndSet(next, next + 1)) {
+                    break;
+                }
+                // another thread claimed the slot first, so try the next one
+            }
+            int slot = index * 4;
+            records[slot] = sessionId;
+            records[slot + 1] = ((long) event.ordinal() << 32) | (outcome & 0xFFFFFFFFL);
+            records[slot + 2] = Double.doubleToRawLongBits(roll);
+            records[slot + 3] = Double.doubleToRawLongBits(chance);
+            sequences.lazySet(index, next + 1); // the record is written before the drainer can see it
+        }
+
+        /**
+         * Writes out every record up to the first one that hasn't been finished yet. Only called by the drainer.
+         *
+         * @return The number of lines written.
+         */
+        long drainTo(BufferedWriter writer, StringBuilder line) throws IOException {
+            long first = taken;
+            long next = first;
+            while (true) {
+                int index = (int) (next & mask);
+                if (sequences.get(index) != next + 1) {
+                    break;
+                }
+                int slot = index * 4;
+                TraceEvent event = EVENTS[(int) (records[slot + 1] >>> 32)];
+                double roll = Double.longBitsToDouble(records[slot + 2]);
+                double chance = Double.longBitsToDouble(records[slot + 3]);
+                line.setLength(0);
+                line.append(records[slot]).append('\t').append(event).append('\t');
+                if (Double.isNaN(roll)) {
+                    line.append("-\t-");
+                } else {
+                    line.append(roll).append('\t').append(chance);
+                }
+                line.append('\t').append(event.describe((int) records[slot + 1])).append('\n');
+                writer.append(line);
+                sequences.lazySet(index, next + mask + 1); // the slot can be reused
+                next++;
+            }
+            taken = next;
+            return next - first;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * The Direction enum lists the ways a hunter can head out of a town on the WorldMap.
+ */
+
+public enum Direction {
+    NORTH("n", 0, 1),
+    EAST("e", 1, 0),
+    SOUTH("s", 0, -1),
+    WEST("w", -1, 0);
+
+    // instance variables
+    private final String input;
+    private final int dx;
+    private final int dy;
+
+    /**
+     * @param input The letter the player types.
+     * @param dx How far east the next town is.
+     * @param dy How far north the next town is.
+     */
+    Direction(String input, int dx, int dy) {
+        this.input = input;
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    // accessors
+    public String getInput() {
+        return input;
+    }
+
+    public int getDx() {
+        return dx;
+    }
+
+    public int getDy() {
+        return dy;
+    }
+
+    /**
+     * Converts the player's answer to the direction prompt into a direction.
+     *
+     * @param input The player's (lower case) answer, e.g. "n" or "north".
+     * @return The matching Direction, or null if the answer isn't a direction.
+     */
+    public static Direction fromInput(String input) {
+        for (Direction direction : values()) {
+            if (input.equals(direction.input) || input.equals(direction.name().toLowerCase())) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.PrintStream;
+
+/**
+ * The FrameRenderer draws the main menu screen: the latest news, the hunter, the town and the list of choices.<p>
+ * The whole screen is built in one reusable buffer and written with a single print and flush, instead of a
+ * dozen separate println calls. The menu text is built once, with and without the save choices. The news and
+ * town lines are only rebuilt when they have changed since the last screen, and the Hunter keeps its own
+ * summary until it changes.<p>
+ * With color turned off, no ANSI color codes are written at all.
+ */
+
+public class FrameRenderer {
+    // constants
+    private static final String MOVES = "(B)uy something at the shop.\n"
+            + "(S)ell something at the shop.\n"
+            + "(M)ove on to a different town.\n"
+            + "(L)ook for trouble!\n"
+            + "(H)unt for treasure!\n"
+            + "(D)ig for gold!\n";
+    private static final String SAVES = "Sa(V)e your game.\n"
+            + "(R)eload your saved game.\n";
+    private static final String EXIT = "Give up the hunt and e(X)it.\n"
+            + "\n"
+            + "What's your next move? ";
+    private static final String MENU = MOVES + SAVES + EXIT;
+    private static final String MENU_WITHOUT_SAVES = MOVES + EXIT;
+
+    // instance variables
+    private PrintStream out;
+    private boolean color;
+    private StringBuilder frame;
+    private String menu;
+
+    // what was drawn last time, so unchanged lines aren't rebuilt
+    private String lastNews;
+    private String newsText;
+    private Terrain lastTerrain;
+    private String townText;
+
+    /**
+     * @param out Where the screens are written.
+     * @param color Whether to include the ANSI color codes.
+     */
+    public FrameRenderer(PrintStream out, boolean color) {
+        this.out = out;
+        this.color = color;
+        frame = new StringBuilder(1024);
+        menu = MENU;
+    }
+
+    /**
+     * @param saving Whether the menu offers saving and loading the game.
+     */
+    public void setSaving(boolean saving) {
+        menu = saving ? MENU : MENU_WITHOUT_SAVES;
+    }
+
+    /**
+     * Draws the menu screen.
+     *
+     * @param news The town's latest news.
+     * @param hunter The hunter.
+     * @param town The town the hunter is in.
+     */
+    public void render(String news, Hunter hunter, Town town) {
+        if (news != lastNews) {
+            lastNews = news;
+            newsText = color ? news : Colors.strip(news);
+        }
+
+        // the same Town is reused as the hunter moves, but the description only depends on the terrain
+        if (town.getTerrain() != lastTerrain) {
+            lastTerrain = town.getTerrain();
+            townText = town.getDescription(color);
+        }
+
+        frame.setLength(0);
+        frame.append('\n');
+        frame.append(newsText).append('\n');
+        frame.append("***\n");
+        frame.append(hunter.getSummary(color)).append('\n');
+        frame.append(townText).append('\n');
+        frame.append(menu);
+        out.append(frame);
+        out.flush();
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GameMetrics counts what happens in every game played in this JVM (see Metric) and how long each kind
+ * of action takes.<p>
+ * Counting is a LongAdder increment and timing is a LatencyHistogram record, so the many games of a
+ * simulator or server can count at the same time without slowing each other down. Timing costs two clock
+ * reads per action, which is a noticeable share of a headless action, so batch tools that only care about
+ * throughput can turn it off with setTiming(false); the counts are always kept. The totals can be
+ * printed as text, JSON or in the Prometheus text format (see MetricsReporter).
+ */
+
+public class GameMetrics {
+    // constants
+    private static final Metric[] METRICS = Metric.values();
+    private static final String[] ACTIONS = {"buy", "sell", "move", "trouble", "hunt", "dig", "quit", "other"};
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String PREFIX = "treasurehunter_";
+
+    // static variables
+    private static final LongAdder[] counts = new LongAdder[METRICS.length];
+    private static final LatencyHistogram[] latencies = new LatencyHistogram[ACTIONS.length];
+    private static volatile boolean timing = true;
+
+    static {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Counts one event.
+     *
+     * @param metric What happened.
+     */
+    public static void count(Metric metric) {
+        counts[metric.ordinal()].increment();
+    }
+
+    /**
+     * @param metric An event.
+     * @return How many times it has happened.
+     */
+    public static long get(Metric metric) {
+        return counts[metric.ordinal()].sum();
+    }
+
+    /**
+     * @param on Whether actions are timed.
+     */
+    public static void setTiming(boolean on) {
+        timing = on;
+    }
+
+    /**
+     * @return true if actions are timed.
+     */
+    public static boolean isTiming() {
+        return timing;
+    }
+
+    /**
+     * Times one action.
+     *
+     * @param choice The menu choice that was carried out.
+     * @param nanos How long it took, in nanoseconds.
+     */
+    public static void recordAction(String choice, long nanos) {
+        latencies[actionFor(choice)].record(nanos);
+    }
+
+    /**
+     * @param action One of "buy", "sell", "move", "trouble", "hunt", "dig", "quit" or "other".
+     * @return The times taken by that kind of action.
+     */
+    public static LatencyHistogram getLatency(String action) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                return latencies[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown action " + action);
+    }
+
+    /**
+     * Sets every count and time back to zero.
+     */
+    public static void reset() {
+        for (LongAdder count : counts) {
+            count.reset();
+        }
+        for (LatencyHistogram latency : latencies) {
+            latency.reset();
+        }
+    }
+
+    /**
+     * @return Every count, then the number, average, 99th percentile and longest time of each kind of action.
+     */
+    public static String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Metric metric : METRICS) {
+            text.append(String.format(Locale.ROOT, "%-20s %d%n", metric.getKey(), get(metric)));
+        }
+        for (int i = 0; i < ACTIONS.length; i++) {
+            LatencyHistogram latency = latencies[i];
+            text.append(String.format(Locale.ROOT, "%-8s actions %9d  mean %8.0f ns  p99 %8d ns  max %10d ns%n",
+                    ACTIONS[i], latency.getCount(), latency.getMean(), latency.getValueAtQuantile(0.99),
+                    latency.getMax()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return Every count and time as a JSON object, with the times in nanoseconds.
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        for (int i = 0; i < METRICS.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(METRICS[i].getKey()).append("\":").append(get(METRICS[i]));
+        }
+        json.append("},\"actions\":{");
+        for (int i = 0; i < ACTIONS.length; i++) {
+            LatencyHistogram latency = latencies[i];
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(ACTIONS[i]).append("\":{\"count\":").append(latency.getCount())
+                    .append(",\"mean_ns\":").append(String.format(Locale.ROOT, "%.1f", latency.getMean()));
+            for (double quantile : QUANTILES) {
+                json.append(",\"p").append(quantileLabel(quantile)).append("_ns\":")
+                        .append(latency.getValueAtQuantile(quantile));
+            }
+            json.append(",\"max_ns\":").append(latency.getMax()).append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * @return Every count and time in the Prometheus text format: a counter for each Metric and a summary
+     *         of each kind of action's time, in seconds.
+     */
+    public static String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        for (Metric metric : METRICS) {
+            String name = PREFIX + metric.getKey() + "_total";
+            text.append("# HELP ").append(name).append(' ').append(metric.getHelp()).append('\n');
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(get(metric)).append('\n');
+        }
+
+        String name = PREFIX + "action_duration_seconds";
+        text.append("# HELP ").append(name).append(" Time taken to carry out a menu choice\n");
+        text.append("# TYPE ").append(name).append(" summary\n");
+        for (int i = 0; i < ACTIONS.length; i++) {
+            LatencyHistogram latency = latencies[i];
+            for (double quantile : QUANTILES) {
+                text.append(name).append("{action=\"").append(ACTIONS[i]).append("\",quantile=\"").append(quantile)
+                        .append("\"} ").append(seconds(latency.getValueAtQuantile(quantile))).append('\n');
+            }
+            text.append(name).append("_sum{action=\"").append(ACTIONS[i]).append("\"} ")
+                    .append(seconds(latency.getTotal())).append('\n');
+            text.append(name).append("_count{action=\"").append(ACTIONS[i]).append("\"} ")
+                    .append(latency.getCount()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return The index of the kind of action a menu choice is.
+     */
+    private static int actionFor(String choice) {
+        if (choice.length() != 1) {
+            return ACTIONS.length - 1;
+        }
+        switch (choice.charAt(0)) {
+            case 'b':
+                return 0;
+            case 's':
+                return 1;
+            case 'm':
+                return 2;
+            case 'l':
+                return 3;
+            case 'h':
+                return 4;
+            case 'd':
+                return 5;
+            case 'x':
+                return 6;
+            default:
+                return ACTIONS.length - 1;
+        }
+    }
+
+    /**
+     * @return A quantile as a percentile label, e.g. "50" for 0.5 and "999" for 0.999.
+     */
+    static String quantileLabel(double quantile) {
+        String digits = String.valueOf(quantile).substring(2);
+        if (digits.length() == 1) {
+            digits += "0";
+        }
+        return digits;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
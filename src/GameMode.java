@@ -0,0 +1,89 @@
+/**
+ * The GameMode enum holds the difficulty settings for a single game of Treasure Hunter.<p>
+ * Each game keeps its own mode, so several games can run side by side without affecting each other.
+ */
+
+public enum GameMode {
+    EASY(30, 1, 0.25, 7),
+    NORMAL(10, 0.5, 0.4, 7),
+    HARD(10, 0.25, 0.75, 7),
+    SAMURAI(10, 0.5, 0.4, 8),
+    TEST(100, 0.5, 0.4, 7);
+
+    // instance variables
+    private final int startingGold;
+    private final double markdown;
+    private final double toughness;
+    private final int kitSize;
+
+    /**
+     * Sets the settings for the mode.
+     *
+     * @param startingGold The gold the hunter starts with.
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param toughness Chance that a town is a tough town.
+     * @param kitSize The number of items the hunter can carry.
+     */
+    GameMode(int startingGold, double markdown, double toughness, int kitSize) {
+        this.startingGold = startingGold;
+        this.markdown = markdown;
+        this.toughness = toughness;
+        this.kitSize = kitSize;
+    }
+
+    // accessors
+    public int getStartingGold() {
+        return startingGold;
+    }
+
+    public double getMarkdown() {
+        return markdown;
+    }
+
+    public double getToughness() {
+        return toughness;
+    }
+
+    public int getKitSize() {
+        return kitSize;
+    }
+
+    /**
+     * In easy mode the hunter's items never break when crossing terrain.
+     *
+     * @return true if items can break in this mode.
+     */
+    public boolean itemsCanBreak() {
+        return this != EASY;
+    }
+
+    /**
+     * The sword is only sold in samurai mode.
+     *
+     * @return true if this is samurai mode.
+     */
+    public boolean isSamurai() {
+        return this == SAMURAI;
+    }
+
+    /**
+     * Converts the player's answer to the mode prompt into a mode.
+     * Anything that isn't recognized is treated as normal mode.
+     *
+     * @param input The player's (lower case) answer.
+     * @return The matching GameMode.
+     */
+    public static GameMode fromInput(String input) {
+        if (input.equals("e")) {
+            return EASY;
+        } else if (input.equals("h")) {
+            return HARD;
+        } else if (input.equals("s")) {
+            return SAMURAI;
+        } else if (input.equals("test")) {
+            return TEST;
+        } else {
+            return NORMAL;
+        }
+    }
+}
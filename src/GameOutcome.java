@@ -0,0 +1,39 @@
+/**
+ * A GameOutcome is how a finished game turned out: whether it was won, lost or given up,
+ * how many turns it took and how much gold the hunter ended with.
+ */
+
+public final class GameOutcome {
+    // instance variables
+    private final GameResult result;
+    private final int turns;
+    private final int gold;
+
+    /**
+     * @param result How the game ended.
+     * @param turns The number of turns played.
+     * @param gold The hunter's gold at the end.
+     */
+    public GameOutcome(GameResult result, int turns, int gold) {
+        this.result = result;
+        this.turns = turns;
+        this.gold = gold;
+    }
+
+    // accessors
+    public GameResult getResult() {
+        return result;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+    public String toString() {
+        return result + " after " + turns + " turns with " + gold + " gold";
+    }
+}
@@ -0,0 +1,57 @@
+import java.io.PrintStream;
+
+/**
+ * The GamePool keeps finished headless games so they can be reset and played again, instead of creating
+ * a new game, Hunter, Town and Shop for every one.<p>
+ * Every thread keeps its own finished game, so taking and giving back games never waits on other threads.
+ * A game must be given back by the thread that took it, and must not be used after it has been given back.
+ */
+
+public class GamePool {
+    // instance variables
+    private PrintStream out;
+    private ThreadLocal<TreasureHunter> idle;
+
+    /**
+     * @param out Where the games' messages are printed.
+     */
+    public GamePool(PrintStream out) {
+        this.out = out;
+        idle = new ThreadLocal<TreasureHunter>();
+    }
+
+    /**
+     * Takes this thread's finished game, or creates one if it has none. Call start() on it to begin.
+     *
+     * @param seed The seed for the game's random numbers.
+     * @return A headless game that hasn't started yet.
+     */
+    public TreasureHunter acquire(long seed) {
+        TreasureHunter game = idle.get();
+        if (game == null) {
+            return new TreasureHunter(out, seed);
+        }
+        idle.set(null);
+        game.reset(seed);
+        return game;
+    }
+
+    /**
+     * Gives a finished game back to the pool, to be reused by this thread. If this thread already has a
+     * finished game waiting, the game is dropped.
+     *
+     * @param game A game taken from this pool by this thread.
+     */
+    public void release(TreasureHunter game) {
+        if (idle.get() == null) {
+            idle.set(game);
+        }
+    }
+
+    /**
+     * @return Whether this thread has a finished game waiting to be reused.
+     */
+    public boolean hasIdleGame() {
+        return idle.get() != null;
+    }
+}
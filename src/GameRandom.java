@@ -0,0 +1,208 @@
+/**
+ * The GameRandom class is the source of every random draw in a game.<p>
+ * Normally it draws from a seeded generator and, if the game has an ActionJournal, writes each result to it.
+ * The generator is the same SplitMix64 algorithm as java.util.SplittableRandom and gives exactly the same numbers
+ * for the same seed, but its whole state is one long, so it can be saved and restored (see getState()).
+ * When a journal is replayed it instead hands back the recorded results in order, so a replayed game
+ * rolls exactly what the original game rolled.
+ */
+
+public class GameRandom {
+    // constants
+    public static final byte DOUBLE_DRAW = 'D';
+    public static final byte INT_DRAW = 'I';
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    // instance variables
+    private long state;
+    private boolean replaying;
+    private ActionJournal journal;
+    private SessionTrace trace; // null unless the game's decisions are being traced
+
+    // recorded draws waiting to be replayed
+    private byte[] replayKinds;
+    private long[] replayValues;
+    private int replayStart;
+    private int replayEnd;
+
+    /**
+     * Creates a random source that draws from a seeded generator.
+     *
+     * @param seed The game's seed.
+     */
+    public GameRandom(long seed) {
+        state = seed;
+        replaying = false;
+    }
+
+    /**
+     * Creates a random source that only hands back draws queued with queueDraw(), for replaying a journal.
+     *
+     * @return The replaying random source.
+     */
+    public static GameRandom replaying() {
+        GameRandom replay = new GameRandom(0);
+        replay.replaying = true;
+        replay.replayKinds = new byte[16];
+        replay.replayValues = new long[16];
+        return replay;
+    }
+
+    /**
+     * @return The generator's state, which is all that's needed to carry on with the same numbers.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * @param state A state from getState().
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * @param journal The journal every draw is written to, or null to stop recording.
+     */
+    public void setJournal(ActionJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return Where the decisions made with this game's draws are traced, or null if they aren't.
+     */
+    public SessionTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param trace Where the decisions made with this game's draws are traced, or null to stop tracing.
+     */
+    public void setTrace(SessionTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return A random number from 0 (inclusive) to 1 (exclusive).
+     */
+    public double nextDouble() {
+        if (replaying) {
+            return Double.longBitsToDouble(nextReplayed(DOUBLE_DRAW));
+        }
+
+        double value = (nextLong() >>> 11) * DOUBLE_UNIT;
+        if (journal != null) {
+            journal.recordDraw(DOUBLE_DRAW, Double.doubleToRawLongBits(value));
+        }
+        return value;
+    }
+
+    /**
+     * @param bound The upper limit (exclusive).
+     * @return A random whole number from 0 (inclusive) to bound (exclusive).
+     */
+    public int nextInt(int bound) {
+        if (replaying) {
+            return (int) nextReplayed(INT_DRAW);
+        }
+
+        int value = nextBoundedInt(bound);
+        if (journal != null) {
+            journal.recordDraw(INT_DRAW, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return The next 64 random bits.
+     */
+    private long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return The next 32 random bits.
+     */
+    private int nextInt() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Picks a whole number below bound without favoring any of them.
+     *
+     * @param bound The upper limit (exclusive).
+     * @return A random whole number from 0 (inclusive) to bound (exclusive).
+     */
+    private int nextBoundedInt(int bound) {
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            // a power of two, so the low bits are already fair
+            return r & m;
+        }
+        // throw away the few values that would make the smaller results more likely
+        int u = r >>> 1;
+        while (u + m - (r = u % bound) < 0) {
+            u = nextInt() >>> 1;
+        }
+        return r;
+    }
+
+    /**
+     * Adds a recorded draw to the end of the replay queue.
+     *
+     * @param kind DOUBLE_DRAW or INT_DRAW.
+     * @param value The draw's raw value.
+     */
+    public void queueDraw(byte kind, long value) {
+        if (replayEnd == replayKinds.length) {
+            // move what's left to the front, growing the queue if it is still full
+            int left = replayEnd - replayStart;
+            byte[] kinds = replayKinds;
+            long[] values = replayValues;
+            if (left == replayKinds.length) {
+                kinds = new byte[left * 2];
+                values = new long[left * 2];
+            }
+            System.arraycopy(replayKinds, replayStart, kinds, 0, left);
+            System.arraycopy(replayValues, replayStart, values, 0, left);
+            replayKinds = kinds;
+            replayValues = values;
+            replayStart = 0;
+            replayEnd = left;
+        }
+        replayKinds[replayEnd] = kind;
+        replayValues[replayEnd] = value;
+        replayEnd++;
+    }
+
+    /**
+     * @return The number of queued draws that haven't been used yet.
+     */
+    public int getQueuedDraws() {
+        return replayEnd - replayStart;
+    }
+
+    /**
+     * Takes the next recorded draw off the replay queue.
+     *
+     * @param kind The kind of draw the game is asking for.
+     * @return The draw's raw value.
+     */
+    private long nextReplayed(byte kind) {
+        if (replayStart == replayEnd) {
+            throw new IllegalStateException("The game rolled more than the journal recorded");
+        }
+        if (replayKinds[replayStart] != kind) {
+            throw new IllegalStateException("The game rolled a different kind of draw than the journal recorded");
+        }
+        return replayValues[replayStart++];
+    }
+}
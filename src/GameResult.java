@@ -0,0 +1,9 @@
+/**
+ * The GameResult enum lists the ways a game of Treasure Hunter can end.
+ */
+
+public enum GameResult {
+    WON, // all three treasures were collected
+    BANKRUPT, // the hunter's gold ran out
+    QUIT // the player left, or a bot gave up
+}
@@ -0,0 +1,310 @@
+/**
+ * A GameState is a whole game of Treasure Hunter squeezed into a handful of numbers, so it can be copied with
+ * fork() in a few dozen nanoseconds and played forward with play() to see what might happen. Bots use it to
+ * look ahead (see MonteCarloStrategy).<p>
+ * The hunter's kit and treasures are already packed into ints (see Hunter.getKitBits() and getTreasureSlots()),
+ * the town is its terrain, toughness, flags and treasure, and the random numbers are the one long of a GameRandom,
+ * so a fork copies no arrays at all. The parts that never change during a game, the mode, its TownOdds and the
+ * ItemCatalog, are shared by every fork.<p>
+ * play() follows the same rules, and makes the same random draws in the same order, as TreasureHunter.processChoice(),
+ * so a state forked from a game with TreasureHunter.fork() plays out exactly like the game itself.
+ * It prints nothing and counts no GameMetrics. Games on a WorldMap can't be forked.
+ */
+
+public final class GameState {
+    // instance variables
+    private final GameMode mode;
+    private final TownOdds odds;
+    private final ItemCatalog catalog;
+    private final GameRandom random;
+    private int gold;
+    private int kit;
+    private int kitSize;
+    private int treasures;
+    private Terrain terrain;
+    private boolean toughTown;
+    private boolean searched;
+    private boolean dugged;
+    private Treasure townTreasure;
+    private int turns;
+    private GameResult result; // null while the game is still going
+
+    /**
+     * Captures a game. Use TreasureHunter.fork() or GameView.fork() rather than calling this.
+     *
+     * @param mode The game's mode.
+     * @param randomState The state of the game's GameRandom.
+     * @param hunter The hunter.
+     * @param town The town the hunter is in.
+     * @param turns The turns played so far.
+     * @param result How the game ended, or null if it hasn't.
+     */
+    GameState(GameMode mode, long randomState, Hunter hunter, Town town, int turns, GameResult result) {
+        this.mode = mode;
+        odds = TownOdds.forMode(mode);
+        catalog = ItemCatalog.current();
+        random = new GameRandom(randomState);
+        gold = hunter.getGold();
+        kit = hunter.getKitBits();
+        kitSize = hunter.getKitSize();
+        treasures = hunter.getTreasureSlots();
+        terrain = town.getTerrain();
+        toughTown = town.isToughTown();
+        searched = town.isSearched();
+        dugged = town.isDugged();
+        townTreasure = town.getTreasure();
+        this.turns = turns;
+        this.result = result;
+    }
+
+    /**
+     * Copies a state, sharing everything that can't change.
+     */
+    private GameState(GameState state) {
+        mode = state.mode;
+        odds = state.odds;
+        catalog = state.catalog;
+        random = new GameRandom(state.random.getState());
+        gold = state.gold;
+        kit = state.kit;
+        kitSize = state.kitSize;
+        treasures = state.treasures;
+        terrain = state.terrain;
+        toughTown = state.toughTown;
+        searched = state.searched;
+        dugged = state.dugged;
+        townTreasure = state.townTreasure;
+        turns = state.turns;
+        result = state.result;
+    }
+
+    /**
+     * @return A copy of this state that can be played without changing this one.
+     */
+    public GameState fork() {
+        return new GameState(this);
+    }
+
+    /**
+     * Replaces what a player can't know with a guess made from the seed: every random draw from now on, and the
+     * treasure of the town if it hasn't been searched yet. A bot that looks ahead without doing this would be
+     * reading the game's future.
+     *
+     * @param seed The seed for the guess.
+     */
+    public void reseed(long seed) {
+        random.setState(seed);
+        if (!searched) {
+            townTreasure = odds.pickTreasure(random);
+        }
+    }
+
+    /**
+     * Carries out a move, the way TreasureHunter.processChoice() would. Moves after the game has ended are ignored.
+     *
+     * @param move The move.
+     */
+    public void play(Move move) {
+        if (result != null) {
+            return;
+        }
+        turns++;
+        String choice = move.getChoice();
+        if (choice.equals("b")) {
+            buy(move.getItem());
+        } else if (choice.equals("s")) {
+            sell(move.getItem());
+        } else if (choice.equals("m")) {
+            moveOn();
+        } else if (choice.equals("l")) {
+            lookForTrouble();
+        } else if (choice.equals("h")) {
+            hunt();
+        } else if (choice.equals("d")) {
+            dig();
+        } else if (choice.equals("x")) {
+            result = GameResult.QUIT;
+        }
+
+        if (result == null && gold < 0) {
+            result = GameResult.BANKRUPT;
+        }
+    }
+
+    // accessors
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+    /**
+     * @param item An item.
+     * @return true if the hunter is carrying it.
+     */
+    public boolean hasItem(Item item) {
+        return (kit & item.getBit()) != 0;
+    }
+
+    /**
+     * @return true if the hunter can't carry any more items.
+     */
+    public boolean isKitFull() {
+        return Integer.bitCount(kit) >= kitSize;
+    }
+
+    /**
+     * @param treasure A treasure.
+     * @return true if the hunter has collected it.
+     */
+    public boolean hasTreasure(Treasure treasure) {
+        return Hunter.hasTreasure(treasures, treasure);
+    }
+
+    public int getTreasureCount() {
+        return Hunter.getTreasureCount(treasures);
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    public boolean isToughTown() {
+        return toughTown;
+    }
+
+    public boolean isSearched() {
+        return searched;
+    }
+
+    public boolean isDugged() {
+        return dugged;
+    }
+
+    /**
+     * @param item An item.
+     * @return The shop's price for the item, or 0 if the shop doesn't sell it.
+     */
+    public int getPrice(Item item) {
+        return catalog.getPrice(item, mode);
+    }
+
+    /**
+     * @param item An item.
+     * @return The gold the shop pays for the item.
+     */
+    public int getBuyBackPrice(Item item) {
+        return catalog.getBuyBackPrice(item, mode);
+    }
+
+    /**
+     * @return true if the game has been won, lost or quit.
+     */
+    public boolean isGameOver() {
+        return result != null;
+    }
+
+    /**
+     * @return How the game ended, or null if it hasn't.
+     */
+    public GameResult getResult() {
+        return result;
+    }
+
+    public String toString() {
+        String str = mode + " turn " + turns + ": " + gold + " gold, kit " + Integer.toBinaryString(kit);
+        str += ", " + getTreasureCount() + " treasures, in " + terrain;
+        if (result != null) {
+            str += ", " + result;
+        }
+        return str;
+    }
+
+    /**
+     * Like Hunter.buyItem(): the gold is paid even if there's no room left in the kit.
+     */
+    private void buy(Item item) {
+        if (item == null) {
+            return;
+        }
+        int price = catalog.getPrice(item, mode);
+        if (price == 0 || gold < price || hasItem(item)) {
+            return;
+        }
+        gold -= price;
+        if (!isKitFull()) {
+            kit |= item.getBit();
+        }
+    }
+
+    private void sell(Item item) {
+        if (item == null) {
+            return;
+        }
+        int price = catalog.getBuyBackPrice(item, mode);
+        if (price <= 0 || !hasItem(item)) {
+            return;
+        }
+        gold += price;
+        kit &= ~item.getBit();
+    }
+
+    /**
+     * Like Town.leaveTown() followed by the next town being set up.
+     */
+    private void moveOn() {
+        Item needed = terrain.getNeededItem();
+        if (!hasItem(needed)) {
+            return;
+        }
+        if (mode.itemsCanBreak() && random.nextDouble() < odds.getBreakChance()) {
+            kit &= ~needed.getBit();
+        }
+        townTreasure = odds.pickTreasure(random);
+        terrain = odds.pickTerrain(random);
+        toughTown = random.nextDouble() < mode.getToughness();
+        searched = false;
+        dugged = false;
+    }
+
+    private void lookForTrouble() {
+        if (random.nextDouble() >= odds.getTroubleChance(toughTown)) {
+            return;
+        }
+        int goldDiff = odds.pickBrawlGold(random);
+        if (hasItem(Item.SWORD) || random.nextDouble() < odds.getWinChance(toughTown)) {
+            gold += goldDiff;
+        } else {
+            gold -= goldDiff;
+        }
+    }
+
+    private void hunt() {
+        if (searched) {
+            return;
+        }
+        searched = true;
+        if (townTreasure != Treasure.DUST) {
+            treasures = Hunter.addTreasure(treasures, townTreasure);
+        }
+        if (getTreasureCount() == 3) {
+            result = GameResult.WON;
+        }
+    }
+
+    private void dig() {
+        if (!hasItem(Item.SHOVEL) || dugged) {
+            return;
+        }
+        dugged = true;
+        if (random.nextDouble() < odds.getDigChance()) {
+            gold += odds.pickDigGold(random);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * A GameView lets a Strategy look at a game without being able to change it.<p>
+ * It shows the hunter, the town they are in and the shop's prices. Each game has one view,
+ * which always shows the game as it is now.
+ */
+
+public final class GameView {
+    // instance variables
+    private final TreasureHunter game;
+
+    /**
+     * @param game The game to show.
+     */
+    GameView(TreasureHunter game) {
+        this.game = game;
+    }
+
+    public GameMode getMode() {
+        return game.getMode();
+    }
+
+    public int getTurns() {
+        return game.getTurns();
+    }
+
+    public int getGold() {
+        return game.getHunter().getGold();
+    }
+
+    /**
+     * @param item An item.
+     * @return true if the hunter is carrying it.
+     */
+    public boolean hasItem(Item item) {
+        return game.getHunter().hasItemInKit(item);
+    }
+
+    /**
+     * @return true if the hunter can't carry any more items.
+     */
+    public boolean isKitFull() {
+        Hunter hunter = game.getHunter();
+        return Integer.bitCount(hunter.getKitBits()) >= hunter.getKitSize();
+    }
+
+    /**
+     * @param treasure A treasure.
+     * @return true if the hunter has collected it.
+     */
+    public boolean hasTreasure(Treasure treasure) {
+        return game.getHunter().hasTreasure(treasure);
+    }
+
+    public int getTreasureCount() {
+        return game.getHunter().getTreasureCount();
+    }
+
+    public Terrain getTerrain() {
+        return game.getCurrentTown().getTerrain();
+    }
+
+    public boolean isToughTown() {
+        return game.getCurrentTown().isToughTown();
+    }
+
+    public boolean isSearched() {
+        return game.getCurrentTown().isSearched();
+    }
+
+    public boolean isDugged() {
+        return game.getCurrentTown().isDugged();
+    }
+
+    /**
+     * @param item An item.
+     * @return The shop's price for the item, or 0 if the shop doesn't sell it.
+     */
+    public int getPrice(Item item) {
+        return ItemCatalog.current().getPrice(item, game.getMode());
+    }
+
+    /**
+     * @param item An item.
+     * @return The gold the shop pays for the item.
+     */
+    public int getBuyBackPrice(Item item) {
+        return ItemCatalog.current().getBuyBackPrice(item, game.getMode());
+    }
+
+    /**
+     * Copies the game for a Strategy to play ahead in. Only what the player can see is copied as it is:
+     * the random draws to come, and the treasure of a town that hasn't been searched, are guessed from the seed.
+     *
+     * @param seed The seed for the guess; different seeds give different possible futures.
+     * @return A GameState of its own.
+     */
+    public GameState fork(long seed) {
+        GameState state = game.fork();
+        state.reseed(seed);
+        return state;
+    }
+}
@@ -1,19 +1,37 @@
-import java.awt.*;
-
-import static java.lang.System.exit;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Hunter Class<br /><br />
  * This class represents the treasure hunter character (the player) in the Treasure Hunt game.
- * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
+ * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!<p>
+ * Every change to the hunter bumps its version (see getVersion()). The inventory and summary text is
+ * kept for the version it was built for, with and without color, so showing an unchanged hunter again
+ * doesn't build anything.
  */
 
 public class Hunter {
+    // constants
+    private static final int TREASURE_SLOTS = 3; // only 3 treasures
+    private static final int TREASURE_BITS = 3; // each treasure slot holds (treasure ordinal + 1), 0 means empty
+    private static final int TREASURE_MASK = (1 << TREASURE_BITS) - 1;
+    private static final Item[] ITEMS = Item.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+
     //instance variables
     private String hunterName;
-    private static String[] kit;
-    private String[] treasureList;
+    private int kit; // one bit per Item, see Item.getBit()
+    private int kitSize;
+    private int treasures; // treasure slots packed in the order they were found
     private int gold;
+    private int version; // bumped by every change to the fields above
+
+    // text built for cacheVersion, or null if it hasn't been built yet
+    private int cacheVersion;
+    private String coloredInventory;
+    private String plainInventory;
+    private String coloredSummary;
+    private String plainSummary;
 
     /**
      * The base constructor of a Hunter assigns the name to the hunter and an empty kit.
@@ -22,14 +40,117 @@ public class Hunter {
      * @param startingGold The gold the hunter starts with.
      */
     public Hunter(String hunterName, int startingGold) {
+        this(hunterName, startingGold, 7); // only 7 possible items can be stored in kit
+    }
+
+    /**
+     * Creates a hunter whose kit can hold the given number of items.
+     *
+     * @param hunterName The hunter's name.
+     * @param startingGold The gold the hunter starts with.
+     * @param kitSize The number of items the kit can hold (8 in samurai mode, otherwise 7).
+     */
+    public Hunter(String hunterName, int startingGold, int kitSize) {
+        reset(hunterName, startingGold, kitSize);
+    }
+
+    /**
+     * Turns this hunter into a brand new one, so it can be reused for another game.
+     *
+     * @param hunterName The hunter's name.
+     * @param startingGold The gold the hunter starts with.
+     * @param kitSize The number of items the kit can hold.
+     */
+    public void reset(String hunterName, int startingGold, int kitSize) {
         this.hunterName = hunterName;
-        if (TreasureHunter.getSamuraiMode()) {
-            kit = new String[8];
-        } else {
-            kit = new String[7]; // only 7 possible items can be stored in kit
-        }
-        treasureList = new String[3]; // only 3 treasures
+        kit = 0;
+        this.kitSize = kitSize;
+        treasures = 0;
         gold = startingGold;
+        version++;
+    }
+
+    /**
+     * Turns this hunter into one partway through a game, e.g. one kept in a CompactSession.
+     *
+     * @param hunterName The hunter's name.
+     * @param gold The hunter's gold.
+     * @param kitSize The number of items the kit can hold.
+     * @param kitBits The kit, packed like getKitBits().
+     * @param treasureSlots The treasures, packed like getTreasureSlots().
+     */
+    public void reset(String hunterName, int gold, int kitSize, int kitBits, int treasureSlots) {
+        reset(hunterName, gold, kitSize);
+        kit = kitBits;
+        treasures = treasureSlots;
+        version++;
+    }
+
+    /**
+     * Reads a hunter saved with writeTo().
+     *
+     * @param saved The saved game, positioned at the hunter.
+     * @return The saved hunter.
+     * @throws IllegalArgumentException If the kit size, the kit or the treasures aren't ones a hunter can have.
+     */
+    public static Hunter readFrom(ByteBuffer saved) {
+        byte[] name = new byte[saved.getShort() & 0xFFFF];
+        saved.get(name);
+        String hunterName = new String(name, StandardCharsets.UTF_8);
+        int gold = saved.getInt();
+        int kitSize = saved.get();
+        int kitBits = saved.getShort() & 0xFFFF;
+        int treasureSlots = saved.getShort() & 0xFFFF;
+        if (kitSize <= 0) {
+            throw new IllegalArgumentException("The saved kit size isn't positive: " + kitSize);
+        }
+        if (kitBits >>> ITEMS.length != 0) {
+            throw new IllegalArgumentException("The saved kit has unknown items: " + kitBits);
+        }
+        checkTreasureSlots(treasureSlots);
+
+        Hunter hunter = new Hunter(hunterName, gold, kitSize);
+        hunter.reset(hunterName, gold, kitSize, kitBits, treasureSlots);
+        return hunter;
+    }
+
+    /**
+     * Checks that every slot is empty or holds a real treasure (never dust), and that no treasure is in two slots.
+     */
+    private static void checkTreasureSlots(int treasureSlots) {
+        if (treasureSlots >>> (TREASURE_SLOTS * TREASURE_BITS) != 0) {
+            throw new IllegalArgumentException("The saved treasures have too many slots: " + treasureSlots);
+        }
+        int found = 0;
+        for (int i = 0; i < TREASURE_SLOTS; i++) {
+            int value = (treasureSlots >>> (i * TREASURE_BITS)) & TREASURE_MASK;
+            if (value == 0) {
+                continue;
+            }
+            if (value > Treasure.DUST.ordinal()) {
+                throw new IllegalArgumentException("The saved treasure slot " + i + " holds no treasure: " + value);
+            }
+            if ((found & (1 << value)) != 0) {
+                throw new IllegalArgumentException("The saved treasures hold " + TREASURES[value - 1].getName()
+                        + " twice");
+            }
+            found |= 1 << value;
+        }
+    }
+
+    /**
+     * Saves the hunter: the name, gold, kit size, kit and treasures.
+     *
+     * @param save Where the hunter is written.
+     */
+    public void writeTo(ByteBuffer save) {
+        byte[] name = hunterName.getBytes(StandardCharsets.UTF_8);
+        save.putShort((short) name.length);
+        save.put(name);
+        save.putInt(gold);
+        save.put((byte) kitSize);
+        save.putShort((short) kit);
+        save.putShort((short) treasures);
     }
 
     //Accessors
@@ -37,26 +158,166 @@ public class Hunter {
         return hunterName;
     }
 
-    public String[] getTreasureList() { return treasureList;}
+    /**
+     * Lists the treasures in the order they were found.
+     *
+     * @return A new array of the treasure names, with null for each empty slot.
+     */
+    public String[] getTreasureList() {
+        return getTreasureList(treasures);
+    }
+
+    /**
+     * Lists the treasures in packed treasure slots, like the ones from getTreasureSlots().
+     *
+     * @param treasureSlots The packed treasure slots.
+     * @return A new array of the treasure names, with null for each empty slot.
+     */
+    public static String[] getTreasureList(int treasureSlots) {
+        String[] treasureList = new String[TREASURE_SLOTS];
+        for (int i = 0; i < TREASURE_SLOTS; i++) {
+            Treasure treasure = treasureInSlot(treasureSlots, i);
+            if (treasure != null) {
+                treasureList[i] = treasure.getName();
+            }
+        }
+        return treasureList;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+    /**
+     * @return The kit as a bitmask, one bit per Item.
+     */
+    public int getKitBits() {
+        return kit;
+    }
+
+    public int getKitSize() {
+        return kitSize;
+    }
+
+    /**
+     * @return A number that changes whenever the hunter's name, gold, kit or treasures do.
+     */
+    public int getVersion() {
+        return version;
+    }
 
     /**
-     * Updates the amount of gold the hunter has.
+     * @return The treasure slots packed into an int, in the order they were found.
+     */
+    public int getTreasureSlots() {
+        return treasures;
+    }
+
+    /**
+     * Updates the amount of gold the hunter has.<p>
+     * Going below zero gold ends the game; the game checks this with isBankrupt().
      *
      * @param modifier Amount to modify gold by.
      */
     public void changeGold(int modifier) {
-        gold += modifier;
-        if (gold < 0) {
-            gameOver();
+        if (modifier != 0) {
+            gold += modifier;
+            version++;
+        }
+    }
+
+    /**
+     * @return true if the hunter's gold has run out.
+     */
+    public boolean isBankrupt() {
+        return gold < 0;
+    }
+
+    /**
+     * Counts the treasures the hunter has collected.
+     *
+     * @return The number of filled treasure slots.
+     */
+    public int getTreasureCount() {
+        return getTreasureCount(treasures);
+    }
+
+    /**
+     * Counts the treasures in packed treasure slots, like the ones from getTreasureSlots().
+     *
+     * @param treasureSlots The packed treasure slots.
+     * @return The number of filled treasure slots.
+     */
+    public static int getTreasureCount(int treasureSlots) {
+        int count = 0;
+        for (int i = 0; i < TREASURE_SLOTS; i++) {
+            if (treasureInSlot(treasureSlots, i) != null) {
+                count++;
+            }
         }
+        return count;
     }
 
-    public void gameOver() {
-        System.out.println("Sorry, traveler, your gold has run out!");
-        System.out.println("--------------------");
-        System.out.println("|  ! GAME OVER !   |");
-        System.out.println("--------------------");
-        System.exit(0);
+    /**
+     * Checks if the hunter has already collected the treasure.
+     *
+     * @param treasure The treasure to look for.
+     * @return true if the treasure is in one of the slots.
+     */
+    public boolean hasTreasure(Treasure treasure) {
+        return hasTreasure(treasures, treasure);
+    }
+
+    /**
+     * Checks if packed treasure slots hold the treasure.
+     *
+     * @param treasureSlots The packed treasure slots.
+     * @param treasure The treasure to look for.
+     * @return true if the treasure is in one of the slots.
+     */
+    public static boolean hasTreasure(int treasureSlots, Treasure treasure) {
+        for (int i = 0; i < TREASURE_SLOTS; i++) {
+            if (treasureInSlot(treasureSlots, i) == treasure) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Puts the treasure in the first empty slot.
+     *
+     * @param treasure The treasure that was found.
+     * @return true if there was an empty slot and the treasure wasn't already collected.
+     */
+    public boolean addTreasure(Treasure treasure) {
+        int added = addTreasure(treasures, treasure);
+        if (added == treasures) {
+            return false;
+        }
+        treasures = added;
+        version++;
+        return true;
+    }
+
+    /**
+     * Puts the treasure in the first empty slot of packed treasure slots.
+     *
+     * @param treasureSlots The packed treasure slots.
+     * @param treasure The treasure that was found.
+     * @return The slots with the treasure added, or the same slots if it was already there or they are full.
+     */
+    public static int addTreasure(int treasureSlots, Treasure treasure) {
+        if (hasTreasure(treasureSlots, treasure)) {
+            return treasureSlots;
+        }
+
+        for (int i = 0; i < TREASURE_SLOTS; i++) {
+            if (treasureInSlot(treasureSlots, i) == null) {
+                return treasureSlots | (treasure.ordinal() + 1) << (i * TREASURE_BITS);
+            }
+        }
+        return treasureSlots;
     }
 
     /**
@@ -72,6 +333,7 @@ public class Hunter {
         }
 
         gold -= costOfItem;
+        version++;
         addItem(item);
         return true;
     }
@@ -90,56 +352,85 @@ public class Hunter {
         }
 
         gold += buyBackPrice;
+        version++;
         removeItemFromKit(item);
         return true;
     }
 
     /**
-     * Removes an item from the kit by setting the index of the item to null.
+     * Removes an item from the kit by clearing its bit.
      *
      * @param item The item to be removed.
      */
-    public void removeItemFromKit(String item) {
-        int itmIdx = findItemInKit(item);
+    public void removeItemFromKit(Item item) {
+        if ((kit & item.getBit()) != 0) {
+            kit &= ~item.getBit();
+            version++;
+        }
+    }
 
-        // if item is found
-        if (itmIdx >= 0) {
-            kit[itmIdx] = null;
+    /**
+     * Removes an item from the kit by name; unknown names are ignored.
+     *
+     * @param item The name of the item to be removed.
+     */
+    public void removeItemFromKit(String item) {
+        Item kitItem = Item.fromName(item);
+        if (kitItem != null) {
+            removeItemFromKit(kitItem);
         }
     }
 
     /**
-     * Checks to make sure that the item is not already in the kit.
-     * If not, it assigns the item to an index in the kit with a null value ("empty" position).
+     * Checks to make sure that the item is not already in the kit and that the kit has room for it.
+     * If so, it sets the item's bit in the kit.
      *
      * @param item The item to be added to the kit.
      * @return true if the item is not in the kit and has been added.
      */
-    public boolean addItem(String item) {
-        if (!hasItemInKit(item)) {
-            int idx = emptyPositionInKit();
-            kit[idx] = item;
-            return true;
+    public boolean addItem(Item item) {
+        if (hasItemInKit(item) || Integer.bitCount(kit) >= kitSize) {
+            return false;
         }
 
-        return false;
+        kit |= item.getBit();
+        version++;
+        return true;
     }
 
     /**
-     * Checks if the kit Array has the specified item.
+     * Adds an item to the kit by name.
+     *
+     * @param item The name of the item to be added to the kit.
+     * @return true if the item exists, is not in the kit and has been added.
+     */
+    public boolean addItem(String item) {
+        Item kitItem = Item.fromName(item);
+        if (kitItem == null) {
+            return false;
+        }
+        return addItem(kitItem);
+    }
+
+    /**
+     * Checks if the kit has the specified item.
      *
      * @param item The search item
      * @return true if the item is found.
      */
-    public static boolean hasItemInKit(String item) {
-        for (String tmpItem : kit) {
-            if (item.equals(tmpItem)) {
-                // early return
-                return true;
-            }
-        }
+    public boolean hasItemInKit(Item item) {
+        return (kit & item.getBit()) != 0;
+    }
 
-        return false;
+    /**
+     * Checks if the kit has the item with the specified name.
+     *
+     * @param item The name of the search item
+     * @return true if the item is found.
+     */
+    public boolean hasItemInKit(String item) {
+        Item kitItem = Item.fromName(item);
+        return kitItem != null && hasItemInKit(kitItem);
     }
 
     /**
@@ -149,109 +440,142 @@ public class Hunter {
      * @return The printable String representation of the inventory.
      */
     public String getInventory() {
-        String printableKit = "";
-        String space = " ";
-        int count = 0;
+        return getInventory(true);
+    }
 
-        // adds all items except the last item
-        for (int i = 0; i < kit.length - 1; i++) {
-            if (kit[i] != null) {
-                printableKit += Colors.PURPLE + kit[i] + Colors.RESET + "," + space;
+    /**
+     * Returns a printable representation of the inventory, which
+     * is a list of the items in kit, with a space between each item.
+     *
+     * @param color Whether to include the ANSI color codes.
+     * @return The printable String representation of the inventory.
+     */
+    public String getInventory(boolean color) {
+        checkCache();
+        if (color) {
+            if (coloredInventory == null) {
+                coloredInventory = buildInventory(true);
             }
+            return coloredInventory;
         }
+        if (plainInventory == null) {
+            plainInventory = buildInventory(false);
+        }
+        return plainInventory;
+    }
 
-        // adds the last item of a full inventory without the comma
-        if (kit[kit.length - 1] != null) {
-            printableKit += Colors.PURPLE + kit[kit.length - 1] + Colors.RESET + space;
+    /**
+     * @return A string representation of the hunter.
+     */
+    public String toString() {
+        return getSummary(true);
+    }
+
+    /**
+     * @param color Whether to include the ANSI color codes.
+     * @return A string representation of the hunter's gold and inventory.
+     */
+    public String getSummary(boolean color) {
+        checkCache();
+        if (color) {
+            if (coloredSummary == null) {
+                coloredSummary = buildSummary(true);
+            }
+            return coloredSummary;
         }
+        if (plainSummary == null) {
+            plainSummary = buildSummary(false);
+        }
+        return plainSummary;
+    }
 
-        // starts a new line to print the treasure inventory
-        printableKit += "\nTreasures found: ";
+    /**
+     * Forgets the text built for an older version of the hunter.
+     */
+    private void checkCache() {
+        if (cacheVersion != version) {
+            cacheVersion = version;
+            coloredInventory = null;
+            plainInventory = null;
+            coloredSummary = null;
+            plainSummary = null;
+        }
+    }
 
-        // same as the iteminv as it also adds everything except the last item
-        for (int i = 0; i < treasureList.length - 1; i++) {
-            if (treasureList[i] != null) {
-                if (treasureList[i + 1] !=null) {
-                    printableKit += Colors.GREEN + treasureList[i] + Colors.RESET + "," + space;
+    private String buildInventory(boolean color) {
+        String purple = color ? Colors.PURPLE : "";
+        String green = color ? Colors.GREEN : "";
+        String reset = color ? Colors.RESET : "";
+        String printableKit = "";
+        String space = " ";
+        int itemsLeft = Integer.bitCount(kit);
+        boolean kitIsFull = itemsLeft == kitSize;
+
+        // adds every item with a comma, except the last item of a full inventory
+        for (Item item : ITEMS) {
+            if (hasItemInKit(item)) {
+                itemsLeft--;
+                if (kitIsFull && itemsLeft == 0) {
+                    printableKit += purple + item + reset + space;
                 } else {
-                    printableKit += Colors.GREEN + treasureList[i] + Colors.RESET  + space;
+                    printableKit += purple + item + reset + "," + space;
                 }
-            } else {
-                count++;
             }
         }
 
-        if (treasureList[treasureList.length - 1] != null) {
-            printableKit += Colors.GREEN + treasureList[treasureList.length - 1] + Colors.RESET + space;
-        } else {
-            count++;
+        // starts a new line to print the treasure inventory
+        printableKit += "\nTreasures found: ";
+
+        // treasures are separated by commas, and the last one is followed by just a space
+        int count = getTreasureCount();
+        for (int i = 0; i < count; i++) {
+            if (i < count - 1) {
+                printableKit += green + treasureInSlot(i) + reset + "," + space;
+            } else {
+                printableKit += green + treasureInSlot(i) + reset + space;
+            }
         }
 
         // accounts for the scenario where hunter has zero treasures
-        // count only goes up if the element is equal to null
-        if (count == 3) {
+        if (count == 0) {
             printableKit += "none";
         }
 
         return printableKit;
     }
 
-    /**
-     * @return A string representation of the hunter.
-     */
-    public String toString() {
-        String str = hunterName + " has " + Colors.YELLOW + gold + Colors.RESET + " gold";
+    private String buildSummary(boolean color) {
+        String str = hunterName + " has " + (color ? Colors.YELLOW : "") + gold + (color ? Colors.RESET : "") + " gold";
         if (!kitIsEmpty()) {
-            str += " and " + getInventory();
+            str += " and " + getInventory(color);
         }
         return str;
     }
 
     /**
-     * Searches kit Array for the index of the specified value.
-     *
-     * @param item String to look for.
-     * @return The index of the item, or -1 if not found.
-     */
-    private int findItemInKit(String item) {
-        for (int i = 0; i < kit.length; i++) {
-            String tmpItem = kit[i];
-
-            if (item.equals(tmpItem)) {
-                return i;
-            }
-        }
-
-        return -1;
-    }
-
-    /**
-     * Check if the kit is empty - meaning all elements are null.
+     * Check if the kit is empty - meaning no bits are set.
      *
      * @return true if kit is completely empty.
      */
     private boolean kitIsEmpty() {
-        for (String string : kit) {
-            if (string != null) {
-                return false;
-            }
-        }
-
-        return true;
+        return kit == 0;
     }
 
     /**
-     * Finds the first index where there is a null value.
+     * Reads one treasure slot.
      *
-     * @return index of empty index, or -1 if not found.
+     * @param slot The slot number, from 0 to 2.
+     * @return The treasure in the slot, or null if it is empty.
      */
-    private int emptyPositionInKit() {
-        for (int i = 0; i < kit.length; i++) {
-            if (kit[i] == null) {
-                return i;
-            }
-        }
+    private Treasure treasureInSlot(int slot) {
+        return treasureInSlot(treasures, slot);
+    }
 
-        return -1;
+    private static Treasure treasureInSlot(int treasureSlots, int slot) {
+        int value = (treasureSlots >>> (slot * TREASURE_BITS)) & TREASURE_MASK;
+        if (value == 0) {
+            return null;
+        }
+        return TREASURES[value - 1];
     }
 }
\ No newline at end of file
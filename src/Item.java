@@ -0,0 +1,74 @@
+import java.util.HashMap;
+
+/**
+ * The Item enum lists every item a hunter can carry in their kit.<p>
+ * Each item owns one bit, so a whole kit fits in a single int (see Hunter).<p>
+ * The prices here are only the defaults; the shop reads its prices from the ItemCatalog.
+ */
+
+public enum Item {
+    WATER("water", 2),
+    ROPE("rope", 4),
+    MACHETE("machete", 6),
+    SHOVEL("shovel", 8),
+    HORSE("horse", 12),
+    BOOTS("boots", 15),
+    BOAT("boat", 20),
+    SWORD("sword", 0);
+
+    // static variables
+    private static final HashMap<String, Item> BY_NAME = new HashMap<String, Item>();
+
+    static {
+        for (Item item : values()) {
+            BY_NAME.put(item.name, item);
+        }
+    }
+
+    // instance variables
+    private final String name;
+    private final int defaultPrice;
+    private final int bit;
+
+    /**
+     * Sets the item's name, default price and its bit in a kit.
+     *
+     * @param name The lower case name the player types.
+     * @param defaultPrice The price used when the catalog file doesn't set one.
+     */
+    Item(String name, int defaultPrice) {
+        this.name = name;
+        this.defaultPrice = defaultPrice;
+        bit = 1 << ordinal();
+    }
+
+    // accessors
+    public String getName() {
+        return name;
+    }
+
+    public int getDefaultPrice() {
+        return defaultPrice;
+    }
+
+    public int getBit() {
+        return bit;
+    }
+
+    /**
+     * Looks up an item by the name the player typed.
+     *
+     * @param name The item's lower case name.
+     * @return The matching Item, or null if there is no such item.
+     */
+    public static Item fromName(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * @return The item's lower case name.
+     */
+    public String toString() {
+        return name;
+    }
+}
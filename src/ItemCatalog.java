@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * The ItemCatalog holds the shop's prices, the markdown for selling in each mode,
+ * and which items are sold in which modes.<p>
+ * A catalog never changes once it is built. Prices are retuned by loading a new catalog and swapping
+ * it in with reload(); a shop reads current() once each time a hunter enters it (see Shop.enter()), so running
+ * games see the new prices on their next visit without any locking, and a hunter always pays the price they
+ * were quoted.<p>
+ * Prices can't be negative and markdowns must be from 0 to 1, so a mistake in the file is turned away rather
+ * than handing out free gold.<p>
+ * The catalog file is a properties file. Every setting is optional and falls back to the defaults in
+ * Item and GameMode:
+ * <pre>
+ * water.price = 2
+ * sword.modes = samurai
+ * markdown.hard = 0.25
+ * </pre>
+ */
+
+public final class ItemCatalog {
+    // constants
+    public static final String DEFAULT_FILE = "catalog.properties";
+    private static final Item[] ITEMS = Item.values();
+    private static final GameMode[] MODES = GameMode.values();
+
+    // static variables
+    private static volatile ItemCatalog current = loadStartingCatalog();
+
+    // instance variables
+    private final int[] prices; // indexed by Item ordinal
+    private final int[] modesSoldIn; // indexed by Item ordinal, one bit per GameMode ordinal
+    private final double[] markdowns; // indexed by GameMode ordinal
+    private final String[] listings; // indexed by GameMode ordinal, rendered once when the catalog is built
+    private final long[] fingerprints; // indexed by GameMode ordinal
+
+    /**
+     * Builds a catalog from the settings in a properties file.
+     *
+     * @param settings The settings; anything missing uses the default.
+     */
+    private ItemCatalog(Properties settings) {
+        prices = new int[ITEMS.length];
+        modesSoldIn = new int[ITEMS.length];
+        for (Item item : ITEMS) {
+            prices[item.ordinal()] = parsePrice(settings, item.getName() + ".price", item.getDefaultPrice());
+            modesSoldIn[item.ordinal()] = parseModes(settings, item);
+        }
+
+        markdowns = new double[MODES.length];
+        listings = new String[MODES.length];
+        fingerprints = new long[MODES.length];
+        for (GameMode mode : MODES) {
+            markdowns[mode.ordinal()] = parseMarkdown(settings, "markdown." + mode.name().toLowerCase(),
+                    mode.getMarkdown());
+            listings[mode.ordinal()] = renderListing(mode);
+            fingerprints[mode.ordinal()] = fingerprint(mode);
+        }
+    }
+
+    /**
+     * @return The catalog every shop is currently using.
+     */
+    public static ItemCatalog current() {
+        return current;
+    }
+
+    /**
+     * Loads a catalog file and makes it the current catalog.<p>
+     * If the file can't be read or has a bad value, the current catalog is left alone.
+     *
+     * @param file The catalog file.
+     * @return The new catalog.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a setting has a bad value.
+     */
+    public static ItemCatalog reload(Path file) throws IOException {
+        ItemCatalog catalog = load(file);
+        current = catalog;
+        return catalog;
+    }
+
+    /**
+     * Reads a catalog file without making it current.
+     *
+     * @param file The catalog file.
+     * @return The catalog in the file.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a setting has a bad value.
+     */
+    public static ItemCatalog load(Path file) throws IOException {
+        Properties settings = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            settings.load(reader);
+        }
+        return new ItemCatalog(settings);
+    }
+
+    /**
+     * @return A catalog with only the default prices and markdowns.
+     */
+    public static ItemCatalog defaults() {
+        return new ItemCatalog(new Properties());
+    }
+
+    /**
+     * Finds the price of an item in a mode.
+     *
+     * @param item The item being checked for cost.
+     * @param mode The game's mode.
+     * @return The cost of the item, or 0 if it isn't sold in this mode.
+     */
+    public int getPrice(Item item, GameMode mode) {
+        if (!isSoldIn(item, mode)) {
+            return 0;
+        }
+        return prices[item.ordinal()];
+    }
+
+    /**
+     * Finds the price the shop pays back for an item, after the mode's markdown.
+     *
+     * @param item The item being sold.
+     * @param mode The game's mode.
+     * @return The sell price of the item.
+     */
+    public int getBuyBackPrice(Item item, GameMode mode) {
+        return (int) (getPrice(item, mode) * markdowns[mode.ordinal()]);
+    }
+
+    /**
+     * @param item The item in question.
+     * @param mode The game's mode.
+     * @return true if the shop sells the item in this mode.
+     */
+    public boolean isSoldIn(Item item, GameMode mode) {
+        return (modesSoldIn[item.ordinal()] & (1 << mode.ordinal())) != 0;
+    }
+
+    public double getMarkdown(GameMode mode) {
+        return markdowns[mode.ordinal()];
+    }
+
+    /**
+     * Sums up the mode's prices and markdown in one number, so a journal can tell whether it is being replayed
+     * with the prices it was recorded with (see ActionJournal).
+     *
+     * @param mode The game's mode.
+     * @return The same number for any two catalogs with the same prices and markdown in the mode.
+     */
+    public long getFingerprint(GameMode mode) {
+        return fingerprints[mode.ordinal()];
+    }
+
+    /**
+     * @param mode The game's mode.
+     * @return The shop's list of items and prices for the mode, one per line.
+     */
+    public String getListing(GameMode mode) {
+        return listings[mode.ordinal()];
+    }
+
+    private long fingerprint(GameMode mode) {
+        long fingerprint = Double.doubleToLongBits(markdowns[mode.ordinal()]);
+        for (Item item : ITEMS) {
+            fingerprint = fingerprint * 31 + getPrice(item, mode);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Builds the shop's listing for a mode, e.g. "Water: 2 gold".
+     *
+     * @param mode The game's mode.
+     * @return The listing text.
+     */
+    private String renderListing(GameMode mode) {
+        StringBuilder listing = new StringBuilder();
+        for (Item item : ITEMS) {
+            if (isSoldIn(item, mode)) {
+                String name = item.getName();
+                listing.append(Character.toUpperCase(name.charAt(0))).append(name, 1, name.length());
+                listing.append(": ").append(prices[item.ordinal()]).append(" gold\n");
+            }
+        }
+        return listing.toString();
+    }
+
+    /**
+     * Reads which modes an item is sold in, e.g. "sword.modes = samurai, test".<p>
+     * By default every item is sold in every mode, except the sword, which is only sold in samurai mode.
+     *
+     * @param settings The catalog settings.
+     * @param item The item.
+     * @return One bit per GameMode ordinal.
+     */
+    private static int parseModes(Properties settings, Item item) {
+        String value = settings.getProperty(item.getName() + ".modes");
+        if (value == null) {
+            if (item == Item.SWORD) {
+                return 1 << GameMode.SAMURAI.ordinal();
+            }
+            return (1 << MODES.length) - 1;
+        }
+
+        int modes = 0;
+        for (String name : value.split(",")) {
+            name = name.trim();
+            if (name.equals("all")) {
+                modes = (1 << MODES.length) - 1;
+            } else if (!name.isEmpty()) {
+                try {
+                    modes |= 1 << GameMode.valueOf(name.toUpperCase()).ordinal();
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown mode in " + item.getName() + ".modes: " + name);
+                }
+            }
+        }
+        return modes;
+    }
+
+    /**
+     * Reads a price, which can't be negative: a hunter buying an item with a negative price would be paid for it.
+     */
+    private static int parsePrice(Properties settings, String key, int defaultValue) {
+        String value = settings.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int price = Integer.parseInt(value.trim());
+            if (price < 0) {
+                throw new IllegalArgumentException(key + " can't be negative: " + value);
+            }
+            return price;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number for " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Reads a markdown, the share of the price a hunter gets back for selling, from 0 to 1.
+     */
+    private static double parseMarkdown(Properties settings, String key, double defaultValue) {
+        String value = settings.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            double markdown = Double.parseDouble(value.trim());
+            if (!(markdown >= 0 && markdown <= 1)) { // also turns away NaN
+                throw new IllegalArgumentException(key + " must be from 0 to 1: " + value);
+            }
+            return markdown;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number for " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Loads catalog.properties from the working directory if there is one, otherwise uses the defaults.
+     *
+     * @return The catalog to start with.
+     */
+    private static ItemCatalog loadStartingCatalog() {
+        Path file = Paths.get(DEFAULT_FILE);
+        if (Files.isRegularFile(file)) {
+            try {
+                return load(file);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Couldn't load " + file + ", using the default prices: " + e.getMessage());
+            }
+        }
+        return defaults();
+    }
+}
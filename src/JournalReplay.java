@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The JournalReplay class rebuilds a game from its ActionJournal file.<p>
+ * The recorded actions are replayed against a headless game, and every random draw comes from the journal
+ * instead of a generator, so the rebuilt Hunter and Town end up exactly as they were. Nothing is printed
+ * while replaying, so even long games replay in a moment.<p>
+ * Prices and odds aren't in the journal, so a journal only replays with the same catalog.properties and
+ * odds.properties it was recorded with; the journal holds their fingerprints to check.<p>
+ * Usage: java JournalReplay journalFile
+ */
+
+public class JournalReplay {
+    // constants
+    private static final PrintStream NO_OUTPUT = Messages.DISCARD;
+    private static final Item[] ITEMS = Item.values();
+    private static final GameMode[] MODES = GameMode.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Replays a journal file.
+     *
+     * @param file The journal file.
+     * @return The game as it was after the last recorded action.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalStateException If the file isn't a journal or doesn't match the game.
+     */
+    public static TreasureHunter replay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return replay(map);
+        }
+    }
+
+    /**
+     * Replays a journal that has been read into a buffer.
+     *
+     * @param journal The journal's bytes, positioned at the start of the header.
+     * @return The game as it was after the last recorded action.
+     * @throws IllegalStateException If the bytes aren't a journal or don't match the game.
+     */
+    public static TreasureHunter replay(ByteBuffer journal) {
+        if (journal.remaining() < ActionJournal.HEADER_SIZE || journal.getInt() != ActionJournal.MAGIC) {
+            throw new IllegalStateException("Not a Treasure Hunter journal");
+        }
+        byte version = journal.get();
+        if (version < 3 || version > ActionJournal.VERSION) {
+            throw new IllegalStateException("Unknown journal version");
+        }
+
+        // before version 5 the body length took 2 bytes
+        int recordHeaderSize = version >= 5 ? ActionJournal.RECORD_HEADER_SIZE : 3;
+
+        GameRandom random = GameRandom.replaying();
+        TreasureHunter game = null;
+        while (journal.remaining() >= recordHeaderSize) {
+            byte type = journal.get();
+            if (type == ActionJournal.END) {
+                break;
+            }
+            int bodyLength = version >= 5 ? journal.getInt() : journal.getShort() & 0xFFFF;
+            if (bodyLength < 0 || journal.remaining() < bodyLength) {
+                break; // cut off by a crash
+            }
+
+            if (type == ActionJournal.START) {
+                long seed = journal.getLong();
+                GameMode mode = MODES[journal.get()];
+                byte[] name = new byte[journal.getShort() & 0xFFFF];
+                journal.get(name);
+                boolean onWorld = journal.get() != 0;
+                long worldSeed = 0;
+                if (onWorld) {
+                    worldSeed = journal.getLong();
+                }
+                if (version >= 4) {
+                    if (journal.getLong() != ItemCatalog.current().getFingerprint(mode)) {
+                        throw new IllegalStateException("The journal was recorded with other shop prices than "
+                                + ItemCatalog.DEFAULT_FILE + " has now");
+                    }
+                    if (journal.getLong() != TownOdds.forMode(mode).getFingerprint()) {
+                        throw new IllegalStateException("The journal was recorded with other town odds than "
+                                + TownOdds.DEFAULT_FILE + " has now");
+                    }
+                }
+                queueDraws(journal, random);
+
+                game = new TreasureHunter(NO_OUTPUT, seed, random);
+                if (onWorld) {
+                    game.useWorld(worldSeed, WorldMap.DEFAULT_CACHE_SIZE);
+                }
+                game.start(new String(name, StandardCharsets.UTF_8), mode);
+            } else if (type == ActionJournal.ACTION) {
+                if (game == null) {
+                    throw new IllegalStateException("The journal has an action before the game started");
+                }
+                String choice = String.valueOf((char) journal.get());
+                int item = journal.get();
+                queueDraws(journal, random);
+
+                if (choice.equals("b") || choice.equals("s")) {
+                    String traded = null;
+                    if (item != ActionJournal.NO_ITEM) {
+                        traded = ITEMS[item - 1].getName();
+                    }
+                    game.processChoice(choice, traded);
+                } else if (choice.equals("m")) {
+                    // a move on the world map with no direction was an answer that wasn't a direction
+                    String way = "";
+                    if (item != ActionJournal.NO_ITEM) {
+                        way = DIRECTIONS[item - 1].getInput();
+                    }
+                    game.processChoice(choice, way);
+                } else {
+                    game.processChoice(choice, null);
+                }
+            } else if (type == ActionJournal.SNAPSHOT) {
+                if (game == null) {
+                    throw new IllegalStateException("The journal loads a saved game before the game started");
+                }
+                ByteBuffer snapshot = journal.slice();
+                snapshot.limit(bodyLength - 2);
+                game.loadGame(snapshot);
+                journal.position(journal.position() + bodyLength - 2);
+                queueDraws(journal, random);
+            } else {
+                throw new IllegalStateException("Unknown journal record type " + type);
+            }
+
+            if (random.getQueuedDraws() != 0) {
+                throw new IllegalStateException("The game rolled less than the journal recorded");
+            }
+        }
+
+        if (game == null) {
+            throw new IllegalStateException("The journal has no game in it");
+        }
+        return game;
+    }
+
+    /**
+     * Reads a record's draws and queues them to be rolled by the replayed game.
+     */
+    private static void queueDraws(ByteBuffer journal, GameRandom random) {
+        int count = journal.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            byte kind = journal.get();
+            if (kind == GameRandom.DOUBLE_DRAW) {
+                random.queueDraw(kind, journal.getLong());
+            } else {
+                random.queueDraw(kind, journal.getInt());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java JournalReplay journalFile");
+            return;
+        }
+
+        long start = System.nanoTime();
+        TreasureHunter game = replay(Paths.get(args[0]));
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(game.getHunter().getSummary(false));
+        System.out.println(game.getCurrentTown().getDescription(false));
+        System.out.println("Mode: " + game.getMode() + ", seed: " + game.getSeed() + ", turns: " + game.getTurns());
+        GameResult result = game.getOutcome().getResult();
+        if (result == GameResult.WON) {
+            System.out.println("The hunter won.");
+        } else if (result == GameResult.BANKRUPT) {
+            System.out.println("The hunter ran out of gold.");
+        }
+        System.out.println("Replayed in " + (elapsed / 1000) + " microseconds");
+    }
+}
@@ -0,0 +1,442 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Leaderboard keeps every finished game in a file, and the best games of each mode in memory, so it can be
+ * shared by all the games running in one program: server sessions, simulator threads and so on.<p>
+ * Games are written to fixed-size records in a memory-mapped file. A game claims its record by bumping one atomic
+ * counter and then writes it without waiting for any other game, so any number of threads can record games at
+ * once. The file is mapped in segments of RECORDS_PER_SEGMENT records, and only mapping a new segment takes a
+ * lock. Each game being written is counted in one of a few striped counters, picked by thread, and close() waits
+ * for them all to drain, so the file is never closed under a game being written.<p>
+ * The best games of each mode are kept in a small sorted index per mode, each with its own lock, so top-N
+ * questions never read the file. Most games are nowhere near the top, and are turned away by comparing them to
+ * the worst game in the index without taking the lock at all. Games are ranked by treasures found, then final
+ * gold, then fewest turns; earlier games win ties.<p>
+ * File layout: a header (MAGIC, VERSION) padded to HEADER_SIZE, then RECORD_SIZE byte records:
+ * a state byte, the mode, the result, the length of the name, the turns, the gold, the treasure slots
+ * (see Hunter.getTreasureSlots()), the seed and up to MAX_NAME_BYTES bytes of the hunter's name.
+ * The state byte is written last, so a record cut off by a crash is skipped when the file is opened again, as is
+ * a record whose mode, result or name length is out of range.<p>
+ * Usage: java Leaderboard [file] [mode] [entries] prints the best games in a leaderboard file.
+ */
+
+public class Leaderboard implements Closeable {
+    // constants
+    public static final int MAGIC = 0x54484C31; // "THL1"
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 64;
+    public static final int MAX_NAME_BYTES = 40;
+    public static final int DEFAULT_INDEX_SIZE = 100;
+    private static final int SEGMENT_BITS = 16;
+    private static final int RECORDS_PER_SEGMENT = 1 << SEGMENT_BITS; // 4 MB of records per segment
+    private static final long SEGMENT_SIZE = (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+    private static final byte WRITTEN = 1;
+    private static final int MODE = 1;
+    private static final int RESULT = 2;
+    private static final int NAME_LENGTH = 3;
+    private static final int TURNS = 4;
+    private static final int GOLD = 8;
+    private static final int TREASURES = 12;
+    private static final int SEED = 16;
+    private static final int NAME = 24;
+    private static final GameMode[] MODES = GameMode.values();
+    private static final GameResult[] RESULTS = GameResult.values();
+    private static final int STRIPE_SPACING = 8; // longs between stripes, so each one has its own cache line
+
+    // instance variables
+    private FileChannel channel;
+    private volatile MappedByteBuffer[] segments; // only grows, under the Leaderboard's lock
+    private AtomicLong nextRecord;
+    private ModeIndex[] indexes;
+    private volatile EncodedName lastName; // most games in a run share a name, so it is only encoded once
+    private AtomicLongArray writing; // games being written, striped by thread (see stripe())
+    private int stripeMask;
+    private volatile boolean closed;
+
+    /**
+     * Opens a leaderboard file, creating it if it doesn't exist. The best games already in the file are read
+     * back into the index.
+     *
+     * @param file The leaderboard file.
+     * @param indexSize The number of games kept in memory for each mode.
+     * @throws IOException If the file can't be opened, or isn't a leaderboard file.
+     */
+    public Leaderboard(Path file, int indexSize) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segments = new MappedByteBuffer[0];
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+        writing = new AtomicLongArray(stripes * STRIPE_SPACING);
+        stripeMask = stripes - 1;
+        closed = false;
+        indexes = new ModeIndex[MODES.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new ModeIndex(indexSize);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() == 0) {
+            header.putInt(MAGIC);
+            header.put(VERSION);
+            header.rewind();
+            channel.write(header, 0);
+            nextRecord = new AtomicLong();
+        } else {
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 5 || header.getInt() != MAGIC || header.get() != VERSION) {
+                channel.close();
+                throw new IOException(file + " is not a leaderboard file");
+            }
+            nextRecord = new AtomicLong(load());
+        }
+    }
+
+    /**
+     * Opens a leaderboard file that keeps DEFAULT_INDEX_SIZE games in memory for each mode.
+     *
+     * @param file The leaderboard file.
+     * @throws IOException If the file can't be opened, or isn't a leaderboard file.
+     */
+    public Leaderboard(Path file) throws IOException {
+        this(file, DEFAULT_INDEX_SIZE);
+    }
+
+    /**
+     * Adds a finished game to the leaderboard. Safe to call from any number of threads at once.
+     *
+     * @param game The finished game.
+     * @return The game's record number.
+     * @throws IllegalStateException If the leaderboard has been closed.
+     */
+    public long record(TreasureHunter game) {
+        Hunter hunter = game.getHunter();
+        GameResult result;
+        if (game.isGameWon()) {
+            result = GameResult.WON;
+        } else if (hunter.isBankrupt()) {
+            result = GameResult.BANKRUPT;
+        } else {
+            result = GameResult.QUIT;
+        }
+        return record(hunter.getHunterName(), game.getMode(), result, game.getTurns(), hunter.getGold(),
+                hunter.getTreasureSlots(), hunter.getTreasureCount(), game.getSeed());
+    }
+
+    /**
+     * Lists the best games of a mode, best first.
+     *
+     * @param mode The mode.
+     * @param count The most games to list.
+     * @return A new list of up to count games.
+     */
+    public List<LeaderboardEntry> getTop(GameMode mode, int count) {
+        return indexes[mode.ordinal()].getTop(count);
+    }
+
+    /**
+     * @return The number of games recorded in the file.
+     */
+    public long getCount() {
+        return nextRecord.get();
+    }
+
+    /**
+     * Waits for the games being recorded, then writes everything to disk and trims the unused end of the file.
+     * No games can be recorded once the leaderboard is closing. Closing it again does nothing.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // a game that started writing before closed was set is counted in its stripe until it is done
+        for (int i = 0; i < writing.length(); i += STRIPE_SPACING) {
+            while (writing.get(i) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        channel.truncate(HEADER_SIZE + nextRecord.get() * RECORD_SIZE);
+        channel.close();
+    }
+
+    private long record(String name, GameMode mode, GameResult result, int turns, int gold, int treasureSlots,
+                        int treasureCount, long seed) {
+        // the game is counted before closed is checked, so close() either sees it or it sees closed
+        int stripe = stripe();
+        writing.incrementAndGet(stripe);
+        try {
+            if (closed) {
+                throw new IllegalStateException("The leaderboard is closed");
+            }
+            return write(name, mode, result, turns, gold, treasureSlots, treasureCount, seed);
+        } finally {
+            writing.decrementAndGet(stripe);
+        }
+    }
+
+    /**
+     * @return The index in writing of the current thread's stripe. A game is counted and uncounted in the same
+     *         stripe, so a stripe that reads 0 has nobody writing in it.
+     */
+    private int stripe() {
+        int hash = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        return ((hash >>> 16) & stripeMask) * STRIPE_SPACING;
+    }
+
+    private long write(String name, GameMode mode, GameResult result, int turns, int gold, int treasureSlots,
+                       int treasureCount, long seed) {
+        long recordNumber = nextRecord.getAndIncrement();
+        MappedByteBuffer segment = segment((int) (recordNumber >>> SEGMENT_BITS));
+        int offset = (int) (recordNumber & (RECORDS_PER_SEGMENT - 1)) * RECORD_SIZE;
+        byte[] nameBytes = encode(name);
+
+        segment.put(offset + MODE, (byte) mode.ordinal());
+        segment.put(offset + RESULT, (byte) result.ordinal());
+        segment.put(offset + NAME_LENGTH, (byte) nameBytes.length);
+        segment.putInt(offset + TURNS, turns);
+        segment.putInt(offset + GOLD, gold);
+        segment.putInt(offset + TREASURES, treasureSlots);
+        segment.putLong(offset + SEED, seed);
+        segment.put(offset + NAME, nameBytes, 0, nameBytes.length);
+        // the state goes in last, so a half-written record is never read
+        segment.put(offset, WRITTEN);
+
+        indexes[mode.ordinal()].offer(rank(treasureCount, gold, turns), recordNumber, name, mode, result, turns,
+                gold, treasureSlots, seed);
+        return recordNumber;
+    }
+
+    /**
+     * Reads every game in the file into the indexes.
+     *
+     * @return The number of records in the file, up to the last one that was written.
+     * @throws IOException If the file can't be mapped.
+     */
+    private long load() throws IOException {
+        long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        long count = 0;
+        for (long recordNumber = 0; recordNumber < records; recordNumber++) {
+            MappedByteBuffer segment = segment((int) (recordNumber >>> SEGMENT_BITS));
+            int offset = (int) (recordNumber & (RECORDS_PER_SEGMENT - 1)) * RECORD_SIZE;
+            int modeIndex = segment.get(offset + MODE);
+            int resultIndex = segment.get(offset + RESULT);
+            int nameLength = segment.get(offset + NAME_LENGTH);
+            if (segment.get(offset) != WRITTEN || modeIndex < 0 || modeIndex >= MODES.length || resultIndex < 0
+                    || resultIndex >= RESULTS.length || nameLength < 0 || nameLength > MAX_NAME_BYTES) {
+                continue;
+            }
+            byte[] nameBytes = new byte[nameLength];
+            segment.get(offset + NAME, nameBytes);
+            GameMode mode = MODES[modeIndex];
+            int turns = segment.getInt(offset + TURNS);
+            int gold = segment.getInt(offset + GOLD);
+            int treasureSlots = segment.getInt(offset + TREASURES);
+            LeaderboardEntry entry = new LeaderboardEntry(recordNumber, new String(nameBytes, StandardCharsets.UTF_8),
+                    mode, RESULTS[resultIndex], turns, gold, treasureSlots,
+                    segment.getLong(offset + SEED));
+            indexes[mode.ordinal()].offer(rank(entry.getTreasureCount(), gold, turns), entry);
+            count = recordNumber + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the segment of the file a record is in, mapping it if nobody has yet.
+     *
+     * @param index The segment's number.
+     * @return The mapped segment.
+     */
+    private MappedByteBuffer segment(int index) {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length && mapped[index] != null) {
+            return mapped[index];
+        }
+        return mapSegment(index);
+    }
+
+    /**
+     * Maps a segment into a new copy of the array, so a thread reading the array it got before never sees a
+     * segment filled in without the volatile write that publishes it.
+     */
+    private synchronized MappedByteBuffer mapSegment(int index) {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length && mapped[index] != null) {
+            return mapped[index];
+        }
+        mapped = Arrays.copyOf(mapped, Math.max(index + 1, mapped.length * 2));
+        try {
+            mapped[index] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * SEGMENT_SIZE,
+                    SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments = mapped;
+        return mapped[index];
+    }
+
+    /**
+     * @return The name as UTF-8, cut to MAX_NAME_BYTES without splitting a character.
+     */
+    private byte[] encode(String name) {
+        EncodedName last = lastName;
+        if (last != null && last.name == name) {
+            return last.bytes;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_BYTES) {
+            int length = MAX_NAME_BYTES;
+            while ((bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+            bytes = Arrays.copyOf(bytes, length);
+        }
+        lastName = new EncodedName(name, bytes);
+        return bytes;
+    }
+
+    /**
+     * Packs a game's score into one number that is bigger for better games:
+     * the treasures on top, then the gold, then the turns counted down.
+     */
+    private static long rank(int treasureCount, int gold, int turns) {
+        long goldBits = (gold & 0xFFFFFFFFL) ^ 0x80000000L; // sorts negative gold below zero
+        long turnsBits = 0xFFFFFF - Math.min(turns, 0xFFFFFF);
+        return ((long) treasureCount << 56) | (goldBits << 24) | turnsBits;
+    }
+
+    /**
+     * The best games of one mode, sorted best first.
+     */
+    private static class ModeIndex {
+        private long[] ranks;
+        private LeaderboardEntry[] entries;
+        private int size;
+        private volatile long cutoff; // a game must rank above this to get in
+
+        ModeIndex(int capacity) {
+            ranks = new long[capacity];
+            entries = new LeaderboardEntry[capacity];
+            cutoff = Long.MIN_VALUE;
+        }
+
+        /**
+         * Adds a game if it is good enough, building its entry only if it gets in.
+         */
+        void offer(long rank, long recordNumber, String name, GameMode mode, GameResult result, int turns, int gold,
+                   int treasureSlots, long seed) {
+            if (rank <= cutoff) {
+                return;
+            }
+            synchronized (this) {
+                if (rank <= cutoff) {
+                    return;
+                }
+                insert(rank, new LeaderboardEntry(recordNumber, name, mode, result, turns, gold, treasureSlots,
+                        seed));
+            }
+        }
+
+        synchronized void offer(long rank, LeaderboardEntry entry) {
+            if (rank > cutoff) {
+                insert(rank, entry);
+            }
+        }
+
+        synchronized List<LeaderboardEntry> getTop(int count) {
+            int length = Math.min(count, size);
+            List<LeaderboardEntry> top = new ArrayList<LeaderboardEntry>(length);
+            for (int i = 0; i < length; i++) {
+                top.add(entries[i]);
+            }
+            return top;
+        }
+
+        private void insert(long rank, LeaderboardEntry entry) {
+            // goes after every game ranked the same or better
+            int position = size;
+            while (position > 0 && ranks[position - 1] < rank) {
+                position--;
+            }
+            int moved = Math.min(size, ranks.length - 1) - position;
+            System.arraycopy(ranks, position, ranks, position + 1, moved);
+            System.arraycopy(entries, position, entries, position + 1, moved);
+            ranks[position] = rank;
+            entries[position] = entry;
+            if (size < ranks.length) {
+                size++;
+            }
+            if (size == ranks.length) {
+                cutoff = ranks[size - 1];
+            }
+        }
+    }
+
+    /**
+     * A name and its UTF-8 bytes.
+     */
+    private static class EncodedName {
+        private final String name;
+        private final byte[] bytes;
+
+        EncodedName(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get("leaderboard.thl");
+        GameMode[] modes = MODES;
+        int count = 10;
+        if (args.length > 0) {
+            file = Paths.get(args[0]);
+        }
+        if (args.length > 1) {
+            modes = new GameMode[] {GameMode.valueOf(args[1].toUpperCase())};
+        }
+        if (args.length > 2) {
+            count = Integer.parseInt(args[2]);
+        }
+        if (!Files.isRegularFile(file)) {
+            System.out.println("No leaderboard at " + file);
+            return;
+        }
+
+        try (Leaderboard leaderboard = new Leaderboard(file, count)) {
+            System.out.println(leaderboard.getCount() + " games in " + file);
+            for (GameMode mode : modes) {
+                System.out.println("--- " + mode);
+                int place = 1;
+                for (LeaderboardEntry entry : leaderboard.getTop(mode, count)) {
+                    System.out.println(place + ". " + entry);
+                    place++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * A LeaderboardEntry is one finished game on the Leaderboard: who played it, in which mode, how it ended,
+ * how many turns it took, the gold the hunter ended with and the treasures they found.
+ */
+
+public final class LeaderboardEntry {
+    // instance variables
+    private final long recordNumber;
+    private final String hunterName;
+    private final GameMode mode;
+    private final GameResult result;
+    private final int turns;
+    private final int gold;
+    private final int treasureSlots;
+    private final int treasureCount;
+    private final long seed;
+
+    /**
+     * @param recordNumber Where the game is in the leaderboard file, counting from 0.
+     * @param hunterName The hunter's name.
+     * @param mode The game's mode.
+     * @param result How the game ended.
+     * @param turns The number of turns played.
+     * @param gold The hunter's gold at the end.
+     * @param treasureSlots The hunter's treasures, packed like Hunter.getTreasureSlots().
+     * @param seed The game's seed, so it can be replayed.
+     */
+    public LeaderboardEntry(long recordNumber, String hunterName, GameMode mode, GameResult result, int turns,
+                            int gold, int treasureSlots, long seed) {
+        this.recordNumber = recordNumber;
+        this.hunterName = hunterName;
+        this.mode = mode;
+        this.result = result;
+        this.turns = turns;
+        this.gold = gold;
+        this.treasureSlots = treasureSlots;
+        this.seed = seed;
+        treasureCount = Hunter.getTreasureCount(treasureSlots);
+    }
+
+    // accessors
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    public String getHunterName() {
+        return hunterName;
+    }
+
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public GameResult getResult() {
+        return result;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getTreasureCount() {
+        return treasureCount;
+    }
+
+    /**
+     * @return A new array of the treasure names in the order they were found, with null for each empty slot.
+     */
+    public String[] getTreasureList() {
+        return Hunter.getTreasureList(treasureSlots);
+    }
+
+    public String toString() {
+        String str = hunterName + " (" + mode + ") " + result + " in " + turns + " turns with " + gold + " gold";
+        String[] treasures = getTreasureList();
+        String found = "";
+        for (String treasure : treasures) {
+            if (treasure != null) {
+                if (!found.isEmpty()) {
+                    found += ", ";
+                }
+                found += treasure;
+            }
+        }
+        if (!found.isEmpty()) {
+            str += " and " + found;
+        }
+        str += ", seed " + seed;
+        return str;
+    }
+}
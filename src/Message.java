@@ -0,0 +1,137 @@
+/**
+ * A Message is a MessageTemplate together with the values for its gaps. It is meant to be kept and reused:
+ * setting a new template or value only stores it, and the text is only built when somebody asks for it,
+ * in a buffer the Message keeps. So a game that nobody is watching never builds any of its messages.<p>
+ * The setters return the Message, so they can be chained:
+ * news.set(Messages.CROSSED).item(item).terrain(terrain)
+ */
+
+public final class Message {
+    // instance variables
+    private MessageTemplate template;
+    private String name;
+    private int gold;
+    private Item item;
+    private Terrain terrain;
+    private Treasure treasure;
+    private StringBuilder buffer;
+    private String rendered; // the text, until something changes
+
+    /**
+     * @param template The message's first template.
+     */
+    public Message(MessageTemplate template) {
+        buffer = new StringBuilder(128);
+        set(template);
+    }
+
+    /**
+     * @param template The new template. The values set for the old one are kept.
+     * @return this Message.
+     */
+    public Message set(MessageTemplate template) {
+        this.template = template;
+        rendered = null;
+        return this;
+    }
+
+    public Message name(String name) {
+        this.name = name;
+        rendered = null;
+        return this;
+    }
+
+    public Message gold(int gold) {
+        this.gold = gold;
+        rendered = null;
+        return this;
+    }
+
+    public Message item(Item item) {
+        this.item = item;
+        rendered = null;
+        return this;
+    }
+
+    public Message terrain(Terrain terrain) {
+        this.terrain = terrain;
+        rendered = null;
+        return this;
+    }
+
+    public Message treasure(Treasure treasure) {
+        this.treasure = treasure;
+        rendered = null;
+        return this;
+    }
+
+    public MessageTemplate getTemplate() {
+        return template;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    public Treasure getTreasure() {
+        return treasure;
+    }
+
+    /**
+     * Builds the message's text, if it has changed since the last time it was asked for.
+     * A template without slots gives back its own text without building anything.
+     *
+     * @return The message's text.
+     */
+    public String getText() {
+        if (rendered == null) {
+            if (!template.hasSlots()) {
+                rendered = template.getText();
+            } else {
+                buffer.setLength(0);
+                template.renderTo(buffer, this);
+                rendered = buffer.toString();
+            }
+        }
+        return rendered;
+    }
+
+    public String toString() {
+        return getText();
+    }
+
+    /**
+     * Writes the value for one of the template's gaps.
+     */
+    void appendSlot(StringBuilder out, MessageTemplate.Slot slot) {
+        switch (slot) {
+            case NAME:
+                out.append(name);
+                break;
+            case GOLD:
+                out.append(gold);
+                break;
+            case ITEM:
+                out.append(item);
+                break;
+            case TERRAIN:
+                out.append(terrain.getTerrainName());
+                break;
+            default:
+                out.append(treasure);
+                break;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+
+/**
+ * A MessageTemplate is a message with typed gaps in it, like "You found {treasure}!", split up once when
+ * the game loads so it never has to be parsed again.<p>
+ * A pattern can use the slots {name}, {gold}, {item}, {terrain} and {treasure}, and the colors {red},
+ * {green}, {yellow}, {cyan} and {reset}, which are turned into their ANSI codes when the template is compiled.
+ * The values for the slots come from a Message, which renders the template into a reusable buffer.
+ */
+
+public final class MessageTemplate {
+    /**
+     * The kinds of value a template's gaps can hold.
+     */
+    public enum Slot {
+        NAME, GOLD, ITEM, TERRAIN, TREASURE
+    }
+
+    // constants
+    private static final Slot[] SLOTS = Slot.values();
+
+    // instance variables
+    private final String[] literals; // the text around the slots, one more than there are slots
+    private final Slot[] slots;
+    private final String text; // the whole message, if it has no slots
+
+    private MessageTemplate(String[] literals, Slot[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        if (slots.length == 0) {
+            text = literals[0];
+        } else {
+            text = null;
+        }
+    }
+
+    /**
+     * Splits a pattern into its text and its slots.
+     *
+     * @param pattern The message, with {slot} and {color} gaps.
+     * @return The compiled template.
+     * @throws IllegalArgumentException If the pattern has an unknown gap.
+     */
+    public static MessageTemplate compile(String pattern) {
+        ArrayList<String> literals = new ArrayList<String>();
+        ArrayList<Slot> slots = new ArrayList<Slot>();
+        StringBuilder literal = new StringBuilder();
+        int position = 0;
+        while (position < pattern.length()) {
+            int open = pattern.indexOf('{', position);
+            if (open < 0) {
+                literal.append(pattern, position, pattern.length());
+                break;
+            }
+            int close = pattern.indexOf('}', open);
+            literal.append(pattern, position, open);
+            String gap = pattern.substring(open + 1, close);
+            String color = colorFor(gap);
+            if (color != null) {
+                literal.append(color);
+            } else {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(slotFor(gap));
+            }
+            position = close + 1;
+        }
+        literals.add(literal.toString());
+        return new MessageTemplate(literals.toArray(new String[0]), slots.toArray(new Slot[0]));
+    }
+
+    /**
+     * @return true if the template has gaps to fill in.
+     */
+    public boolean hasSlots() {
+        return slots.length > 0;
+    }
+
+    /**
+     * @return The whole message, for a template without slots.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Writes the message, filling in the gaps with a Message's values.
+     *
+     * @param buffer Where the message is written.
+     * @param values The values for the gaps.
+     */
+    void renderTo(StringBuilder buffer, Message values) {
+        for (int i = 0; i < slots.length; i++) {
+            buffer.append(literals[i]);
+            values.appendSlot(buffer, slots[i]);
+        }
+        buffer.append(literals[slots.length]);
+    }
+
+    private static Slot slotFor(String gap) {
+        for (Slot slot : SLOTS) {
+            if (slot.name().equalsIgnoreCase(gap)) {
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException("Unknown message slot {" + gap + "}");
+    }
+
+    private static String colorFor(String gap) {
+        if (gap.equals("red")) {
+            return Colors.RED;
+        } else if (gap.equals("green")) {
+            return Colors.GREEN;
+        } else if (gap.equals("yellow")) {
+            return Colors.YELLOW;
+        } else if (gap.equals("cyan")) {
+            return Colors.CYAN;
+        } else if (gap.equals("reset")) {
+            return Colors.RESET;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * The Messages class holds every message a town sends the hunter, compiled once as
+ * MessageTemplates (see MessageTemplate for the {slot} and {color} gaps).<p>
+ * It also holds DISCARD, the output for games that nobody is watching: games printing to it skip
+ * building their messages altogether instead of building them only to throw them away.
+ */
+
+public class Messages {
+    // constants
+    public static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    public static final MessageTemplate NONE = MessageTemplate.compile("");
+
+    // the town's news
+    public static final MessageTemplate WELCOME_TOUGH = MessageTemplate.compile(
+            "Welcome to town, {name}.\nIt's pretty rough around here, so watch yourself.");
+    public static final MessageTemplate WELCOME_MILD = MessageTemplate.compile(
+            "Welcome to town, {name}.\nWe're just a sleepy little town with mild mannered folk.");
+    public static final MessageTemplate CROSSED = MessageTemplate.compile(
+            "You used your {item} to cross the {terrain}.");
+    public static final MessageTemplate CROSSED_AND_BROKE = MessageTemplate.compile(
+            "You used your {item} to cross the {terrain}.\nUnfortunately, you lost your  {item}");
+    public static final MessageTemplate CANT_LEAVE = MessageTemplate.compile(
+            "You can't leave town, {name}. You don't have a {item}.");
+    public static final MessageTemplate LEFT_SHOP = MessageTemplate.compile("You left the shop");
+    public static final MessageTemplate NO_TROUBLE = MessageTemplate.compile("You couldn't find any trouble");
+    private static final String BRAWL = "{red}You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n{reset}";
+    private static final String BRAWL_WIN = "{red}Okay, stranger! You proved yer mettle. Here, take my gold.{reset}"
+            + "\nYou won the brawl and receive {yellow}{gold}{reset} gold.";
+    public static final MessageTemplate BRAWL_WON = MessageTemplate.compile(BRAWL + BRAWL_WIN);
+    public static final MessageTemplate BRAWL_WON_WITH_SWORD = MessageTemplate.compile(
+            BRAWL + "Your opponent sees your sword and gets intimidated " + BRAWL_WIN);
+    public static final MessageTemplate BRAWL_LOST = MessageTemplate.compile(
+            BRAWL + "{red}That'll teach you to go lookin' fer trouble in MY town! Now pay up!{reset}"
+                    + "\nYou lost the brawl and pay {gold} gold.");
+
+    // printed straight away while hunting and digging
+    public static final MessageTemplate ALREADY_COLLECTED = MessageTemplate.compile(
+            "You have already collected {green}{treasure}{reset}");
+    public static final MessageTemplate ALREADY_SEARCHED = MessageTemplate.compile("You have already searched this town!");
+    public static final MessageTemplate FOUND_DUST = MessageTemplate.compile(
+            "You found dust! (nothing has been added to your inventory)");
+    public static final MessageTemplate FOUND_TREASURE = MessageTemplate.compile("You found {green}{treasure}{reset}!");
+    public static final MessageTemplate DUG_GOLD = MessageTemplate.compile(
+            "You have gained {yellow}{gold}{reset} gold from digging!");
+    public static final MessageTemplate DUG_DIRT = MessageTemplate.compile("You dug but only found dirt");
+    public static final MessageTemplate ALREADY_DUG = MessageTemplate.compile("You have already dug in this town for gold!");
+    public static final MessageTemplate NO_SHOVEL = MessageTemplate.compile("You can't dig for gold without a shovel!");
+
+    // every template the town's news can hold, so news can be kept as its number (see CompactSession)
+    private static final MessageTemplate[] NEWS = {NONE, WELCOME_TOUGH, WELCOME_MILD, CROSSED, CROSSED_AND_BROKE,
+            CANT_LEAVE, LEFT_SHOP, NO_TROUBLE, BRAWL_WON, BRAWL_WON_WITH_SWORD, BRAWL_LOST};
+
+    /**
+     * @param out A game's output.
+     * @return true if nothing printed to it is ever read, so there's no need to build any messages for it.
+     */
+    public static boolean isDiscarded(PrintStream out) {
+        return out == DISCARD;
+    }
+
+    /**
+     * @param template A template the town's news can hold.
+     * @return The template's number, for newsTemplate().
+     * @throws IllegalArgumentException If the template isn't one the news can hold.
+     */
+    public static int newsId(MessageTemplate template) {
+        for (int id = 0; id < NEWS.length; id++) {
+            if (NEWS[id] == template) {
+                return id;
+            }
+        }
+        throw new IllegalArgumentException("Not a news template: " + template);
+    }
+
+    /**
+     * @param id A number from newsId().
+     * @return The template with that number.
+     */
+    public static MessageTemplate newsTemplate(int id) {
+        return NEWS[id];
+    }
+
+    /**
+     * Prints a message, unless the output is DISCARD.
+     *
+     * @param out Where the message is printed.
+     * @param message The message.
+     */
+    public static void println(PrintStream out, Message message) {
+        if (out != DISCARD) {
+            out.println(message.getText());
+        }
+    }
+}
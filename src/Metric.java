@@ -0,0 +1,42 @@
+/**
+ * The Metric enum lists the game events GameMetrics counts.
+ */
+
+public enum Metric {
+    GAMES_STARTED("games_started", "Games started"),
+    GAMES_WON("games_won", "Games won by collecting all three treasures"),
+    GAMES_BANKRUPT("games_bankrupt", "Games lost by running out of gold"),
+    ITEMS_BOUGHT("items_bought", "Items bought at the shop"),
+    ITEMS_SOLD("items_sold", "Items sold at the shop"),
+    TRADES_REFUSED("trades_refused", "Purchases and sales the shop turned down"),
+    TROUBLE_NOT_FOUND("trouble_not_found", "Times the hunter looked for trouble and found none"),
+    BRAWLS_WON("brawls_won", "Brawls won"),
+    BRAWLS_LOST("brawls_lost", "Brawls lost"),
+    TREASURES_FOUND("treasures_found", "Treasures added to a hunter's collection"),
+    DUST_FOUND("dust_found", "Searches that only turned up dust"),
+    DIGS_WITH_GOLD("digs_with_gold", "Digs that found gold"),
+    DIGS_WITH_DIRT("digs_with_dirt", "Digs that only found dirt"),
+    ITEMS_BROKEN("items_broken", "Items lost while crossing terrain");
+
+    // instance variables
+    private final String key;
+    private final String help;
+
+    /**
+     * @param key The metric's name in the text, JSON and Prometheus dumps.
+     * @param help What the metric counts.
+     */
+    Metric(String key, String help) {
+        this.key = key;
+        this.help = help;
+    }
+
+    // accessors
+    public String getKey() {
+        return key;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+}
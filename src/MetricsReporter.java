@@ -0,0 +1,107 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The MetricsReporter shows GameMetrics outside the game: on a local HTTP port, and as a dump printed every
+ * few seconds.<p>
+ * The port serves /metrics in the Prometheus text format and /metrics.json as JSON. It only listens on the
+ * loopback address, so the numbers aren't shown to the whole network.
+ */
+
+public class MetricsReporter implements Closeable {
+    // instance variables
+    private HttpServer server;
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Creates a reporter that doesn't report anything until serve() or dumpEvery() is called.
+     */
+    public MetricsReporter() {
+        server = null;
+        dumper = null;
+    }
+
+    /**
+     * Starts serving the metrics over HTTP.
+     *
+     * @param port The local port to listen on, or 0 for any free port.
+     * @throws IOException If the port can't be opened.
+     */
+    public void serve(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/metrics.json")) {
+                respond(exchange, "application/json", GameMetrics::toJson);
+            } else {
+                respond(exchange, "text/plain; version=0.0.4; charset=utf-8", GameMetrics::toPrometheus);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Prints the metrics every so often, on a background thread.
+     *
+     * @param out Where the metrics are printed.
+     * @param seconds How many seconds apart the dumps are.
+     * @param json Whether to print JSON (one line per dump) instead of text.
+     */
+    public void dumpEvery(PrintStream out, long seconds, boolean json) {
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            if (json) {
+                out.println(GameMetrics.toJson());
+            } else {
+                out.print(GameMetrics.toText());
+            }
+            out.flush();
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return The port the metrics are served on, or -1 if they aren't.
+     */
+    public int getPort() {
+        if (server == null) {
+            return -1;
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving and dumping the metrics.
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (dumper != null) {
+            dumper.shutdown();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, Supplier<String> body) throws IOException {
+        byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * The ModeStats class keeps running totals for the finished games of one mode: how often they were won,
+ * how many turns winning took, how much gold the hunters ended with, and which terrain's item the hunters
+ * were most often stuck in town without.<p>
+ * It takes the same small, fixed amount of memory however many games it has seen, since turns and gold
+ * go into QuantileSketches instead of being kept. Like SimulationStats, each thread fills in its own and
+ * they are combined with merge().
+ */
+
+public class ModeStats {
+    // constants
+    private static final Terrain[] TERRAINS = Terrain.values();
+
+    // instance variables
+    private GameMode mode;
+    private long games;
+    private long wins;
+    private long bankruptcies;
+    private long quits;
+    private QuantileSketch turnsToWin;
+    private QuantileSketch gold;
+    private long[] stalls; // by terrain, since each terrain needs its own item
+
+    /**
+     * @param mode The mode whose games are added up.
+     */
+    public ModeStats(GameMode mode) {
+        this.mode = mode;
+        turnsToWin = new QuantileSketch();
+        gold = new QuantileSketch();
+        stalls = new long[TERRAINS.length];
+    }
+
+    /**
+     * Adds a finished game.
+     *
+     * @param game A finished game in this mode.
+     */
+    public void record(TreasureHunter game) {
+        GameOutcome outcome = game.getOutcome();
+        games++;
+        if (outcome.getResult() == GameResult.WON) {
+            wins++;
+            turnsToWin.add(outcome.getTurns());
+        } else if (outcome.getResult() == GameResult.BANKRUPT) {
+            bankruptcies++;
+        } else {
+            quits++;
+        }
+        gold.add(outcome.getGold());
+        for (int i = 0; i < TERRAINS.length; i++) {
+            stalls[i] += game.getStalls(TERRAINS[i].getNeededItem());
+        }
+    }
+
+    /**
+     * Adds the totals of another ModeStats for the same mode into this one.
+     *
+     * @param other The stats to add.
+     * @return this ModeStats, so merges can be chained.
+     */
+    public ModeStats merge(ModeStats other) {
+        games += other.games;
+        wins += other.wins;
+        bankruptcies += other.bankruptcies;
+        quits += other.quits;
+        turnsToWin.merge(other.turnsToWin);
+        gold.merge(other.gold);
+        for (int i = 0; i < TERRAINS.length; i++) {
+            stalls[i] += other.stalls[i];
+        }
+        return this;
+    }
+
+    /**
+     * Forgets every game added so far.
+     */
+    public void reset() {
+        games = 0;
+        wins = 0;
+        bankruptcies = 0;
+        quits = 0;
+        turnsToWin.reset();
+        gold.reset();
+        for (int i = 0; i < TERRAINS.length; i++) {
+            stalls[i] = 0;
+        }
+    }
+
+    // accessors
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getBankruptcies() {
+        return bankruptcies;
+    }
+
+    public long getQuits() {
+        return quits;
+    }
+
+    /**
+     * @return The turns it took to win, counting only won games.
+     */
+    public QuantileSketch getTurnsToWin() {
+        return turnsToWin;
+    }
+
+    /**
+     * @return The gold the hunters finished with.
+     */
+    public QuantileSketch getGold() {
+        return gold;
+    }
+
+    /**
+     * @return The fraction of games that were won, or 0 if no games were played.
+     */
+    public double getWinRate() {
+        if (games == 0) {
+            return 0;
+        }
+        return (double) wins / games;
+    }
+
+    /**
+     * @param terrain A terrain.
+     * @return The number of times hunters couldn't leave a town surrounded by that terrain.
+     */
+    public long getStalls(Terrain terrain) {
+        return stalls[terrain.ordinal()];
+    }
+
+    /**
+     * @return The total number of times hunters couldn't leave town.
+     */
+    public long getTotalStalls() {
+        long total = 0;
+        for (long count : stalls) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return The terrain whose needed item hunters were most often stuck without, or null if nobody got stuck.
+     */
+    public Terrain getMostStalledTerrain() {
+        Terrain worst = null;
+        long worstStalls = 0;
+        for (int i = 0; i < TERRAINS.length; i++) {
+            if (stalls[i] > worstStalls) {
+                worst = TERRAINS[i];
+                worstStalls = stalls[i];
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * @return A printable summary of the stats.
+     */
+    public String toString() {
+        String str = mode + ": " + games + " games, won " + String.format("%.2f", getWinRate() * 100) + "%, ran out of gold "
+                + bankruptcies + ", gave up " + quits + "\n";
+        str += "  Turns to win: mean " + String.format("%.2f", turnsToWin.getMean()) + ", median "
+                + turnsToWin.getQuantile(0.5) + ", p90 " + turnsToWin.getQuantile(0.9) + ", p99 "
+                + turnsToWin.getQuantile(0.99) + "\n";
+        str += "  Final gold: mean " + String.format("%.2f", gold.getMean()) + ", p10 " + gold.getQuantile(0.1)
+                + ", median " + gold.getQuantile(0.5) + ", p90 " + gold.getQuantile(0.9) + ", max " + gold.getMax() + "\n";
+        Terrain worst = getMostStalledTerrain();
+        if (worst == null) {
+            str += "  Stalls: none";
+        } else {
+            str += "  Stalls: " + getTotalStalls() + ", most for want of a " + worst.getNeededItem() + " ("
+                    + String.format("%.1f", 100.0 * getStalls(worst) / getTotalStalls()) + "%, "
+                    + worst.getTerrainName() + ")";
+        }
+        return str;
+    }
+}
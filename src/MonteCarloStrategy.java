@@ -0,0 +1,232 @@
+import java.util.SplittableRandom;
+
+/**
+ * The MonteCarloStrategy picks each move with a Monte Carlo tree search: it plays the game ahead many times
+ * on forks of a GameState and makes the move that worked out best.<p>
+ * Every playout starts from a fork with its own guess at the luck to come (see GameView.fork()), so the search
+ * never sees the game's real future. Moves already in the tree are chosen with UCT, the first move after them
+ * is one that hasn't been tried yet, and the rest of the game is played the SimpleStrategy way. A playout is
+ * worth 1 if the hunter wins and a little for each treasure otherwise. The move made is the one tried the most.<p>
+ * The tree is built again for every move, so the strategy keeps nothing between calls. The guesses come from
+ * the strategy's seed and the game's turn and gold, so the same game always gets the same moves.
+ */
+
+public class MonteCarloStrategy implements Strategy {
+    // constants
+    public static final int DEFAULT_ITERATIONS = 2000;
+    private static final Item[] ITEMS = Item.values();
+    private static final Move[] MOVES = allMoves(); // indexed by move id, see allMoves()
+    private static final int BUY = 4;
+    private static final int SELL = BUY + ITEMS.length;
+    private static final int MAX_PLAYOUT_TURNS = 200;
+    private static final double EXPLORATION = 1.4;
+    private static final double TREASURE_REWARD = 0.1;
+
+    // instance variables
+    private int iterations;
+    private long seed;
+
+    /**
+     * @param iterations The number of playouts for each move.
+     * @param seed The seed for the guesses at the luck to come.
+     */
+    public MonteCarloStrategy(int iterations, long seed) {
+        this.iterations = iterations;
+        this.seed = seed;
+    }
+
+    /**
+     * Picks the next move.
+     *
+     * @param game A read-only view of the game being played.
+     * @return The move to make.
+     */
+    @Override
+    public Move nextMove(GameView game) {
+        SplittableRandom random = new SplittableRandom(seed ^ ((long) game.getTurns() << 32) ^ game.getGold());
+        GameState start = game.fork(random.nextLong());
+        Node root = new Node();
+        for (int i = 0; i < iterations; i++) {
+            GameState state = start.fork();
+            state.reseed(random.nextLong());
+            search(root, state, random);
+        }
+
+        Node[] children = root.children;
+        int best = -1;
+        for (int id = 0; children != null && id < children.length; id++) {
+            if (children[id] != null && (best < 0 || children[id].visits > children[best].visits)) {
+                best = id;
+            }
+        }
+        if (best < 0) {
+            return playoutMove(start);
+        }
+        return MOVES[best];
+    }
+
+    @Override
+    public String getName() {
+        return "mcts";
+    }
+
+    /**
+     * Plays one playout down the tree and back, adding what it found to every node on the way.
+     *
+     * @return The playout's reward.
+     */
+    private double search(Node node, GameState state, SplittableRandom random) {
+        double reward;
+        if (state.isGameOver()) {
+            reward = reward(state);
+        } else {
+            if (node.children == null) {
+                node.children = new Node[MOVES.length];
+            }
+            int id = pickUntried(node, state, random);
+            if (id >= 0) {
+                Node child = new Node();
+                node.children[id] = child;
+                state.play(MOVES[id]);
+                reward = playout(state);
+                child.add(reward);
+            } else {
+                id = pickBest(node, state);
+                state.play(MOVES[id]);
+                reward = search(node.children[id], state, random);
+            }
+        }
+        node.add(reward);
+        return reward;
+    }
+
+    /**
+     * @return A legal move that has no node yet, or -1 if every legal move has been tried.
+     */
+    private static int pickUntried(Node node, GameState state, SplittableRandom random) {
+        int untried = 0;
+        int picked = -1;
+        for (int id = 0; id < MOVES.length; id++) {
+            if (node.children[id] == null && isWorthTrying(id, state)) {
+                // picks evenly between the untried moves without listing them
+                untried++;
+                if (random.nextInt(untried) == 0) {
+                    picked = id;
+                }
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * @return The legal move with the best UCT score.
+     */
+    private static int pickBest(Node node, GameState state) {
+        double logVisits = Math.log(node.visits);
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int id = 0; id < MOVES.length; id++) {
+            Node child = node.children[id];
+            if (child != null && isWorthTrying(id, state)) {
+                double score = child.reward / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = id;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Leaves out moves that can't do anything, so no playouts are wasted on them. Looking for trouble is
+     * always worth trying.
+     */
+    private static boolean isWorthTrying(int id, GameState state) {
+        if (id >= SELL) {
+            Item item = ITEMS[id - SELL];
+            return state.hasItem(item) && state.getBuyBackPrice(item) > 0;
+        } else if (id >= BUY) {
+            Item item = ITEMS[id - BUY];
+            int price = state.getPrice(item);
+            return price > 0 && price <= state.getGold() && !state.hasItem(item) && !state.isKitFull();
+        }
+        Move move = MOVES[id];
+        if (move == Move.HUNT) {
+            return !state.isSearched();
+        } else if (move == Move.DIG) {
+            return state.hasItem(Item.SHOVEL) && !state.isDugged();
+        } else if (move == Move.MOVE_ON) {
+            return state.hasItem(state.getTerrain().getNeededItem());
+        }
+        return true;
+    }
+
+    /**
+     * Plays the rest of the game the SimpleStrategy way.
+     *
+     * @return The game's reward.
+     */
+    private static double playout(GameState state) {
+        for (int turn = 0; turn < MAX_PLAYOUT_TURNS && !state.isGameOver(); turn++) {
+            state.play(playoutMove(state));
+        }
+        return reward(state);
+    }
+
+    /**
+     * The SimpleStrategy's move, for a GameState.
+     */
+    private static Move playoutMove(GameState state) {
+        Item needed = state.getTerrain().getNeededItem();
+        if (!state.isSearched()) {
+            return Move.HUNT;
+        } else if (state.hasItem(Item.SHOVEL) && !state.isDugged()) {
+            return Move.DIG;
+        } else if (state.hasItem(needed)) {
+            return Move.MOVE_ON;
+        } else if (state.getGold() >= state.getPrice(needed)) {
+            return Move.buy(needed);
+        } else {
+            return Move.LOOK_FOR_TROUBLE;
+        }
+    }
+
+    private static double reward(GameState state) {
+        if (state.getResult() == GameResult.WON) {
+            return 1;
+        }
+        return state.getTreasureCount() * TREASURE_REWARD;
+    }
+
+    /**
+     * @return Every move a search can make: move on, look for trouble, hunt, dig, then buying and selling each item.
+     */
+    private static Move[] allMoves() {
+        Move[] moves = new Move[4 + 2 * ITEMS.length];
+        moves[0] = Move.MOVE_ON;
+        moves[1] = Move.LOOK_FOR_TROUBLE;
+        moves[2] = Move.HUNT;
+        moves[3] = Move.DIG;
+        for (Item item : ITEMS) {
+            moves[4 + item.ordinal()] = Move.buy(item);
+            moves[4 + ITEMS.length + item.ordinal()] = Move.sell(item);
+        }
+        return moves;
+    }
+
+    /**
+     * A point in the search tree: the moves tried from here and how they worked out. Nodes don't hold a game;
+     * each playout carries its own fork down the tree.
+     */
+    private static class Node {
+        private Node[] children; // indexed by move id, null until the node is searched from
+        private int visits;
+        private double reward;
+
+        private void add(double playoutReward) {
+            visits++;
+            reward += playoutReward;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * A Move is one menu choice, plus the item to trade when the choice is to buy or sell.<p>
+ * Moves never change, and there is only one object for each move, so strategies can return them
+ * on every turn without creating anything.
+ */
+
+public final class Move {
+    // constants
+    public static final Move MOVE_ON = new Move("m", null);
+    public static final Move LOOK_FOR_TROUBLE = new Move("l", null);
+    public static final Move HUNT = new Move("h", null);
+    public static final Move DIG = new Move("d", null);
+    public static final Move QUIT = new Move("x", null);
+    private static final Move[] BUYS = new Move[Item.values().length];
+    private static final Move[] SELLS = new Move[Item.values().length];
+
+    static {
+        for (Item item : Item.values()) {
+            BUYS[item.ordinal()] = new Move("b", item);
+            SELLS[item.ordinal()] = new Move("s", item);
+        }
+    }
+
+    // instance variables
+    private final String choice;
+    private final Item item;
+
+    private Move(String choice, Item item) {
+        this.choice = choice;
+        this.item = item;
+    }
+
+    /**
+     * @param item The item to buy.
+     * @return The move that buys the item.
+     */
+    public static Move buy(Item item) {
+        return BUYS[item.ordinal()];
+    }
+
+    /**
+     * @param item The item to sell.
+     * @return The move that sells the item.
+     */
+    public static Move sell(Item item) {
+        return SELLS[item.ordinal()];
+    }
+
+    // accessors
+    /**
+     * @return The menu letter: b, s, m, l, h, d or x.
+     */
+    public String getChoice() {
+        return choice;
+    }
+
+    /**
+     * @return The item to buy or sell, or null if the move isn't a trade.
+     */
+    public Item getItem() {
+        return item;
+    }
+
+    /**
+     * @return The name of the item to buy or sell, or null if the move isn't a trade.
+     */
+    public String getItemName() {
+        if (item == null) {
+            return null;
+        }
+        return item.getName();
+    }
+
+    public String toString() {
+        if (item == null) {
+            return choice;
+        }
+        return choice + " " + item;
+    }
+}
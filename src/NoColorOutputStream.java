@@ -0,0 +1,56 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The NoColorOutputStream drops ANSI color codes from everything written through it.<p>
+ * It is used in no-color mode for the messages the Town and Shop print directly,
+ * so plain terminals and scripts never see the escape codes.
+ */
+
+public class NoColorOutputStream extends FilterOutputStream {
+    // constants
+    private static final int ESCAPE = 27;
+
+    // instance variables
+    private boolean inCode;
+
+    /**
+     * @param out The stream the plain text is written to.
+     */
+    public NoColorOutputStream(OutputStream out) {
+        super(out);
+        inCode = false;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (b == ESCAPE) {
+            inCode = true;
+        } else if (inCode) {
+            // color codes end with an 'm'
+            inCode = (b != 'm');
+        } else {
+            out.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // copy the runs between color codes in one go instead of a byte at a time
+        int runStart = off;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (inCode || b[i] == ESCAPE) {
+                if (i > runStart) {
+                    out.write(b, runStart, i - runStart);
+                }
+                write(b[i]);
+                runStart = i + 1;
+            }
+        }
+        if (end > runStart) {
+            out.write(b, runStart, end - runStart);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * The OptimalStrategy plays the best move in every situation, as worked out by a TreasureHunterSolver.<p>
+ * The solver only knows about one mode, so each mode needs its own OptimalStrategy.
+ */
+
+public class OptimalStrategy implements Strategy {
+    // instance variables
+    private TreasureHunterSolver solver;
+
+    /**
+     * @param solver A solver that has already been solved.
+     */
+    public OptimalStrategy(TreasureHunterSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Picks the next move.
+     *
+     * @param game A read-only view of the game being played, in the solver's mode.
+     * @return The move to make.
+     */
+    @Override
+    public Move nextMove(GameView game) {
+        return solver.getBestMove(game);
+    }
+
+    @Override
+    public String getName() {
+        return "optimal";
+    }
+}
@@ -0,0 +1,60 @@
+import java.io.BufferedReader;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The PlayerInput class reads the player's answers, one line at a time.<p>
+ * Each game has exactly one PlayerInput, shared by the game and its shops, so there is only one buffer
+ * reading the player's input and no part of the game can swallow lines meant for another.<p>
+ * Before every read it flushes the game's output, so the player always sees the prompt they are answering.
+ */
+
+public class PlayerInput {
+    // constants
+    private static final int BUFFER_SIZE = 256; // answers are short, so a small buffer keeps idle sessions light
+
+    // instance variables
+    private BufferedReader reader;
+    private Flushable prompt;
+    private boolean closed;
+
+    /**
+     * @param in The stream the player types into.
+     * @param prompt The game's output, flushed before each read.
+     */
+    public PlayerInput(InputStream in, Flushable prompt) {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.prompt = prompt;
+        closed = false;
+    }
+
+    /**
+     * Reads the player's next answer.
+     *
+     * @return The next line in lower case, or an empty String once the input has ended.
+     */
+    public String nextLine() {
+        try {
+            prompt.flush();
+            String line = reader.readLine();
+            if (line == null) {
+                closed = true;
+                return "";
+            }
+            return line.toLowerCase();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return true once the player's input has ended (for example, they disconnected).
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * The QuantileSketch keeps the shape of a stream of whole numbers (like gold or turns) in a fixed amount
+ * of memory, however many numbers are added, so quantiles can be read off at any time.<p>
+ * Numbers from -15 to 15 are counted exactly. Bigger numbers are counted in buckets that double in width
+ * every SUB_BUCKETS buckets, so a quantile is never off by more than about 3% of its size.<p>
+ * Sketches are not thread safe: each thread fills in its own and they are combined with merge(),
+ * which gives exactly the sketch that adding every number to one sketch would have.
+ */
+
+public class QuantileSketch {
+    // constants
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // bigger numbers all share the last bucket
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    // instance variables
+    private long[] positive = new long[BUCKETS]; // numbers from 0 up
+    private long[] negative = new long[BUCKETS]; // numbers below 0, by size
+    private long count;
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Adds a number.
+     *
+     * @param value The number.
+     */
+    public void add(long value) {
+        if (value >= 0) {
+            positive[bucketFor(value)]++;
+        } else {
+            negative[bucketFor(-value)]++;
+        }
+        count++;
+        total += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds every number in another sketch into this one.
+     *
+     * @param other The sketch to add.
+     * @return this sketch, so merges can be chained.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            positive[i] += other.positive[i];
+            negative[i] += other.negative[i];
+        }
+        count += other.count;
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Forgets every number added so far.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            positive[i] = 0;
+            negative[i] = 0;
+        }
+        count = 0;
+        total = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    // accessors
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The smallest number added, or 0 if none were.
+     */
+    public long getMin() {
+        if (count == 0) {
+            return 0;
+        }
+        return min;
+    }
+
+    /**
+     * @return The biggest number added, or 0 if none were.
+     */
+    public long getMax() {
+        if (count == 0) {
+            return 0;
+        }
+        return max;
+    }
+
+    /**
+     * @return The average of the numbers added, or 0 if none were.
+     */
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        return (double) total / count;
+    }
+
+    /**
+     * Finds the number that the given share of the numbers were at or under, e.g. 0.5 for the median.
+     *
+     * @param quantile A number from 0 to 1.
+     * @return The middle of the bucket that number fell in, or 0 if no numbers were added.
+     */
+    public long getQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        // the negative numbers come first, biggest size first
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            seen += negative[i];
+            if (seen >= target) {
+                return clamp(-middleOf(i));
+            }
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += positive[i];
+            if (seen >= target) {
+                return clamp(middleOf(i));
+            }
+        }
+        return max;
+    }
+
+    private long clamp(long value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Finds a number's bucket: numbers under SUB_BUCKETS get a bucket each, and every doubling after that
+     * is split into SUB_BUCKETS buckets.
+     */
+    private static int bucketFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The number in the middle of a bucket.
+     */
+    private static long middleOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) - 1) / 2;
+    }
+}
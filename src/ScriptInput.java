@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * The ScriptInput class feeds a game its answers from a script instead of a player, for TreasureHunterBatch.<p>
+ * A script holds exactly the lines a player would type: the name, the mode, menu choices, the item names
+ * and y/n answers asked for by the shop. Several games can follow each other in one script, separated by
+ * a line holding only SEPARATOR; when a game reaches the separator it sees the end of its input.<p>
+ * Lines are read straight from the bytes into a reused buffer, and any line that is one of the game's
+ * known answers (menu letters, y/n, modes, directions and item names) is returned as a shared String,
+ * so playing a script doesn't create a String for every line. Only other lines, like the hunter's name,
+ * get a String of their own.
+ */
+
+public class ScriptInput extends PlayerInput {
+    // constants
+    public static final String SEPARATOR = "---";
+    private static final int BUFFER_SIZE = 8192;
+
+    // instance variables
+    private InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private byte[] line;
+    private int lineLength;
+    private boolean gameEnded; // this game's lines ran out at a separator
+    private boolean streamEnded;
+    private String[][] answersByLength; // the known answers, grouped by length
+
+    /**
+     * @param in The script.
+     */
+    public ScriptInput(InputStream in) {
+        super(InputStream.nullInputStream(), () -> { });
+        this.in = in;
+        buffer = new byte[BUFFER_SIZE];
+        position = 0;
+        limit = 0;
+        line = new byte[64];
+        gameEnded = true; // nothing to skip before the first game
+        streamEnded = false;
+        answersByLength = groupByLength(knownAnswers());
+    }
+
+    /**
+     * Reads the game's next answer.
+     *
+     * @return The next line in lower case, or an empty String once the game's lines have run out.
+     */
+    @Override
+    public String nextLine() {
+        if (isClosed() || !readLine()) {
+            return "";
+        }
+        if (isSeparator()) {
+            gameEnded = true;
+            return "";
+        }
+        return toAnswer();
+    }
+
+    /**
+     * @return true once the game's lines have run out.
+     */
+    @Override
+    public boolean isClosed() {
+        return gameEnded || streamEnded;
+    }
+
+    /**
+     * Moves on to the next game in the script, skipping whatever the last game didn't read.
+     *
+     * @return false if there are no more games.
+     */
+    public boolean nextGame() {
+        while (!gameEnded && !streamEnded) {
+            if (readLine() && isSeparator()) {
+                gameEnded = true;
+            }
+        }
+        gameEnded = false;
+        return hasMoreLines();
+    }
+
+    /**
+     * Reads the next line into the line buffer, in lower case and without its line ending.
+     *
+     * @return false if the script has ended.
+     */
+    private boolean readLine() {
+        lineLength = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                // a last line without a line ending is still read; the end comes on the next read
+                if (lineLength == 0) {
+                    streamEnded = true;
+                }
+                return lineLength > 0;
+            }
+            byte b = buffer[position++];
+            if (b == '\n') {
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (lineLength == line.length) {
+                byte[] longer = new byte[line.length * 2];
+                System.arraycopy(line, 0, longer, 0, lineLength);
+                line = longer;
+            }
+            line[lineLength++] = b;
+        }
+    }
+
+    /**
+     * @return true if there is anything left to read.
+     */
+    private boolean hasMoreLines() {
+        return !streamEnded && (position < limit || fill());
+    }
+
+    private boolean fill() {
+        try {
+            int read = in.read(buffer);
+            if (read <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isSeparator() {
+        return lineLength == 3 && line[0] == '-' && line[1] == '-' && line[2] == '-';
+    }
+
+    /**
+     * @return The line as one of the known answers, or as a new String if it isn't one.
+     */
+    private String toAnswer() {
+        if (lineLength < answersByLength.length) {
+            for (String answer : answersByLength[lineLength]) {
+                if (matches(answer)) {
+                    return answer;
+                }
+            }
+        }
+        return new String(line, 0, lineLength, StandardCharsets.UTF_8).toLowerCase();
+    }
+
+    private boolean matches(String answer) {
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] != answer.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Every answer the game itself compares lines against.
+     */
+    private static ArrayList<String> knownAnswers() {
+        ArrayList<String> answers = new ArrayList<String>();
+        for (String answer : new String[] {"", "b", "s", "m", "l", "h", "d", "x", "y", "n", "e", "test"}) {
+            answers.add(answer);
+        }
+        for (Direction direction : Direction.values()) {
+            answers.add(direction.getInput());
+            answers.add(direction.toString());
+        }
+        for (Item item : Item.values()) {
+            answers.add(item.getName());
+        }
+        return answers;
+    }
+
+    private static String[][] groupByLength(ArrayList<String> answers) {
+        int longest = 0;
+        for (String answer : answers) {
+            longest = Math.max(longest, answer.length());
+        }
+        String[][] grouped = new String[longest + 1][];
+        for (int length = 0; length <= longest; length++) {
+            ArrayList<String> sameLength = new ArrayList<String>();
+            for (String answer : answers) {
+                if (answer.length() == length && !sameLength.contains(answer)) {
+                    sameLength.add(answer);
+                }
+            }
+            grouped[length] = sameLength.toArray(new String[0]);
+        }
+        return grouped;
+    }
+}
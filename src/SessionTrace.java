@@ -0,0 +1,49 @@
+/**
+ * A SessionTrace records the random decisions of one session into a DecisionTrace.<p>
+ * A game is traced by handing one to TreasureHunter.setTrace(), which keeps it with the game's GameRandom,
+ * and stops being traced when that is set back to null. Every place a decision is made checks for it first,
+ * so an untraced game pays one null check per decision and nothing else.
+ */
+
+public final class SessionTrace {
+    // instance variables
+    private final DecisionTrace trace;
+    private final long sessionId;
+
+    /**
+     * Use DecisionTrace.forSession() rather than calling this.
+     *
+     * @param trace Where the decisions are recorded.
+     * @param sessionId The number the session's lines start with.
+     */
+    SessionTrace(DecisionTrace trace, long sessionId) {
+        this.trace = trace;
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Records a decision made with a roll against a chance.
+     *
+     * @param event What was decided.
+     * @param roll The roll.
+     * @param chance The chance the roll had to beat.
+     * @param outcome The outcome (see TraceEvent).
+     */
+    public void record(TraceEvent event, double roll, double chance, int outcome) {
+        trace.record(sessionId, event, roll, chance, outcome);
+    }
+
+    /**
+     * Records a decision picked from weights, without a single roll.
+     *
+     * @param event What was decided.
+     * @param outcome What was picked (see TraceEvent).
+     */
+    public void record(TraceEvent event, int outcome) {
+        trace.record(sessionId, event, Double.NaN, Double.NaN, outcome);
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+}
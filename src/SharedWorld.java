@@ -0,0 +1,152 @@
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SharedWorld is a world map whose towns are shared by every game playing in it, so hunters in different
+ * sessions can meet in the same town and race each other for its treasure and its gold.<p>
+ * Towns are made from the world seed and their place on the grid exactly like a WorldMap's (see
+ * WorldMap.townId()), with one world of towns for each mode. Each hunter who arrives gets their own TownVisit
+ * (see Town.hunterArrives()), and a town's treasure and gold go to whoever claims them first.<p>
+ * Only towns with a hunter in them are kept whole. When the last hunter leaves, all that is remembered is
+ * whether the town was searched or dug, like a WorldMap does (see VisitedTowns), and the town is made again from
+ * the seed when someone comes back. Every town of a mode shares one shop, which is never traded at since each
+ * hunter brings their own.<p>
+ * Safe to use from any number of threads at once.
+ */
+
+public class SharedWorld {
+    // instance variables
+    private final long worldSeed;
+    private final EnumMap<GameMode, ModeTowns> modes; // only read once it is filled in
+    private final GameRandom idle; // the random numbers of every town's own visit, which is never played
+
+    /**
+     * Creates a world where nobody has been anywhere yet.
+     *
+     * @param worldSeed The seed every town is made from.
+     */
+    public SharedWorld(long worldSeed) {
+        this.worldSeed = worldSeed;
+        modes = new EnumMap<GameMode, ModeTowns>(GameMode.class);
+        for (GameMode mode : GameMode.values()) {
+            modes.put(mode, new ModeTowns(new Shop(mode, null, Messages.DISCARD)));
+        }
+        idle = new GameRandom(0);
+    }
+
+    /**
+     * Brings a hunter into a town, making it if nobody is there. Every hunter who enters a town has to leave it
+     * again with leaveTown(), or it is kept for good. Hunters then arrive with Town.hunterArrives(hunter, shop,
+     * random, out), which gives each of them their own visit.
+     *
+     * @param mode The mode of the game looking for the town.
+     * @param townId The town's id.
+     * @param trace Where the hunter's decisions are traced, or null. If the hunter is the one who makes the
+     *              town, its treasure, terrain and toughness are traced there.
+     * @return The town everyone in the mode shares.
+     */
+    public Town enterTown(GameMode mode, long townId, SessionTrace trace) {
+        ModeTowns towns = modes.get(mode);
+        return towns.occupied.compute(townId, (id, town) -> {
+            if (town == null) {
+                town = new OccupiedTown(makeTown(mode, id, towns.shop, trace));
+                synchronized (towns.visited) {
+                    town.town.setVisitFlags(towns.visited.recall(id));
+                }
+            }
+            town.hunters++;
+            return town;
+        }).town;
+    }
+
+    /**
+     * Takes a hunter out of a town they entered with enterTown(). Once nobody is left, only whether the town
+     * was searched or dug is kept.
+     *
+     * @param mode The mode of the game leaving the town.
+     * @param townId The town's id.
+     * @param town The town enterTown() gave the hunter.
+     */
+    public void leaveTown(GameMode mode, long townId, Town town) {
+        ModeTowns towns = modes.get(mode);
+        towns.occupied.computeIfPresent(townId, (id, occupied) -> {
+            if (occupied.town != town) {
+                return occupied;
+            }
+            occupied.hunters--;
+            if (occupied.hunters > 0) {
+                return occupied;
+            }
+            synchronized (towns.visited) {
+                towns.visited.remember(id, town.getVisitFlags());
+            }
+            return null;
+        });
+    }
+
+    // accessors
+    public long getWorldSeed() {
+        return worldSeed;
+    }
+
+    /**
+     * @return The number of towns with hunters in them, in every mode.
+     */
+    public int getTownCount() {
+        int count = 0;
+        for (ModeTowns towns : modes.values()) {
+            count += towns.occupied.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of towns nobody is in that are remembered as searched or dug, in every mode.
+     */
+    public int getVisitedCount() {
+        int count = 0;
+        for (ModeTowns towns : modes.values()) {
+            synchronized (towns.visited) {
+                count += towns.visited.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Makes a shared town. Its own visit is never played, so it gets the mode's shop and random numbers nobody
+     * uses.
+     */
+    private Town makeTown(GameMode mode, long townId, Shop shop, SessionTrace trace) {
+        GameRandom generator = new GameRandom(0);
+        generator.setTrace(trace);
+        return WorldMap.makeTown(worldSeed, townId, mode, generator, shop, idle, Messages.DISCARD);
+    }
+
+    /**
+     * The towns of one mode: the ones with hunters in them, and what is remembered about the rest.
+     */
+    private static class ModeTowns {
+        private final Shop shop; // has no input, since nobody trades at it
+        private final ConcurrentHashMap<Long, OccupiedTown> occupied;
+        private final VisitedTowns visited; // only used under its own lock
+
+        ModeTowns(Shop shop) {
+            this.shop = shop;
+            occupied = new ConcurrentHashMap<Long, OccupiedTown>();
+            visited = new VisitedTowns();
+        }
+    }
+
+    /**
+     * A town and the number of hunters in it, only changed inside the map's compute methods.
+     */
+    private static class OccupiedTown {
+        private final Town town;
+        private int hunters;
+
+        OccupiedTown(Town town) {
+            this.town = town;
+        }
+    }
+}
@@ -1,37 +1,35 @@
-import java.util.Scanner;
+import java.io.PrintStream;
 
 /**
  * The Shop class controls the cost of the items in the Treasure Hunt game. <p>
+ * Prices come from the current ItemCatalog, so they can be changed while the game is running. The catalog is
+ * read once when a customer enters, so the price they are quoted is the price they pay even if it is reloaded
+ * in between. <p>
  * The Shop class also acts as a go between for the Hunter's buyItem() method. <p>
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class Shop {
-    // constants
-    private static final int WATER_COST = 2;
-    private static final int ROPE_COST = 4;
-    private static final int MACHETE_COST = 6;
-    private static final int SHOVEL_COST = 8;
-    private static final int HORSE_COST = 12;
-    private static final int BOOTS_COST = 15;
-    private static final int BOAT_COST = 20;
-    private static final int SWORD_COST = 0;
-
-    // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
-
     // instance variables
-    private double markdown;
+    private GameMode mode;
+    private PlayerInput in;
+    private PrintStream out;
     private Hunter customer;
+    private ItemCatalog catalog; // the prices for this visit
 
     /**
-     * The Shop constructor takes in a markdown value and leaves customer null until one enters the shop.
+     * The Shop constructor takes in the game mode and leaves customer null until one enters the shop.
      *
-     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param mode The game's mode, which picks the markdown and which items are sold.
+     * @param in Where the customer's answers are read from, or null for a shop that is only traded at headless.
+     * @param out Where the shop's messages are printed.
      */
-    public Shop(double markdown) {
-        this.markdown = markdown;
+    public Shop(GameMode mode, PlayerInput in, PrintStream out) {
+        this.mode = mode;
+        this.in = in;
+        this.out = out;
         customer = null; // is set in the enter method
+        catalog = ItemCatalog.current(); // is read again in the enter method
     }
 
     /**
@@ -39,64 +37,78 @@ public class Shop {
      *
      * @param hunter the Hunter entering the shop
      * @param buyOrSell String that determines if hunter is "B"uying or "S"elling
+     * @return The item the hunter agreed to trade, or null if they didn't trade anything.
      */
-    public void enter(Hunter hunter, String buyOrSell) {
+    public String enter(Hunter hunter, String buyOrSell) {
         customer = hunter;
+        catalog = ItemCatalog.current();
 
         if (buyOrSell.equals("b")) {
-            System.out.println("Welcome to the shop! We have the finest wares in town.");
-            System.out.println("Currently we have the following items:");
-            System.out.println(inventory());
-            System.out.print("What're you lookin' to buy? ");
-            String item = SCANNER.nextLine().toLowerCase();
+            out.println("Welcome to the shop! We have the finest wares in town.");
+            out.println("Currently we have the following items:");
+            out.println(inventory());
+            out.print("What're you lookin' to buy? ");
+            String item = in.nextLine();
             int cost = checkMarketPrice(item, true);
             if (cost == 0) {
-                System.out.println("We ain't got none of those.");
+                out.println("We ain't got none of those.");
             } else {
-                System.out.print("It'll cost you " + cost + " gold. Buy it (y/n)? ");
-                String option = SCANNER.nextLine().toLowerCase();
+                out.print("It'll cost you " + cost + " gold. Buy it (y/n)? ");
+                String option = in.nextLine();
 
                 if (option.equals("y")) {
                     buyItem(item);
+                    return item;
                 }
             }
         } else {
-            System.out.println("What're you lookin' to sell? ");
-            System.out.print("You currently have the following items: " + customer.getInventory());
-            String item = SCANNER.nextLine().toLowerCase();
+            out.println("What're you lookin' to sell? ");
+            out.print("You currently have the following items: " + customer.getInventory());
+            String item = in.nextLine();
             int cost = checkMarketPrice(item, false);
-            if (!(item.equals("sword") || cost == 0)) {
-                System.out.println("We don't want none of those.");
+            if (!wantsToBuyBack(item, cost)) {
+                out.println("We don't want none of those.");
             } else {
-                System.out.print("It'll get you " + cost + " gold. Sell it (y/n)? ");
-                String option = SCANNER.nextLine().toLowerCase();
+                out.print("It'll get you " + cost + " gold. Sell it (y/n)? ");
+                String option = in.nextLine();
 
                 if (option.equals("y")) {
                     sellItem(item);
+                    return item;
                 }
             }
         }
+        return null;
+    }
+
+    /**
+     * Method for trading at the shop without any prompts, used when the game is played headless.
+     *
+     * @param hunter the Hunter entering the shop
+     * @param buyOrSell String that determines if hunter is "B"uying or "S"elling
+     * @param item The item being bought or sold, or null to leave without trading.
+     */
+    public void enter(Hunter hunter, String buyOrSell, String item) {
+        customer = hunter;
+        catalog = ItemCatalog.current();
+
+        if (item == null) {
+            return;
+        } else if (buyOrSell.equals("b")) {
+            buyItem(item);
+        } else {
+            sellItem(item);
+        }
     }
 
     /**
      * A method that returns a string showing the items available in the shop
-     * (all shops sell the same items).
+     * (all shops in the same mode sell the same items).
      *
      * @return the string representing the shop's items available for purchase and their prices.
      */
     public String inventory() {
-        String str = "Water: " + WATER_COST + " gold\n";
-        str += "Rope: " + ROPE_COST + " gold\n";
-        str += "Machete: " + MACHETE_COST + " gold\n";
-        str += "Shovel: " + SHOVEL_COST + " gold\n";
-        str += "Horse: " + HORSE_COST + " gold\n";
-        str += "Boots: " + BOOTS_COST + " gold\n";
-        str += "Boat: " + BOAT_COST + " gold\n";
-        if (TreasureHunter.getSamuraiMode()) {
-            str += "Sword: " + SWORD_COST + " gold\n";
-        }
-
-        return str;
+        return catalog.getListing(mode);
     }
 
     /**
@@ -106,11 +118,16 @@ public class Shop {
      */
     public void buyItem(String item) {
         int costOfItem = checkMarketPrice(item, true);
-        if (customer.buyItem(item, costOfItem) || Hunter.hasItemInKit("sword")) {
-            System.out.println("Ye' got yerself a " + item + ". Come again soon.");
+        boolean bought = customer.buyItem(item, costOfItem);
+        // a hunter with a sword is always told they got the item, even when they didn't
+        if (bought || customer.hasItemInKit("sword")) {
+            if (!Messages.isDiscarded(out)) {
+                out.println("Ye' got yerself a " + item + ". Come again soon.");
+            }
         } else {
-            System.out.println("Hmm, either you don't have enough gold or you've already got one of those!");
+            out.println("Hmm, either you don't have enough gold or you've already got one of those!");
         }
+        GameMetrics.count(bought ? Metric.ITEMS_BOUGHT : Metric.TRADES_REFUSED);
     }
 
     /**
@@ -120,13 +137,30 @@ public class Shop {
      */
     public void sellItem(String item) {
         int buyBackPrice = checkMarketPrice(item, false);
-        if (customer.sellItem(item, buyBackPrice)) {
-            System.out.println("Pleasure doin' business with you.");
+        if (!wantsToBuyBack(item, buyBackPrice)) {
+            out.println("We don't want none of those.");
+            GameMetrics.count(Metric.TRADES_REFUSED);
+        } else if (customer.sellItem(item, buyBackPrice)) {
+            out.println("Pleasure doin' business with you.");
+            GameMetrics.count(Metric.ITEMS_SOLD);
         } else {
-            System.out.println("Stop stringin' me along!");
+            out.println("Stop stringin' me along!");
+            GameMetrics.count(Metric.TRADES_REFUSED);
         }
     }
 
+    /**
+     * The rule for what the shop buys back, the same whether the customer is asked or trades headless:
+     * anything with a price except the sword.
+     *
+     * @param item The item being sold.
+     * @param buyBackPrice The item's sell price.
+     * @return Whether the shop will buy the item.
+     */
+    private boolean wantsToBuyBack(String item, int buyBackPrice) {
+        return !item.equals("sword") && buyBackPrice > 0;
+    }
+
     /**
      * Determines and returns the cost of buying or selling an item.
      *
@@ -143,31 +177,17 @@ public class Shop {
     }
 
     /**
-     * Checks the item entered against the costs listed in the static variables.
+     * Looks up the item's price in the catalog read when the customer entered.
      *
      * @param item The item being checked for cost.
-     * @return The cost of the item or 0 if the item is not found.
+     * @return The cost of the item or 0 if the item is not found or not sold in this mode.
      */
     public int getCostOfItem(String item) {
-        if (item.equals("water")) {
-            return WATER_COST;
-        } else if (item.equals("rope")) {
-            return ROPE_COST;
-        } else if (item.equals("machete")) {
-            return MACHETE_COST;
-        } else if (item.equals("shovel")){
-            return SHOVEL_COST;
-        } else if (item.equals("horse")) {
-            return HORSE_COST;
-        } else if (item.equals("boots")) {
-            return BOOTS_COST;
-        } else if (item.equals("boat")) {
-            return BOAT_COST;
-        } else if (item.equals("sword")) {
-            return SWORD_COST;
-        } else {
+        Item shopItem = Item.fromName(item);
+        if (shopItem == null) {
             return 0;
         }
+        return catalog.getPrice(shopItem, mode);
     }
 
     /**
@@ -177,7 +197,10 @@ public class Shop {
      * @return The sell price of the item.
      */
     public int getBuyBackCost(String item) {
-        int cost = (int) (getCostOfItem(item) * markdown);
-        return cost;
+        Item shopItem = Item.fromName(item);
+        if (shopItem == null) {
+            return 0;
+        }
+        return catalog.getBuyBackPrice(shopItem, mode);
     }
 }
\ No newline at end of file
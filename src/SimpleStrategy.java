@@ -0,0 +1,34 @@
+/**
+ * The SimpleStrategy plays the way a careful beginner would: search every town, dig if there is a shovel,
+ * move on as soon as possible, buy the item needed to move on when there is enough gold for it,
+ * and otherwise look for trouble to earn some.
+ */
+
+public class SimpleStrategy implements Strategy {
+    /**
+     * Picks the next move.
+     *
+     * @param game A read-only view of the game being played.
+     * @return The move to make.
+     */
+    @Override
+    public Move nextMove(GameView game) {
+        Item needed = game.getTerrain().getNeededItem();
+        if (!game.isSearched()) {
+            return Move.HUNT;
+        } else if (game.hasItem(Item.SHOVEL) && !game.isDugged()) {
+            return Move.DIG;
+        } else if (game.hasItem(needed)) {
+            return Move.MOVE_ON;
+        } else if (game.getGold() >= game.getPrice(needed)) {
+            return Move.buy(needed);
+        } else {
+            return Move.LOOK_FOR_TROUBLE;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "simple";
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * The SimulationStats class adds up the outcomes of many headless games.<p>
+ * Each worker fills in its own SimulationStats, and the results are combined with merge(),
+ * so no two threads ever write to the same object.<p>
+ * It can also follow the hunters' gold as the games go on, every CURVE_STEP turns.
+ */
+
+public class SimulationStats {
+    // constants
+    public static final int CURVE_STEP = 5;
+    public static final int CURVE_POINTS = 21; // turns 0 to 100
+
+    // instance variables
+    private long games;
+    private long wins;
+    private long bankruptcies;
+    private long quits;
+    private long totalTurns;
+    private long winningTurns;
+    private long totalGold;
+    private long[] curveGold = new long[CURVE_POINTS]; // total gold of the games that reached each point
+    private long[] curveGames = new long[CURVE_POINTS]; // the number of games that reached each point
+
+    /**
+     * Records the outcome of one finished game.
+     *
+     * @param outcome How the game turned out.
+     */
+    public void record(GameOutcome outcome) {
+        games++;
+        totalTurns += outcome.getTurns();
+        totalGold += outcome.getGold();
+        if (outcome.getResult() == GameResult.WON) {
+            wins++;
+            winningTurns += outcome.getTurns();
+        } else if (outcome.getResult() == GameResult.BANKRUPT) {
+            bankruptcies++;
+        } else {
+            quits++;
+        }
+    }
+
+    /**
+     * Records a game's gold part way through, if the turn is one of the curve's points.
+     *
+     * @param turn The number of turns played so far.
+     * @param gold The hunter's gold after that many turns.
+     */
+    public void recordGold(int turn, int gold) {
+        if (turn % CURVE_STEP == 0 && turn / CURVE_STEP < CURVE_POINTS) {
+            curveGold[turn / CURVE_STEP] += gold;
+            curveGames[turn / CURVE_STEP]++;
+        }
+    }
+
+    /**
+     * Adds the totals of another SimulationStats into this one.
+     *
+     * @param other The stats to add.
+     * @return this SimulationStats, so merges can be chained.
+     */
+    public SimulationStats merge(SimulationStats other) {
+        games += other.games;
+        wins += other.wins;
+        bankruptcies += other.bankruptcies;
+        quits += other.quits;
+        totalTurns += other.totalTurns;
+        winningTurns += other.winningTurns;
+        totalGold += other.totalGold;
+        for (int i = 0; i < CURVE_POINTS; i++) {
+            curveGold[i] += other.curveGold[i];
+            curveGames[i] += other.curveGames[i];
+        }
+        return this;
+    }
+
+    // accessors
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getBankruptcies() {
+        return bankruptcies;
+    }
+
+    public long getQuits() {
+        return quits;
+    }
+
+    /**
+     * @return The fraction of games that were won, or 0 if no games were played.
+     */
+    public double getWinRate() {
+        if (games == 0) {
+            return 0;
+        }
+        return (double) wins / games;
+    }
+
+    /**
+     * @return The average number of turns a game lasted.
+     */
+    public double getAverageTurns() {
+        if (games == 0) {
+            return 0;
+        }
+        return (double) totalTurns / games;
+    }
+
+    /**
+     * @return The average number of turns it took to win, counting only won games.
+     */
+    public double getAverageTurnsToWin() {
+        if (wins == 0) {
+            return 0;
+        }
+        return (double) winningTurns / wins;
+    }
+
+    /**
+     * @return The average gold the hunter finished with.
+     */
+    public double getAverageGold() {
+        if (games == 0) {
+            return 0;
+        }
+        return (double) totalGold / games;
+    }
+
+    /**
+     * @param point A point on the gold curve, from 0 to CURVE_POINTS - 1.
+     * @return The average gold after (point * CURVE_STEP) turns, counting only the games that lasted that long.
+     */
+    public double getAverageGold(int point) {
+        if (curveGames[point] == 0) {
+            return 0;
+        }
+        return (double) curveGold[point] / curveGames[point];
+    }
+
+    /**
+     * @param point A point on the gold curve, from 0 to CURVE_POINTS - 1.
+     * @return The number of games that lasted (point * CURVE_STEP) turns.
+     */
+    public long getGamesGoing(int point) {
+        return curveGames[point];
+    }
+
+    /**
+     * @return The gold curve, one "turn: average gold (games that got that far)" line per point, stopping once no game lasted that long.
+     */
+    public String getGoldCurve() {
+        String str = "";
+        for (int i = 0; i < CURVE_POINTS && curveGames[i] > 0; i++) {
+            str += String.format("%4d: %7.2f gold (%d games)%n", i * CURVE_STEP, getAverageGold(i), curveGames[i]);
+        }
+        return str;
+    }
+
+    /**
+     * @return A printable summary of the stats.
+     */
+    public String toString() {
+        String str = "Games played: " + games + "\n";
+        str += "Won: " + wins + " (" + String.format("%.2f", getWinRate() * 100) + "%)\n";
+        str += "Ran out of gold: " + bankruptcies + "\n";
+        str += "Gave up: " + quits + "\n";
+        str += "Average turns: " + String.format("%.2f", getAverageTurns()) + "\n";
+        str += "Average turns to win: " + String.format("%.2f", getAverageTurnsToWin()) + "\n";
+        str += "Average final gold: " + String.format("%.2f", getAverageGold());
+        return str;
+    }
+}
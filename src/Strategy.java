@@ -0,0 +1,20 @@
+/**
+ * A Strategy picks the moves for a bot playing Treasure Hunter.<p>
+ * The same strategy object plays many games at once on different threads, so it must not keep
+ * anything about a game between calls; everything it needs is in the GameView.
+ */
+
+public interface Strategy {
+    /**
+     * Picks the next move.
+     *
+     * @param game A read-only view of the game being played.
+     * @return The move to make.
+     */
+    Move nextMove(GameView game);
+
+    /**
+     * @return A short name for reports, e.g. "simple".
+     */
+    String getName();
+}
@@ -0,0 +1,84 @@
+/**
+ * The SweepStats class keeps a ModeStats for every mode, so a stream of finished games in mixed modes
+ * can be added up as it goes.<p>
+ * Each thread fills in its own SweepStats and merges it into a shared one every so often, then resets it;
+ * the shared one can be printed at any time for a report on the games so far.
+ */
+
+public class SweepStats {
+    // constants
+    private static final GameMode[] MODES = GameMode.values();
+
+    // instance variables
+    private ModeStats[] modeStats;
+
+    public SweepStats() {
+        modeStats = new ModeStats[MODES.length];
+        for (int i = 0; i < MODES.length; i++) {
+            modeStats[i] = new ModeStats(MODES[i]);
+        }
+    }
+
+    /**
+     * Adds a finished game to its mode's stats.
+     *
+     * @param game A finished game.
+     */
+    public void record(TreasureHunter game) {
+        modeStats[game.getMode().ordinal()].record(game);
+    }
+
+    /**
+     * Adds the totals of another SweepStats into this one.
+     *
+     * @param other The stats to add.
+     * @return this SweepStats, so merges can be chained.
+     */
+    public SweepStats merge(SweepStats other) {
+        for (int i = 0; i < MODES.length; i++) {
+            modeStats[i].merge(other.modeStats[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Forgets every game added so far.
+     */
+    public void reset() {
+        for (ModeStats stats : modeStats) {
+            stats.reset();
+        }
+    }
+
+    /**
+     * @param mode A mode.
+     * @return The stats of that mode's games.
+     */
+    public ModeStats getModeStats(GameMode mode) {
+        return modeStats[mode.ordinal()];
+    }
+
+    /**
+     * @return The number of games added, in every mode.
+     */
+    public long getGames() {
+        long games = 0;
+        for (ModeStats stats : modeStats) {
+            games += stats.getGames();
+        }
+        return games;
+    }
+
+    /**
+     * @return A printable summary of every mode that has had a game.
+     */
+    public String toString() {
+        String str = "";
+        for (ModeStats stats : modeStats) {
+            if (stats.getGames() > 0) {
+                str += stats + "\n";
+            }
+        }
+        return str;
+    }
+}
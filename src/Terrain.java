@@ -1,12 +1,20 @@
 /**
- * The Terrain class is designed to represent the zones between the towns in the Treasure Hunter game.
+ * The Terrain enum represents the zones between the towns in the Treasure Hunter game.<p>
+ * There is only one object for each kind of terrain, shared by every town that is surrounded by it.
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
-public class Terrain {
+public enum Terrain {
+    MOUNTAINS("Mountains", Item.ROPE),
+    OCEAN("Ocean", Item.BOAT),
+    PLAINS("Plains", Item.HORSE),
+    DESERT("Desert", Item.WATER),
+    JUNGLE("Jungle", Item.MACHETE),
+    MARSH("Marsh", Item.BOOTS);
+
     // instance variables
-    private String terrainName;
-    private String neededItem;
+    private final String terrainName;
+    private final Item neededItem;
 
     /**
      * Sets the class member variables
@@ -14,9 +22,9 @@ public class Terrain {
      * @param name The name of the zone.
      * @param item The item needed in order to cross the zone.
      */
-    public Terrain(String name, String item) {
+    Terrain(String name, Item item) {
         terrainName = name;
-        neededItem = item.toLowerCase();
+        neededItem = item;
     }
 
     // accessors
@@ -24,7 +32,7 @@ public class Terrain {
         return terrainName;
     }
 
-    public String getNeededItem() {
+    public Item getNeededItem() {
         return neededItem;
     }
 
@@ -36,10 +44,22 @@ public class Terrain {
      * @return true if the Hunter has the proper item.
      */
     public boolean canCrossTerrain(Hunter hunter) {
-        if (hunter.hasItemInKit(neededItem)) {
-            return true;
+        return hunter.hasItemInKit(neededItem);
+    }
+
+    /**
+     * Finds the terrain that needs the given item to cross; every terrain needs a different item.
+     *
+     * @param item The item.
+     * @return The terrain, or null if no terrain needs the item.
+     */
+    public static Terrain forNeededItem(Item item) {
+        for (Terrain terrain : values()) {
+            if (terrain.neededItem == item) {
+                return terrain;
+            }
         }
-        return false;
+        return null;
     }
 
     /**
@@ -48,4 +68,4 @@ public class Terrain {
     public String toString() {
         return terrainName + " needs a(n) " + neededItem + " to cross.";
     }
-}
\ No newline at end of file
+}
@@ -1,48 +1,239 @@
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * The Town Class is where it all happens.
  * The Town is designed to manage all the things a Hunter can do in town.
- * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
+ * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!<p>
+ * Several hunters can be in the same town at once: each one's side of things is kept in a TownVisit, and
+ * whether the town has been searched and dug is claimed atomically (see claimSearch() and claimDig()).
+ * The town's own methods play the visit of the game that made it.
  */
 
 public class Town {
+    // constants
+    private static final Item[] ITEMS = Item.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+    private static final int TOUGH_TOWN = 1;
+    private static final int SEARCHED = 2;
+    private static final int DUGGED = 4;
+
     // instance variables
-    private Hunter hunter;
     private Shop shop;
     private Terrain terrain;
-    private String printMessage;
     private boolean toughTown;
-    private boolean searched;
-    private boolean dugged;
+    private AtomicInteger visitFlags; // SEARCHED and DUGGED, claimed by the first hunter to do each
+    private GameMode mode;
+    private GameRandom random;
+    private TownOdds odds;
+    private TownVisit visit; // the visit of the game that made the town
+    private volatile boolean shared; // other hunters have been let in, so the town can't be reset
 
-    private String townTreasure;
-    private static int treasureCount = 0;
+    private Treasure townTreasure;
 
     /**
      * The Town Constructor takes in a shop and the surrounding terrain, but leaves the hunter as null until one arrives.
      *
      * @param shop The town's shoppe.
-     * @param toughness The surrounding terrain.
+     * @param mode The game's mode, which sets the town's toughness and whether items can break.
+     * @param treasure The treasure hidden in this town.
+     * @param random The game's random number generator, used for every roll in town.
+     * @param out Where the results of hunting and digging are printed.
+     */
+    public Town(Shop shop, GameMode mode, Treasure treasure, GameRandom random, PrintStream out) {
+        this.shop = shop;
+        this.mode = mode;
+        this.random = random;
+        odds = TownOdds.forMode(mode);
+        visitFlags = new AtomicInteger();
+        visit = new TownVisit(this, shop, random, out);
+        reset(treasure);
+    }
+
+    /**
+     * Creates a town whose terrain, toughness and treasure have already been picked, used for the towns
+     * of a WorldMap. No random draws are made.
+     *
+     * @param shop The town's shoppe.
+     * @param mode The game's mode, which sets whether items can break.
+     * @param terrain The surrounding terrain.
+     * @param toughTown Whether the town is tough.
+     * @param treasure The treasure hidden in this town.
+     * @param random The game's random number generator, used for every roll in town.
+     * @param out Where the results of hunting and digging are printed.
+     */
+    public Town(Shop shop, GameMode mode, Terrain terrain, boolean toughTown, Treasure treasure, GameRandom random,
+                PrintStream out) {
+        this.shop = shop;
+        this.mode = mode;
+        this.random = random;
+        odds = TownOdds.forMode(mode);
+        visitFlags = new AtomicInteger();
+        visit = new TownVisit(this, shop, random, out);
+        this.terrain = terrain;
+        this.toughTown = toughTown;
+        townTreasure = treasure;
+    }
+
+    /**
+     * Rebuilds a town saved with writeTo(). No random draws are made.
+     *
+     * @param shop The town's shoppe.
+     * @param mode The game's mode, which sets whether items can break.
+     * @param random The game's random number generator, used for every roll in town.
+     * @param out Where the results of hunting and digging are printed.
+     * @param saved The saved game, positioned at the town.
+     * @throws IllegalArgumentException If the saved town doesn't have a terrain.
      */
-    public Town(Shop shop, double toughness, String treasure) {
+    public Town(Shop shop, GameMode mode, GameRandom random, PrintStream out, ByteBuffer saved) {
         this.shop = shop;
+        this.mode = mode;
+        this.random = random;
+        odds = TownOdds.forMode(mode);
+        visit = new TownVisit(this, shop, random, out);
+
+        // the terrain's name is saved too, but the item needed to cross is enough to find it
+        int nameLength = saved.get();
+        saved.position(saved.position() + nameLength);
+        terrain = Terrain.forNeededItem(ITEMS[saved.get()]);
+        if (terrain == null) {
+            throw new IllegalArgumentException("The saved town has no terrain");
+        }
+        int flags = saved.get();
+        toughTown = (flags & TOUGH_TOWN) != 0;
+        visitFlags = new AtomicInteger(flags & (SEARCHED | DUGGED));
+        townTreasure = TREASURES[saved.get()];
+    }
+
+    /**
+     * Turns this town into the next town along, with a new terrain and toughness, so the same Town (and its Shop)
+     * can be used for every town in a game. Not for shared towns (see hunterArrives()).
+     *
+     * @param treasure The treasure hidden in the new town.
+     * @throws IllegalStateException If other hunters have been let into the town.
+     */
+    public void reset(Treasure treasure) {
+        checkNotShared();
         this.terrain = getNewTerrain();
 
         // the hunter gets set using the hunterArrives method, which
         // gets called from a client class
-        hunter = null;
-
-        printMessage = "";
-
+        visit.clear();
 
         // higher toughness = more likely to be a tough town
-        toughTown = (Math.random() < toughness);
+        double roll = random.nextDouble();
+        toughTown = (roll < mode.getToughness());
+        SessionTrace trace = random.getTrace();
+        if (trace != null) {
+            trace.record(TraceEvent.TOUGH_TOWN, roll, mode.getToughness(), toughTown ? 1 : 0);
+        }
         townTreasure = treasure;
-        searched = false;
-        dugged = false;
+        visitFlags.set(0);
+    }
+
+    /**
+     * Turns this town into one whose terrain, toughness, treasure and visits are already known, e.g. one kept in a
+     * CompactSession. No random draws are made. Not for shared towns (see hunterArrives()).
+     *
+     * @param terrain The surrounding terrain.
+     * @param toughTown Whether the town is tough.
+     * @param treasure The treasure hidden in the town.
+     * @param flags Whether the town has been searched and dug, from getVisitFlags().
+     * @throws IllegalStateException If other hunters have been let into the town.
+     */
+    public void reset(Terrain terrain, boolean toughTown, Treasure treasure, int flags) {
+        checkNotShared();
+        this.terrain = terrain;
+        visit.clear();
+        this.toughTown = toughTown;
+        townTreasure = treasure;
+        setVisitFlags(flags);
+    }
+
+    /**
+     * Saves the town: its terrain, whether it is tough, whether it has been searched and dug, and its treasure.
+     *
+     * @param save Where the town is written.
+     */
+    public void writeTo(ByteBuffer save) {
+        byte[] terrainName = terrain.getTerrainName().getBytes(StandardCharsets.UTF_8);
+        save.put((byte) terrainName.length);
+        save.put(terrainName);
+        save.put((byte) terrain.getNeededItem().ordinal());
+        int flags = visitFlags.get();
+        if (toughTown) {
+            flags |= TOUGH_TOWN;
+        }
+        save.put((byte) flags);
+        save.put((byte) townTreasure.ordinal());
+    }
+
+    /**
+     * @return Whether the town has been searched and dug, as bit flags; 0 if neither.
+     */
+    public int getVisitFlags() {
+        return visitFlags.get();
+    }
+
+    /**
+     * Marks the town as searched and dug the way it was when getVisitFlags() was called.
+     *
+     * @param flags Flags from getVisitFlags().
+     */
+    public void setVisitFlags(int flags) {
+        visitFlags.set(flags & (SEARCHED | DUGGED));
     }
 
     public String getLatestNews() {
-        return printMessage;
+        return visit.getLatestNews();
+    }
+
+    public Shop getShop() {
+        return shop;
+    }
+
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    public boolean isToughTown() {
+        return toughTown;
+    }
+
+    public Treasure getTreasure() {
+        return townTreasure;
+    }
+
+    public TownOdds getOdds() {
+        return odds;
+    }
+
+    /**
+     * @return The visit of the game that made the town.
+     */
+    public TownVisit getVisit() {
+        return visit;
+    }
+
+    /**
+     * @return true once other hunters have been let in with hunterArrives(hunter, shop, random, out).
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    public boolean isSearched() {
+        return (visitFlags.get() & SEARCHED) != 0;
+    }
+
+    public boolean isDugged() {
+        return (visitFlags.get() & DUGGED) != 0;
     }
 
     /**
@@ -51,14 +242,25 @@ public class Town {
      * @param hunter The arriving Hunter.
      */
     public void hunterArrives(Hunter hunter) {
-        this.hunter = hunter;
-        printMessage = "Welcome to town, " + hunter.getHunterName() + ".";
+        visit.arrive(hunter);
+    }
 
-        if (toughTown) {
-            printMessage += "\nIt's pretty rough around here, so watch yourself.";
-        } else {
-            printMessage += "\nWe're just a sleepy little town with mild mannered folk.";
-        }
+    /**
+     * Lets another hunter into this town, alongside any already here. The new hunter gets their own visit,
+     * with their own news, and can play it from their own thread. From then on the town is shared and
+     * can't be reset.
+     *
+     * @param hunter The arriving Hunter.
+     * @param shop The shop the hunter trades at.
+     * @param random The hunter's random number generator.
+     * @param out Where the results of the hunter's hunting and digging are printed.
+     * @return The hunter's visit.
+     */
+    public TownVisit hunterArrives(Hunter hunter, Shop shop, GameRandom random, PrintStream out) {
+        shared = true;
+        TownVisit newVisit = new TownVisit(this, shop, random, out);
+        newVisit.arrive(hunter);
+        return newVisit;
     }
 
     /**
@@ -67,65 +269,37 @@ public class Town {
      * @return true if the Hunter was able to leave town.
      */
     public boolean leaveTown() {
-        boolean canLeaveTown = terrain.canCrossTerrain(hunter);
-        if (canLeaveTown) {
-            String item = terrain.getNeededItem();
-            printMessage = "You used your " + item + " to cross the " + terrain.getTerrainName() + ".";
-            if (!(TreasureHunter.getEasyMode())) {
-                if (checkItemBreak()) {
-                hunter.removeItemFromKit(item);
-                printMessage += "\nUnfortunately, you lost your  " + item;
-                }
-            }
-
-            return true;
-        }
-
-        printMessage = "You can't leave town, " + hunter.getHunterName() + ". You don't have a " + terrain.getNeededItem() + ".";
-        return false;
+        return visit.leaveTown();
     }
 
     /**
      * Handles calling the enter method on shop whenever the user wants to access the shop.
      *
      * @param choice If the user wants to buy or sell items at the shop.
+     * @return The item the user agreed to trade, or null if they didn't trade anything.
+     */
+    public String enterShop(String choice) {
+        return visit.enterShop(choice);
+    }
+
+    /**
+     * Trades an item at the shop without any prompts, used when the game is played headless.
+     *
+     * @param choice If the user wants to buy or sell items at the shop.
+     * @param item The item being bought or sold, or null to leave without trading.
      */
-    public void enterShop(String choice) {
-        shop.enter(hunter, choice);
-        printMessage = "You left the shop";
+    public void enterShop(String choice, String item) {
+        visit.enterShop(choice, item);
     }
 
     /**
      * Gives the hunter a chance to fight for some gold.<p>
      * The chances of finding a fight and winning the gold are based on the toughness of the town.<p>
      * The tougher the town, the easier it is to find a fight, and the harder it is to win one.
+     * The chances themselves come from the mode's TownOdds.
      */
     public void lookForTrouble() {
-        double noTroubleChance;
-        if (toughTown) {
-            noTroubleChance = 0.66;
-        } else {
-            noTroubleChance = 0.33;
-        }
-
-        if (Math.random() > noTroubleChance) {
-            printMessage = "You couldn't find any trouble";
-        } else {
-            printMessage = Colors.RED + "You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n" + Colors.RESET;
-            int goldDiff = (int) (Math.random() * 10) + 1;
-            if (Hunter.hasItemInKit("sword") || Math.random() > noTroubleChance) {
-                if (Hunter.hasItemInKit("sword")) {
-                    printMessage += "Your opponent sees your sword and gets intimidated ";
-                }
-                printMessage += Colors.RED + "Okay, stranger! You proved yer mettle. Here, take my gold." + Colors.RESET;
-                printMessage += "\nYou won the brawl and receive "+ Colors.YELLOW + goldDiff + Colors.RESET + " gold.";
-                hunter.changeGold(goldDiff);
-            } else {
-                printMessage += Colors.RED + "That'll teach you to go lookin' fer trouble in MY town! Now pay up!" + Colors.RESET;
-                printMessage += "\nYou lost the brawl and pay " + goldDiff + " gold.";
-                hunter.changeGold(-goldDiff);
-            }
-        }
+        visit.lookForTrouble();
     }
 
     /**
@@ -134,102 +308,78 @@ public class Town {
      * Dust can be found but not added, and only one of each treasure can be obtained
      */
     public void huntForTreasure() {
-        String[] treasureList = hunter.getTreasureList();
-        if (!searched) {
-            // checks if the hunter already has the treasure
-            for (String treasure : treasureList) {
-                if (treasure != null) {
-                    if (treasure.equals(townTreasure)) {
-                        System.out.println("You have already collected " + Colors.GREEN + townTreasure + Colors.RESET);
-                        searched = true;
-                        return;
-                    }
-                }
-            }
-
-            for (int i = 0; i < treasureList.length; i++) {
-                if (treasureList[i] == null) {
-                    if (townTreasure.equals("dust")) {
-                        System.out.println("You found dust! (nothing has been added to your inventory)");
-                        searched = true;
-                        return;
-                    } else {
-                        treasureList[i] = townTreasure;
-                        System.out.println("You found " + Colors.GREEN + townTreasure + Colors.RESET + "!");
-                        searched = true;
-                        treasureCount++;
-                        return;
-                    }
-                }
-            }
-            System.out.println("You have already searched this town!");
-            searched = true;
-        } else {
-            System.out.println("You have already searched this town!");
-        }
+        visit.huntForTreasure();
     }
 
     public void digForGold() {
-        if (hunter.hasItemInKit("shovel")) {
-            if (!dugged) {
-                double chance = (Math.random());
-                if (chance >= 0.5) {
-                    int goldGain = (int) (Math.random() * 19) + 1;
-                    System.out.println("You have gained " + Colors.YELLOW + goldGain + Colors.RESET + " gold from digging!");
-                    hunter.changeGold(goldGain);
-                    dugged = true;
-                } else {
-                    System.out.println("You dug but only found dirt");
-                    dugged = true;
-                }
-            } else {
-                System.out.println("You have already dug in this town for gold!");
-            }
-        } else {
-            System.out.println("You can't dig for gold without a shovel!");
-        }
+        visit.digForGold();
     }
 
-    public String toString() {
-        return "This nice little town is surrounded by " + Colors.CYAN + terrain.getTerrainName() + Colors.RESET + ".";
+    /**
+     * Claims the town's treasure for the hunter searching it. Safe to call from any number of threads at once.
+     *
+     * @return true for exactly one caller: the first one, if the town hadn't been searched yet.
+     */
+    public boolean claimSearch() {
+        return claim(SEARCHED);
     }
 
     /**
-     * Determines the surrounding terrain for a town, and the item needed in order to cross that terrain.
+     * Claims the town's gold for the hunter digging in it. Safe to call from any number of threads at once.
      *
-     * @return A Terrain object.
+     * @return true for exactly one caller: the first one, if nobody had dug in the town yet.
      */
-    private Terrain getNewTerrain() {
-        double rnd = Math.random();
-        if (rnd < .16) {
-            return new Terrain("Mountains", "Rope");
-        } else if (rnd < .32) {
-            return new Terrain("Ocean", "Boat");
-        } else if (rnd < .48) {
-            return new Terrain("Plains", "Horse");
-        } else if (rnd < .64) {
-            return new Terrain("Desert", "Water");
-        } else if (rnd < .82){
-            return new Terrain("Jungle", "Machete");
-        } else {
-            return new Terrain("Marsh", "Boots");
+    public boolean claimDig() {
+        return claim(DUGGED);
+    }
+
+    public String toString() {
+        return getDescription(true);
+    }
+
+    /**
+     * @param color Whether to include the ANSI color codes.
+     * @return A description of the town and its surrounding terrain.
+     */
+    public String getDescription(boolean color) {
+        if (color) {
+            return "This nice little town is surrounded by " + Colors.CYAN + terrain.getTerrainName() + Colors.RESET + ".";
         }
+        return "This nice little town is surrounded by " + terrain.getTerrainName() + ".";
     }
 
     /**
-     * Determines whether a used item has broken.
+     * Determines the surrounding terrain for a town, and the item needed in order to cross that terrain.
      *
-     * @return true if the item broke.
+     * @return A Terrain, picked with the mode's terrain weights.
      */
-    private boolean checkItemBreak() {
-        double rand = Math.random();
-        return (rand < 0.5);
+    private Terrain getNewTerrain() {
+        Terrain newTerrain = odds.pickTerrain(random);
+        SessionTrace trace = random.getTrace();
+        if (trace != null) {
+            trace.record(TraceEvent.TERRAIN, newTerrain.ordinal());
+        }
+        return newTerrain;
     }
 
-    public boolean checkTreasures() {
-        if (treasureCount == 3) {
-            return true;
+    private void checkNotShared() {
+        if (shared) {
+            throw new IllegalStateException("A town other hunters can be in can't be reset");
+        }
+    }
+
+    private boolean claim(int flag) {
+        int flags = visitFlags.get();
+        while ((flags & flag) == 0) {
+            if (visitFlags.compareAndSet(flags, flags | flag)) {
+                return true;
+            }
+            flags = visitFlags.get();
         }
         return false;
     }
+
+    public boolean checkTreasures() {
+        return visit.checkTreasures();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * The TownOdds class holds the chances of everything random that happens around a town, for one game mode:
+ * which terrain surrounds it, which treasure is hidden in it, brawls, digging and items breaking.<p>
+ * Weighted choices are made with AliasTables, so each pick is one draw no matter how many choices there are.<p>
+ * The odds are read from odds.properties in the working directory if there is one. Each setting can be
+ * given for every mode, or for a single mode by adding the mode's name, which takes priority:
+ * <pre>
+ * terrain.weights = 16, 16, 16, 16, 18, 18
+ * terrain.weights.hard = 10, 20, 10, 20, 20, 20
+ * brawl.win.tough = 0.34
+ * </pre>
+ * Terrain weights are in the order of Terrain, treasure weights in the order of Treasure, and gold weights
+ * start at 1 gold.
+ */
+
+public final class TownOdds {
+    // constants
+    public static final String DEFAULT_FILE = "odds.properties";
+    private static final Terrain[] TERRAINS = Terrain.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+    private static final double[] DEFAULT_TERRAIN_WEIGHTS = {16, 16, 16, 16, 18, 18};
+    private static final double[] DEFAULT_TREASURE_WEIGHTS = {1, 1, 1, 1};
+    private static final int DEFAULT_MAX_BRAWL_GOLD = 10;
+    private static final int DEFAULT_MAX_DIG_GOLD = 19;
+
+    // static variables
+    private static final TownOdds[] BY_MODE = loadStartingOdds();
+
+    // instance variables
+    private final AliasTable terrains;
+    private final AliasTable treasures;
+    private final double toughTroubleChance;
+    private final double mildTroubleChance;
+    private final double toughWinChance;
+    private final double mildWinChance;
+    private final AliasTable brawlGold;
+    private final double digChance;
+    private final AliasTable digGold;
+    private final double breakChance;
+    private final long fingerprint;
+
+    /**
+     * Builds the odds for one mode.
+     *
+     * @param settings The settings; anything missing uses the default.
+     * @param mode The mode the odds are for.
+     */
+    private TownOdds(Properties settings, GameMode mode) {
+        String suffix = "." + mode.name().toLowerCase();
+        terrains = new AliasTable(weights(settings, "terrain.weights", suffix, DEFAULT_TERRAIN_WEIGHTS, TERRAINS.length));
+        treasures = new AliasTable(weights(settings, "treasure.weights", suffix, DEFAULT_TREASURE_WEIGHTS, TREASURES.length));
+        toughTroubleChance = chance(settings, "trouble.tough", suffix, 0.66);
+        mildTroubleChance = chance(settings, "trouble.mild", suffix, 0.33);
+        toughWinChance = chance(settings, "brawl.win.tough", suffix, 0.34);
+        mildWinChance = chance(settings, "brawl.win.mild", suffix, 0.67);
+        brawlGold = new AliasTable(weights(settings, "brawl.gold.weights", suffix, even(DEFAULT_MAX_BRAWL_GOLD), 0));
+        digChance = chance(settings, "dig.chance", suffix, 0.5);
+        digGold = new AliasTable(weights(settings, "dig.gold.weights", suffix, even(DEFAULT_MAX_DIG_GOLD), 0));
+        breakChance = chance(settings, "break.chance", suffix, 0.5);
+        fingerprint = fingerprint();
+    }
+
+    /**
+     * @param mode The game's mode.
+     * @return The odds for the mode.
+     */
+    public static TownOdds forMode(GameMode mode) {
+        return BY_MODE[mode.ordinal()];
+    }
+
+    /**
+     * @param random The game's random number generator.
+     * @return The terrain surrounding a new town.
+     */
+    public Terrain pickTerrain(GameRandom random) {
+        return TERRAINS[terrains.sample(random)];
+    }
+
+    /**
+     * @param random The game's random number generator.
+     * @return The treasure hidden in a new town.
+     */
+    public Treasure pickTreasure(GameRandom random) {
+        return TREASURES[treasures.sample(random)];
+    }
+
+    /**
+     * @param terrain A terrain.
+     * @return The chance that a new town is surrounded by the terrain.
+     */
+    public double getTerrainChance(Terrain terrain) {
+        return terrains.getChance(terrain.ordinal());
+    }
+
+    /**
+     * @param treasure A treasure.
+     * @return The chance that a new town hides the treasure.
+     */
+    public double getTreasureChance(Treasure treasure) {
+        return treasures.getChance(treasure.ordinal());
+    }
+
+    /**
+     * @param toughTown Whether the town is tough.
+     * @return The chance of finding trouble when looking for it.
+     */
+    public double getTroubleChance(boolean toughTown) {
+        return toughTown ? toughTroubleChance : mildTroubleChance;
+    }
+
+    /**
+     * @param toughTown Whether the town is tough.
+     * @return The chance of winning a brawl without a sword.
+     */
+    public double getWinChance(boolean toughTown) {
+        return toughTown ? toughWinChance : mildWinChance;
+    }
+
+    /**
+     * @param random The game's random number generator.
+     * @return The gold won or lost in a brawl.
+     */
+    public int pickBrawlGold(GameRandom random) {
+        return brawlGold.sample(random) + 1;
+    }
+
+    /**
+     * @return The most gold a brawl can be fought over.
+     */
+    public int getMaxBrawlGold() {
+        return brawlGold.size();
+    }
+
+    /**
+     * @param gold An amount from 1 to getMaxBrawlGold().
+     * @return The chance that a brawl is fought over exactly that much gold.
+     */
+    public double getBrawlGoldChance(int gold) {
+        return brawlGold.getChance(gold - 1);
+    }
+
+    public double getDigChance() {
+        return digChance;
+    }
+
+    /**
+     * @param random The game's random number generator.
+     * @return The gold found by a lucky dig.
+     */
+    public int pickDigGold(GameRandom random) {
+        return digGold.sample(random) + 1;
+    }
+
+    /**
+     * @return The most gold a lucky dig can find.
+     */
+    public int getMaxDigGold() {
+        return digGold.size();
+    }
+
+    /**
+     * @param gold An amount from 1 to getMaxDigGold().
+     * @return The chance that a lucky dig finds exactly that much gold.
+     */
+    public double getDigGoldChance(int gold) {
+        return digGold.getChance(gold - 1);
+    }
+
+    public double getBreakChance() {
+        return breakChance;
+    }
+
+    /**
+     * Sums up every chance in one number, so a journal can tell whether it is being replayed with the odds it was
+     * recorded with (see ActionJournal).
+     *
+     * @return The same number for any two TownOdds with the same chances.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    private long fingerprint() {
+        long fingerprint = 0;
+        for (AliasTable table : new AliasTable[] {terrains, treasures, brawlGold, digGold}) {
+            fingerprint = fingerprint * 31 + table.size();
+            for (int i = 0; i < table.size(); i++) {
+                fingerprint = fingerprint * 31 + Double.doubleToLongBits(table.getChance(i));
+            }
+        }
+        for (double chance : new double[] {toughTroubleChance, mildTroubleChance, toughWinChance, mildWinChance,
+                digChance, breakChance}) {
+            fingerprint = fingerprint * 31 + Double.doubleToLongBits(chance);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Reads a list of weights, preferring the mode's own setting.
+     *
+     * @param count The number of weights needed, or 0 for any number.
+     */
+    private static double[] weights(Properties settings, String key, String suffix, double[] defaults, int count) {
+        String value = setting(settings, key, suffix);
+        if (value == null) {
+            return defaults;
+        }
+
+        String[] parts = value.split(",");
+        if (count != 0 && parts.length != count) {
+            throw new IllegalArgumentException(key + " needs " + count + " weights, not " + parts.length);
+        }
+        double[] weights = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                weights[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad weight for " + key + ": " + parts[i]);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Reads a chance from 0 to 1, preferring the mode's own setting.
+     */
+    private static double chance(Properties settings, String key, String suffix, double defaultChance) {
+        String value = setting(settings, key, suffix);
+        if (value == null) {
+            return defaultChance;
+        }
+        try {
+            double chance = Double.parseDouble(value.trim());
+            if (chance < 0 || chance > 1) {
+                throw new IllegalArgumentException(key + " must be from 0 to 1: " + value);
+            }
+            return chance;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad chance for " + key + ": " + value);
+        }
+    }
+
+    private static String setting(Properties settings, String key, String suffix) {
+        String value = settings.getProperty(key + suffix);
+        if (value == null) {
+            value = settings.getProperty(key);
+        }
+        return value;
+    }
+
+    /**
+     * @return count equal weights, for picking 1 to count gold evenly.
+     */
+    private static double[] even(int count) {
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) {
+            weights[i] = 1;
+        }
+        return weights;
+    }
+
+    /**
+     * Reads odds for every mode from a file.
+     *
+     * @param file The odds file.
+     * @return The odds, indexed by GameMode ordinal.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a setting has a bad value.
+     */
+    public static TownOdds[] load(Path file) throws IOException {
+        Properties settings = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            settings.load(reader);
+        }
+        return build(settings);
+    }
+
+    private static TownOdds[] build(Properties settings) {
+        GameMode[] modes = GameMode.values();
+        TownOdds[] odds = new TownOdds[modes.length];
+        for (GameMode mode : modes) {
+            odds[mode.ordinal()] = new TownOdds(settings, mode);
+        }
+        return odds;
+    }
+
+    /**
+     * Loads odds.properties from the working directory if there is one, otherwise uses the defaults.
+     *
+     * @return The odds, indexed by GameMode ordinal.
+     */
+    private static TownOdds[] loadStartingOdds() {
+        Path file = Paths.get(DEFAULT_FILE);
+        if (Files.isRegularFile(file)) {
+            try {
+                return load(file);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Couldn't load " + file + ", using the default odds: " + e.getMessage());
+            }
+        }
+        return build(new Properties());
+    }
+}
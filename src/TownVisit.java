@@ -0,0 +1,250 @@
+import java.io.PrintStream;
+
+/**
+ * A TownVisit is one hunter's stay in a Town. Everything that belongs to the hunter rather than the town lives
+ * here: the hunter, their shop, their random numbers, where their messages go and their own news. So any number
+ * of hunters can be in the same Town at once, each on their own thread, without seeing each other's news.<p>
+ * The town itself is shared. Its treasure and its gold can only be taken once, so searching and digging first
+ * claim the town with an atomic compare-and-set (see Town.claimSearch() and Town.claimDig()), and only the hunter
+ * whose claim succeeds gets the treasure or the roll for gold. Nothing else takes a lock.<p>
+ * A single player game uses the visit its Town makes for it, through the Town's own methods.
+ */
+
+public class TownVisit {
+    // instance variables
+    private Town town;
+    private Hunter hunter;
+    private Shop shop;
+    private GameRandom random;
+    private PrintStream out;
+    private Message news; // the latest news, only built into text when it is read
+    private Message notice; // messages printed straight away
+
+    /**
+     * Creates a visit with nobody in town yet; the hunter comes in with arrive().
+     *
+     * @param town The town being visited.
+     * @param shop The shop the hunter trades at.
+     * @param random The hunter's random number generator, used for every roll they make in town.
+     * @param out Where the results of the hunter's hunting and digging are printed.
+     */
+    public TownVisit(Town town, Shop shop, GameRandom random, PrintStream out) {
+        this.town = town;
+        this.shop = shop;
+        this.random = random;
+        this.out = out;
+        news = new Message(Messages.NONE);
+        notice = new Message(Messages.NONE);
+    }
+
+    /**
+     * Brings a hunter into town and welcomes them.
+     *
+     * @param hunter The arriving Hunter.
+     */
+    public void arrive(Hunter hunter) {
+        this.hunter = hunter;
+        if (town.isToughTown()) {
+            news.set(Messages.WELCOME_TOUGH).name(hunter.getHunterName());
+        } else {
+            news.set(Messages.WELCOME_MILD).name(hunter.getHunterName());
+        }
+    }
+
+    /**
+     * Empties the visit, for when its Town is reset to the next town along.
+     */
+    public void clear() {
+        hunter = null;
+        news.set(Messages.NONE);
+    }
+
+    public Town getTown() {
+        return town;
+    }
+
+    public Hunter getHunter() {
+        return hunter;
+    }
+
+    public String getLatestNews() {
+        return news.getText();
+    }
+
+    /**
+     * @return The town's news for this hunter, which can be changed, e.g. to put back saved news.
+     */
+    public Message getNews() {
+        return news;
+    }
+
+    /**
+     * Handles the action of the Hunter leaving the town.
+     *
+     * @return true if the Hunter was able to leave town.
+     */
+    public boolean leaveTown() {
+        Terrain terrain = town.getTerrain();
+        boolean canLeaveTown = terrain.canCrossTerrain(hunter);
+        if (canLeaveTown) {
+            Item item = terrain.getNeededItem();
+            news.set(Messages.CROSSED).item(item).terrain(terrain);
+            if (town.getMode().itemsCanBreak()) {
+                double roll = random.nextDouble();
+                double breakChance = town.getOdds().getBreakChance();
+                SessionTrace trace = random.getTrace();
+                if (trace != null) {
+                    trace.record(TraceEvent.ITEM_BREAK, roll, breakChance, roll < breakChance ? 1 : 0);
+                }
+                if (roll < breakChance) {
+                    hunter.removeItemFromKit(item);
+                    news.set(Messages.CROSSED_AND_BROKE);
+                    GameMetrics.count(Metric.ITEMS_BROKEN);
+                }
+            }
+
+            return true;
+        }
+
+        news.set(Messages.CANT_LEAVE).name(hunter.getHunterName()).item(terrain.getNeededItem());
+        return false;
+    }
+
+    /**
+     * Handles calling the enter method on shop whenever the user wants to access the shop.
+     *
+     * @param choice If the user wants to buy or sell items at the shop.
+     * @return The item the user agreed to trade, or null if they didn't trade anything.
+     */
+    public String enterShop(String choice) {
+        String traded = shop.enter(hunter, choice);
+        news.set(Messages.LEFT_SHOP);
+        return traded;
+    }
+
+    /**
+     * Trades an item at the shop without any prompts, used when the game is played headless.
+     *
+     * @param choice If the user wants to buy or sell items at the shop.
+     * @param item The item being bought or sold, or null to leave without trading.
+     */
+    public void enterShop(String choice, String item) {
+        shop.enter(hunter, choice, item);
+        news.set(Messages.LEFT_SHOP);
+    }
+
+    /**
+     * Gives the hunter a chance to fight for some gold. See Town.lookForTrouble().
+     */
+    public void lookForTrouble() {
+        TownOdds odds = town.getOdds();
+        boolean toughTown = town.isToughTown();
+        SessionTrace trace = random.getTrace();
+        double roll = random.nextDouble();
+        double troubleChance = odds.getTroubleChance(toughTown);
+        if (trace != null) {
+            trace.record(TraceEvent.TROUBLE, roll, troubleChance, roll < troubleChance ? 1 : 0);
+        }
+        if (roll >= troubleChance) {
+            news.set(Messages.NO_TROUBLE);
+            GameMetrics.count(Metric.TROUBLE_NOT_FOUND);
+        } else {
+            int goldDiff = odds.pickBrawlGold(random);
+            // a sword wins without a roll
+            boolean sword = hunter.hasItemInKit(Item.SWORD);
+            double winChance = odds.getWinChance(toughTown);
+            double winRoll = Double.NaN;
+            boolean won = sword;
+            if (!sword) {
+                winRoll = random.nextDouble();
+                won = winRoll < winChance;
+            }
+            if (trace != null) {
+                trace.record(TraceEvent.BRAWL_GOLD, goldDiff);
+                trace.record(TraceEvent.BRAWL, winRoll, winChance, sword ? 2 : (won ? 1 : 0));
+            }
+            if (won) {
+                if (sword) {
+                    news.set(Messages.BRAWL_WON_WITH_SWORD).gold(goldDiff);
+                } else {
+                    news.set(Messages.BRAWL_WON).gold(goldDiff);
+                }
+                hunter.changeGold(goldDiff);
+                GameMetrics.count(Metric.BRAWLS_WON);
+            } else {
+                news.set(Messages.BRAWL_LOST).gold(goldDiff);
+                hunter.changeGold(-goldDiff);
+                GameMetrics.count(Metric.BRAWLS_LOST);
+            }
+        }
+    }
+
+    /**
+     * Gives the hunter a chance to search for treasure. The first hunter to search the town claims it,
+     * whether or not they can keep what they find; everyone after them finds it already searched.
+     */
+    public void huntForTreasure() {
+        Treasure townTreasure = town.getTreasure();
+        if (town.claimSearch()) {
+            // checks if the hunter already has the treasure
+            if (hunter.hasTreasure(townTreasure)) {
+                tell(notice.set(Messages.ALREADY_COLLECTED).treasure(townTreasure));
+            } else if (hunter.getTreasureCount() == 3) {
+                tell(notice.set(Messages.ALREADY_SEARCHED));
+            } else if (townTreasure == Treasure.DUST) {
+                tell(notice.set(Messages.FOUND_DUST));
+                GameMetrics.count(Metric.DUST_FOUND);
+            } else {
+                hunter.addTreasure(townTreasure);
+                tell(notice.set(Messages.FOUND_TREASURE).treasure(townTreasure));
+                GameMetrics.count(Metric.TREASURES_FOUND);
+            }
+        } else {
+            tell(notice.set(Messages.ALREADY_SEARCHED));
+        }
+    }
+
+    /**
+     * Gives the hunter a chance to dig for gold, if they have a shovel. Only the first hunter to dig in the town
+     * gets to roll for gold.
+     */
+    public void digForGold() {
+        if (hunter.hasItemInKit(Item.SHOVEL)) {
+            if (town.claimDig()) {
+                TownOdds odds = town.getOdds();
+                double roll = random.nextDouble();
+                SessionTrace trace = random.getTrace();
+                if (trace != null) {
+                    trace.record(TraceEvent.DIG, roll, odds.getDigChance(), roll < odds.getDigChance() ? 1 : 0);
+                }
+                if (roll < odds.getDigChance()) {
+                    int goldGain = odds.pickDigGold(random);
+                    if (trace != null) {
+                        trace.record(TraceEvent.DIG_GOLD, goldGain);
+                    }
+                    tell(notice.set(Messages.DUG_GOLD).gold(goldGain));
+                    hunter.changeGold(goldGain);
+                    GameMetrics.count(Metric.DIGS_WITH_GOLD);
+                } else {
+                    tell(notice.set(Messages.DUG_DIRT));
+                    GameMetrics.count(Metric.DIGS_WITH_DIRT);
+                }
+            } else {
+                tell(notice.set(Messages.ALREADY_DUG));
+            }
+        } else {
+            tell(notice.set(Messages.NO_SHOVEL));
+        }
+    }
+
+    public boolean checkTreasures() {
+        return hunter.getTreasureCount() == 3;
+    }
+
+    /**
+     * Prints a message straight away, unless nobody is reading the hunter's output.
+     */
+    private void tell(Message message) {
+        Messages.println(out, message);
+    }
+}
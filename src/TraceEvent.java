@@ -0,0 +1,47 @@
+/**
+ * The TraceEvent enum lists the random decisions a DecisionTrace records, and what each outcome means.<p>
+ * Events decided by a single roll against a chance (trouble, brawls, digging, breaking an item, a town's
+ * toughness) are traced with the roll and the chance it had to beat. Events picked from weights
+ * (terrains, treasures, gold) are traced with what was picked.
+ */
+
+public enum TraceEvent {
+    TOUGH_TOWN("mild", "tough"), // roll < toughness makes the town tough
+    TERRAIN, // the outcome is the Terrain's ordinal
+    TREASURE, // the outcome is the Treasure's ordinal
+    TROUBLE("none found", "found"), // roll < trouble chance finds a brawl
+    BRAWL("lost", "won", "won with sword"), // roll < win chance wins, and a sword wins without a roll
+    BRAWL_GOLD, // the outcome is the gold fought over
+    DIG("dirt", "gold"), // roll < dig chance finds gold
+    DIG_GOLD, // the outcome is the gold found
+    ITEM_BREAK("kept", "broke"); // roll < break chance breaks the item used to cross
+
+    // constants
+    private static final Terrain[] TERRAINS = Terrain.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+
+    // instance variables
+    private final String[] outcomes; // empty if the outcome is a number, terrain or treasure
+
+    /**
+     * @param outcomes What each outcome number means, if it isn't a number, terrain or treasure.
+     */
+    TraceEvent(String... outcomes) {
+        this.outcomes = outcomes;
+    }
+
+    /**
+     * @param outcome The outcome recorded for this event.
+     * @return What the outcome means, e.g. "found" or "Crown of Kings".
+     */
+    public String describe(int outcome) {
+        if (this == TERRAIN) {
+            return TERRAINS[outcome].getTerrainName();
+        } else if (this == TREASURE) {
+            return TREASURES[outcome].toString();
+        } else if (outcome < 0 || outcome >= outcomes.length) {
+            return Integer.toString(outcome);
+        }
+        return outcomes[outcome];
+    }
+}
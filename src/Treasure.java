@@ -0,0 +1,34 @@
+/**
+ * The Treasure enum lists the treasures that can be hidden in a town.<p>
+ * Dust can be found, but it is worthless and is never added to the hunter's treasures.
+ */
+
+public enum Treasure {
+    CROWN_OF_KINGS("Crown of Kings"),
+    LUSTROUS_TROPHY("Lustrous Trophy"),
+    ILLUSIONARY_GEM("Illusionary Gem"),
+    DUST("dust");
+
+    // instance variables
+    private final String name;
+
+    /**
+     * Sets the treasure's display name.
+     *
+     * @param name The name shown to the player.
+     */
+    Treasure(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The treasure's display name.
+     */
+    public String toString() {
+        return name;
+    }
+}
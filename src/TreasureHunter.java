@@ -1,4 +1,15 @@
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * This class is responsible for controlling the Treasure Hunter game.<p>
@@ -9,188 +20,909 @@ import java.util.Scanner;
  */
 
 public class TreasureHunter {
-    // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
+    // constants
+    private static final short SAVE_MAGIC = 0x5448; // "TH"
+    private static final byte SAVE_VERSION = 2; // version 1 saves, from before the world map, still load
+    private static final int SAVE_HEADER_SIZE = 24;
+    private static final int GAME_WON = 1;
 
     // instance variables
     private Town currentTown;
+    private TownVisit visit; // the hunter's side of the current town
     private Hunter hunter;
-    private boolean hardMode;
-    private static boolean easyMode;
-    private static boolean samuraiMode;
+    private GameMode mode;
+    private PlayerInput in;
+    private PrintStream out;
+    private boolean color;
+    private FrameRenderer renderer;
+    private long seed;
+    private GameRandom random;
+    private ActionJournal journal;
+    private boolean gameWon;
+    private int turns;
+    private GameView view;
+    private Long worldSeed; // null when every move makes a new town
+    private int worldCacheSize;
+    private WorldMap world;
+    private SharedWorld sharedWorld; // null unless the game's towns are shared with other games
+    private boolean inSharedTown; // whether the hunter has to leave the current town with sharedWorld.leaveTown()
+    private long townId;
+    private int[] stalls; // times the hunter couldn't leave town, by the item they were missing
+    private Path saveFolder; // null when the player can't save or load
 
-    private static final String[] townTreasures = {"Crown of Kings", "Lustrous Trophy", "Illusionary Gem", "dust"};
+    // headless games never read any input, so they all share one that is already at its end
+    private static final PlayerInput NO_INPUT = new PlayerInput(InputStream.nullInputStream(), () -> { });
 
 
     /**
-     * Constructs the Treasure Hunter game.
+     * Constructs the Treasure Hunter game, played from the console.
      */
     public TreasureHunter() {
-        // these will be initialized in the play method
+        this(new PlayerInput(System.in, System.out), System.out, new SplittableRandom().nextLong(), true);
+    }
+
+    /**
+     * Constructs a headless Treasure Hunter game with a random seed.
+     *
+     * @param out Where all of the game's messages are printed.
+     */
+    public TreasureHunter(PrintStream out) {
+        this(out, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructs a headless Treasure Hunter game.<p>
+     * Every random draw in the game comes from a generator made from the seed,
+     * so the same seed and the same choices always play out the same way.
+     *
+     * @param out Where all of the game's messages are printed.
+     * @param seed The seed for the game's random numbers.
+     */
+    public TreasureHunter(PrintStream out, long seed) {
+        this(out, seed, true);
+    }
+
+    /**
+     * Constructs a headless Treasure Hunter game, with or without colors.
+     *
+     * @param out Where all of the game's messages are printed.
+     * @param seed The seed for the game's random numbers.
+     * @param color Whether to print ANSI color codes.
+     */
+    public TreasureHunter(PrintStream out, long seed, boolean color) {
+        this(NO_INPUT, out, seed, color);
+    }
+
+    /**
+     * Constructs the Treasure Hunter game.<p>
+     * Without colors, the menu is drawn without any ANSI codes and the codes are dropped from every other message.
+     *
+     * @param in Where the player's answers are read from.
+     * @param out Where all of the game's messages are printed.
+     * @param seed The seed for the game's random numbers.
+     * @param color Whether to print ANSI color codes.
+     */
+    public TreasureHunter(PlayerInput in, PrintStream out, long seed, boolean color) {
+        // these will be initialized in the play or start method
         currentTown = null;
         hunter = null;
-        hardMode = false;
-        easyMode = false;
+        mode = GameMode.NORMAL;
+        this.in = in;
+        this.color = color;
+        renderer = new FrameRenderer(out, color);
+        if (color) {
+            this.out = out;
+        } else {
+            this.out = new PrintStream(new NoColorOutputStream(out), true);
+        }
+        this.seed = seed;
+        random = new GameRandom(seed);
+        journal = null;
+        gameWon = false;
+        turns = 0;
+        view = new GameView(this);
+        worldSeed = null;
+        worldCacheSize = WorldMap.DEFAULT_CACHE_SIZE;
+        world = null;
+        sharedWorld = null;
+        inSharedTown = false;
+        townId = WorldMap.ORIGIN;
+        stalls = new int[Item.values().length];
+        saveFolder = null;
+        renderer.setSaving(false);
+    }
+
+    /**
+     * Constructs a headless game whose draws come from the given random source, used to replay a journal.
+     *
+     * @param out Where all of the game's messages are printed.
+     * @param seed The seed the original game was played with.
+     * @param random The random source.
+     */
+    public TreasureHunter(PrintStream out, long seed, GameRandom random) {
+        this(NO_INPUT, out, seed, true);
+        this.random = random;
+    }
+
+    /**
+     * Saves the whole game into a few dozen bytes: the mode, seed, random number state, turns,
+     * the hunter and the current town, and on a world map, where the hunter is and which towns have
+     * been searched or dug.
+     *
+     * @return The saved game.
+     * @throws IllegalStateException If the game is played in a SharedWorld.
+     */
+    public byte[] saveGame() {
+        checkNotShared("saved");
+        int size = SAVE_HEADER_SIZE + 64 + hunter.getHunterName().length() * 3;
+        if (world != null) {
+            size += 8 + world.getSavedSize();
+        }
+        ByteBuffer save = ByteBuffer.allocate(size);
+        saveGame(save);
+        byte[] bytes = new byte[save.position()];
+        save.flip();
+        save.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Saves the whole game into a buffer, so many games can be saved without allocating.
+     *
+     * @param save Where the game is written.
+     * @throws IllegalStateException If the game is played in a SharedWorld.
+     */
+    public void saveGame(ByteBuffer save) {
+        checkNotShared("saved");
+        save.putShort(SAVE_MAGIC);
+        save.put(SAVE_VERSION);
+        save.put((byte) mode.ordinal());
+        save.putLong(seed);
+        save.putLong(random.getState());
+        save.putInt(turns);
+        save.put((byte) (gameWon ? GAME_WON : 0));
+        hunter.writeTo(save);
+        currentTown.writeTo(save);
+        if (world == null) {
+            save.put((byte) 0);
+        } else {
+            save.put((byte) 1);
+            save.putLong(townId);
+            world.writeTo(save);
+        }
+    }
+
+    /**
+     * Replaces this game with a saved game.<p>
+     * If the game has a journal, the saved game is recorded in it so the journal can still be replayed.
+     * The whole save is read before anything is replaced, so a save that is cut short or damaged leaves this
+     * game as it was.
+     *
+     * @param saved A game saved with saveGame().
+     * @throws IllegalArgumentException If the bytes aren't a whole saved game.
+     */
+    public void loadGame(ByteBuffer saved) {
+        if (saved.remaining() < SAVE_HEADER_SIZE || saved.getShort(saved.position()) != SAVE_MAGIC) {
+            throw new IllegalArgumentException("Not a Treasure Hunter saved game");
+        }
+
+        byte[] snapshot = null;
+        if (journal != null) {
+            snapshot = new byte[saved.remaining()];
+            saved.duplicate().get(snapshot);
+        }
+
+        saved.getShort();
+        byte version = saved.get();
+        if (version < 1 || version > SAVE_VERSION) {
+            throw new IllegalArgumentException("Unknown saved game version");
+        }
+        GameMode savedMode;
+        long savedSeed;
+        long randomState;
+        int savedTurns;
+        boolean savedWon;
+        Hunter savedHunter;
+        Town savedTown;
+        WorldMap savedWorld = null;
+        long savedTownId = WorldMap.ORIGIN;
+        try {
+            savedMode = GameMode.values()[saved.get()];
+            savedSeed = saved.getLong();
+            randomState = saved.getLong();
+            savedTurns = saved.getInt();
+            savedWon = (saved.get() & GAME_WON) != 0;
+            savedHunter = Hunter.readFrom(saved);
+            savedTown = new Town(new Shop(savedMode, in, out), savedMode, random, out, saved);
+            if (version >= 2 && saved.get() != 0) {
+                savedTownId = saved.getLong();
+                savedWorld = WorldMap.readFrom(saved, savedMode, savedTown.getShop(), random, out, worldCacheSize);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("The saved game is cut short or damaged", e);
+        }
+
+        // everything has been read, so the game can be replaced
+        leaveSharedTown();
+        mode = savedMode;
+        seed = savedSeed;
+        random.setState(randomState);
+        turns = savedTurns;
+        gameWon = savedWon;
+        Arrays.fill(stalls, 0); // stalls aren't saved, so they count from the load
+        hunter = savedHunter;
+        currentTown = savedTown;
+        world = savedWorld;
+        worldSeed = null;
+        sharedWorld = null;
+        if (world != null) {
+            // the saved town is also in the world, searched and dug the same way
+            townId = savedTownId;
+            worldSeed = world.getWorldSeed();
+            currentTown = world.townAt(townId);
+        }
+        arrive(currentTown);
+
+        if (journal != null) {
+            try {
+                journal.recordSnapshot(snapshot);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Saves the whole game into a CompactSession, which keeps it in a few dozen bytes of fields while nobody
+     * is playing it.
+     *
+     * @param session Where the game is kept.
+     * @throws IllegalStateException If the game is played in a SharedWorld.
+     */
+    public void saveGame(CompactSession session) {
+        checkNotShared("saved");
+        session.setGame(mode, seed, random.getState(), turns, gameWon);
+        session.setHunter(hunter);
+        session.setTown(currentTown, visit.getNews());
+        session.setWorld(world, townId);
+    }
+
+    /**
+     * Replaces this game with one kept in a CompactSession, news and all. This game's Hunter is reused, and so
+     * are its Town and Shop when the mode is the same, so a few games can take turns playing any number of
+     * sessions without making new objects. Any journal is detached.
+     *
+     * @param session A session saved with saveGame(CompactSession).
+     */
+    public void loadGame(CompactSession session) {
+        setJournal(null);
+        leaveSharedTown();
+        sharedWorld = null;
+        boolean sameMode = currentTown != null && currentTown.getMode() == session.getMode()
+                && !currentTown.isShared(); // a shared town, and its shop, belong to the shared world
+        boolean reuseTown = sameMode && world == null; // a world's towns belong to the world
+        mode = session.getMode();
+        seed = session.getSeed();
+        random.setState(session.getRandomState());
+        turns = session.getTurns();
+        gameWon = session.isGameWon();
+        Arrays.fill(stalls, 0); // stalls aren't saved, so they count from the load
+        if (hunter == null) {
+            hunter = new Hunter(session.getHunterName(), session.getGold(), session.getKitSize());
+        }
+        hunter.reset(session.getHunterName(), session.getGold(), session.getKitSize(), session.getKitBits(),
+                session.getTreasureSlots());
+
+        ByteBuffer savedWorld = session.getSavedWorld();
+        if (savedWorld == null) {
+            world = null;
+            worldSeed = null;
+            if (reuseTown) {
+                currentTown.reset(session.getTerrain(), session.isToughTown(), session.getTownTreasure(),
+                        session.getVisitFlags());
+            } else {
+                currentTown = new Town(new Shop(mode, in, out), mode, session.getTerrain(), session.isToughTown(),
+                        session.getTownTreasure(), random, out);
+                currentTown.setVisitFlags(session.getVisitFlags());
+            }
+        } else {
+            Shop shop = sameMode ? currentTown.getShop() : new Shop(mode, in, out);
+            world = WorldMap.readFrom(savedWorld, mode, shop, random, out, worldCacheSize);
+            worldSeed = world.getWorldSeed();
+            townId = session.getTownId();
+            currentTown = world.townAt(townId);
+        }
+        arrive(currentTown);
+        session.restoreNews(visit.getNews());
     }
 
+    /**
+     * Traces every random decision of this game from now on, or stops tracing it. Can be switched at any time,
+     * even in the middle of a game.
+     *
+     * @param trace Where the decisions are traced (see DecisionTrace.forSession()), or null to stop.
+     */
+    public void setTrace(SessionTrace trace) {
+        random.setTrace(trace);
+    }
 
     /**
-     * Starts the game; this is the only public method
+     * Records every action and random draw of this game from now on. Call this before the game starts.
+     *
+     * @param journal The journal to write to.
      */
-    public void play() {
+    public void setJournal(ActionJournal journal) {
+        this.journal = journal;
+        random.setJournal(journal);
+    }
+
+
+    /**
+     * Lets the player save the game with "v" and load it back with "r", in a file named after the hunter.
+     * Games can't be saved or loaded until this is called, and then those choices are invalid like any other.
+     *
+     * @param saveFolder The folder saved games are kept in, or null to turn saving and loading off.
+     */
+    public void setSaveFolder(Path saveFolder) {
+        this.saveFolder = saveFolder;
+        renderer.setSaving(saveFolder != null);
+    }
+
+    /**
+     * Plays the next game started on a world map, where towns stay put and can be visited again,
+     * instead of making a new town on every move. Call this before the game starts.<p>
+     * The towns come from the world seed, so the same world seed always makes the same map,
+     * whatever the game's seed is.
+     *
+     * @param worldSeed The seed the world's towns are made from.
+     * @param cacheSize The most towns kept whole at once; towns that drop out are made again when visited.
+     */
+    public void useWorld(long worldSeed, int cacheSize) {
+        this.worldSeed = worldSeed;
+        worldCacheSize = cacheSize;
+    }
+
+    /**
+     * Plays the next game started in a world whose towns are shared with every other game playing in it, so
+     * hunters can meet in the same town and race each other for its treasure and gold. Call this before the
+     * game starts.<p>
+     * Since other hunters change the towns, games in a shared world can't be saved, forked or journaled.
+     * The hunter leaves any shared town they are in, so call this with null when a game in a shared world is
+     * over and the town can be forgotten.
+     *
+     * @param sharedWorld The world, or null to stop sharing towns.
+     */
+    public void useSharedWorld(SharedWorld sharedWorld) {
+        leaveSharedTown();
+        this.sharedWorld = sharedWorld;
+    }
+
+    /**
+     * Starts the game and plays it with the player's input until they quit, the game ends or the input ends.
+     *
+     * @return How the game turned out.
+     */
+    public GameOutcome play() {
         welcomePlayer();
-        enterTown();
         showMenu();
+        return getOutcome();
     }
 
     /**
-     * Creates a hunter object at the beginning of the game and populates the class member variable with it.
+     * Gets this game ready to be played again from the start with a new seed, keeping its Hunter, Town and Shop
+     * to be reused by start(). Any journal is detached, and the next game doesn't use a world map.
+     *
+     * @param seed The seed for the new game's random numbers.
      */
-    private void welcomePlayer() {
-        System.out.println("Welcome to " + Colors.CYAN + "TREASURE HUNTER" + Colors.RESET + "!");
-        System.out.println("Going hunting for the big treasure, eh?");
-        System.out.print("What's your name, Hunter? ");
-        String name = SCANNER.nextLine().toLowerCase();
-
-        // set hunter instance variable
-        hunter = new Hunter(name, 10);
-
-        System.out.print("Choose your mode {(e)asy, (n)ormal, (h)ard}: ");
-        String mode = SCANNER.nextLine().toLowerCase();
-        if (mode.equals("h")) {
-            hardMode = true;
-        } else if (mode.equals("e")) {
-            easyMode = true;
-            hunter.changeGold(20);
-        } else if (mode.equals("s")) {
-            samuraiMode = true;
-        } else if (mode.equals("test")) {
-            hunter.changeGold(90);
-            hunter.addItem("water");
-            hunter.addItem("rope");
-            hunter.addItem("machete");
-            hunter.addItem("horse");
-            hunter.addItem("boots");
-            hunter.addItem("boat");
-            hunter.addItem("shovel");
-        }
-    }
-
-    public static boolean getEasyMode() {
-        if (easyMode) {
-            return true;
+    public void reset(long seed) {
+        this.seed = seed;
+        random.setState(seed);
+        setJournal(null);
+        gameWon = false;
+        turns = 0;
+        worldSeed = null;
+        world = null;
+        leaveSharedTown();
+        sharedWorld = null;
+    }
+
+    /**
+     * Starts a game without asking the player anything, used when the game is played headless.<p>
+     * Choices are then sent straight to processChoice().
+     *
+     * @param name The hunter's name.
+     * @param mode The difficulty mode.
+     * @throws IllegalStateException If the game has a journal and is played in a SharedWorld.
+     */
+    public void start(String name, GameMode mode) {
+        if (journal != null) {
+            checkNotShared("journaled");
+            journal.beginStart(seed, mode, name, worldSeed);
+        }
+        leaveSharedTown();
+        this.mode = mode;
+        GameMetrics.count(Metric.GAMES_STARTED);
+        Arrays.fill(stalls, 0);
+        if (hunter == null) {
+            hunter = new Hunter(name, mode.getStartingGold(), mode.getKitSize());
+        } else {
+            hunter.reset(name, mode.getStartingGold(), mode.getKitSize());
+        }
+        if (mode == GameMode.TEST) {
+            hunter.addItem(Item.WATER);
+            hunter.addItem(Item.ROPE);
+            hunter.addItem(Item.MACHETE);
+            hunter.addItem(Item.HORSE);
+            hunter.addItem(Item.BOOTS);
+            hunter.addItem(Item.BOAT);
+            hunter.addItem(Item.SHOVEL);
+        }
+        if (sharedWorld != null) {
+            world = null;
+            townId = WorldMap.ORIGIN;
+            enterSharedTown();
+        } else if (worldSeed == null) {
+            world = null;
+            enterTown();
         } else {
-            return false;
+            world = new WorldMap(worldSeed, mode, new Shop(mode, in, out), random, out, worldCacheSize);
+            townId = WorldMap.ORIGIN;
+            arrive(world.townAt(townId));
         }
+        endJournalRecord();
+    }
+
+    // accessors
+    public Hunter getHunter() {
+        return hunter;
+    }
+
+    public Town getCurrentTown() {
+        return currentTown;
+    }
+
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public long getSeed() {
+        return seed;
     }
 
-    public static boolean getSamuraiMode() {
-        if (samuraiMode) {
-            return true;
+    /**
+     * @return The game's world map, or null if every move makes a new town.
+     */
+    public WorldMap getWorld() {
+        return world;
+    }
+
+    /**
+     * @return The id of the hunter's town on the world map (see WorldMap.townId()).
+     */
+    public long getTownId() {
+        return townId;
+    }
+
+    /**
+     * @return The latest news for this game's hunter in the town they are in.
+     */
+    public String getLatestNews() {
+        return visit.getLatestNews();
+    }
+
+    /**
+     * @return A read-only view of this game, which always shows the game as it is now.
+     */
+    public GameView getView() {
+        return view;
+    }
+
+    /**
+     * @param item An item needed to cross terrain.
+     * @return The number of times this game the hunter tried to move on but couldn't, for want of that item.
+     */
+    public int getStalls(Item item) {
+        return stalls[item.ordinal()];
+    }
+
+    /**
+     * @return true if the hunter has collected all three treasures.
+     */
+    public boolean isGameWon() {
+        return gameWon;
+    }
+
+    /**
+     * Copies the game into a GameState that can be played ahead without changing this game (see GameState).
+     *
+     * @return The game as it is now, with the same random draws to come.
+     * @throws IllegalStateException If the game is played on a world map, whose towns can't be forked.
+     */
+    public GameState fork() {
+        if (world != null || sharedWorld != null) {
+            throw new IllegalStateException("Games on a world map can't be forked");
+        }
+        GameResult result = null;
+        if (gameWon) {
+            result = GameResult.WON;
+        } else if (hunter.isBankrupt()) {
+            result = GameResult.BANKRUPT;
+        }
+        return new GameState(mode, random.getState(), hunter, currentTown, turns, result);
+    }
+
+    /**
+     * Sums up the game. A game that hasn't been won or lost counts as quit.
+     *
+     * @return How the game turned out.
+     */
+    public GameOutcome getOutcome() {
+        GameResult result;
+        if (gameWon) {
+            result = GameResult.WON;
+        } else if (hunter.isBankrupt()) {
+            result = GameResult.BANKRUPT;
         } else {
-            return false;
+            result = GameResult.QUIT;
         }
+        return new GameOutcome(result, turns, hunter.getGold());
     }
 
     /**
-     * Creates a new town and adds the Hunter to it.
+     * @return true if the game has ended by winning or by running out of gold.
      */
-    private void enterTown() {
-        double markdown = 0.5;
-        double toughness = 0.4;
-        if (hardMode) {
-            //            // in hard mode, you get less money back when you sell items
-            markdown = 0.25;
+    public boolean isGameOver() {
+        return gameWon || hunter.isBankrupt();
+    }
 
-            // and the town is "tougher"
-            toughness = 0.75;
+    /**
+     * Creates a hunter object at the beginning of the game and populates the class member variable with it.
+     */
+    private void welcomePlayer() {
+        if (color) {
+            out.println("Welcome to " + Colors.CYAN + "TREASURE HUNTER" + Colors.RESET + "!");
+        } else {
+            out.println("Welcome to TREASURE HUNTER!");
         }
+        out.println("Going hunting for the big treasure, eh?");
+        out.print("What's your name, Hunter? ");
+        String name = in.nextLine();
 
-        if (easyMode) {
-            //            // in easy mode, you get all your money back when you sell items
-            markdown = 1;
+        out.print("Choose your mode {(e)asy, (n)ormal, (h)ard}: ");
+        String modeChoice = in.nextLine();
 
-            // and the town is less "tough"
-            toughness = 0.25;
-        }
+        // set hunter instance variable; the mode decides the starting gold and kit size
+        start(name, GameMode.fromInput(modeChoice));
+    }
 
-        // note that we don't need to access the Shop object
-        // outside of this method, so it isn't necessary to store it as an instance
-        // variable; we can leave it as a local variable
-        Shop shop = new Shop(markdown);
+    /**
+     * Moves the Hunter into a new town.<p>
+     * The mode decides the shop's markdown (less gold back in hard mode, all of it in easy mode)
+     * and how "tough" the town is.
+     */
+    private void enterTown() {
+        // this assigns a random treasure to the town, using the mode's treasure weights
+        Treasure townTreasure = TownOdds.forMode(mode).pickTreasure(random);
+        SessionTrace trace = random.getTrace();
+        if (trace != null) {
+            trace.record(TraceEvent.TREASURE, townTreasure.ordinal());
+        }
 
-        // creating the new Town -- which we need to store as an instance
-        // variable in this class, since we need to access the Town
-        // object in other methods of this class
-        // this assigns a random treasure to the town too
-        String townTreasure = townTreasures[(int) (Math.random() * 4)];
-        currentTown = new Town(shop, toughness, townTreasure);
+        // only the first town of a game (or of a new mode, or after a shared world) needs a Town and Shop to be
+        // created; after that the same Town is reset for every new town, and every shop is the same
+        if (currentTown == null || currentTown.getMode() != mode || currentTown.isShared()) {
+            Shop shop = new Shop(mode, in, out);
+            currentTown = new Town(shop, mode, townTreasure, random, out);
+        } else {
+            currentTown.reset(townTreasure);
+        }
 
         // calling the hunterArrives method, which takes the Hunter
         // as a parameter; note this also could have been done in the
         // constructor for Town, but this illustrates another way to associate
         // an object with an object of a different class
-        currentTown.hunterArrives(hunter);
+        arrive(currentTown);
+    }
+
+    /**
+     * Brings the hunter into a town. In a shared world the hunter gets a visit of their own alongside any other
+     * hunters there; otherwise they play the town's own visit.
+     *
+     * @param town The town the hunter is now in.
+     */
+    private void arrive(Town town) {
+        currentTown = town;
+        if (sharedWorld == null) {
+            town.hunterArrives(hunter);
+            visit = town.getVisit();
+        } else {
+            visit = town.hunterArrives(hunter, new Shop(mode, in, out), random, out);
+        }
+    }
+
+    /**
+     * Brings the hunter into the shared world's town at townId.
+     */
+    private void enterSharedTown() {
+        Town town = sharedWorld.enterTown(mode, townId, random.getTrace());
+        inSharedTown = true;
+        arrive(town);
+    }
+
+    /**
+     * Takes the hunter out of the shared town they are in, if they are in one, so the world can forget it once
+     * nobody is there.
+     */
+    private void leaveSharedTown() {
+        if (inSharedTown) {
+            sharedWorld.leaveTown(mode, townId, currentTown);
+            inSharedTown = false;
+        }
+    }
+
+    private void checkNotShared(String what) {
+        if (sharedWorld != null) {
+            throw new IllegalStateException("Games in a shared world can't be " + what);
+        }
     }
 
     /**
      * Displays the menu and receives the choice from the user.<p>
      * The choice is sent to the processChoice() method for parsing.<p>
-     * This method will loop until the user chooses to exit.
+     * This method will loop until the user chooses to exit or the game is over.
      */
     private void showMenu() {
         String choice = "";
 
-        while (!choice.equals("x")) {
-            System.out.println();
-            System.out.println(currentTown.getLatestNews());
-            System.out.println("***");
-            System.out.println(hunter);
-            System.out.println(currentTown);
-            System.out.println("(B)uy something at the shop.");
-            System.out.println("(S)ell something at the shop.");
-            System.out.println("(M)ove on to a different town.");
-            System.out.println("(L)ook for trouble!");
-            System.out.println("(H)unt for treasure!");
-            System.out.println("(D)ig for gold!");
-            System.out.println("Give up the hunt and e(X)it.");
-            System.out.println();
-            System.out.print("What's your next move? ");
-            choice = SCANNER.nextLine().toLowerCase();
-            processChoice(choice);
+        while (!choice.equals("x") && !isGameOver()) {
+            if (!Messages.isDiscarded(out)) {
+                renderer.render(visit.getLatestNews(), hunter, currentTown);
+            }
+            choice = in.nextLine();
+            if (in.isClosed()) {
+                // the player is gone, so leave the game as if they chose to exit
+                choice = "x";
+            }
+
+            // saving and loading aren't moves, so they don't count as turns
+            if (choice.equals("v") && saveFolder != null) {
+                saveToFile();
+            } else if (choice.equals("r") && saveFolder != null) {
+                loadFromFile();
+            } else {
+                processChoice(choice);
+            }
         }
     }
 
+    /**
+     * Saves the game to a file named after the hunter.<p>
+     * The game is written to a temporary file that then replaces the old save in one step, so a crash
+     * while saving leaves the old save whole.
+     */
+    private void saveToFile() {
+        Path file = saveFile();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(saveFolder, file.getFileName().toString(), ".tmp");
+            Files.write(temp, saveGame());
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+            out.println("Your game has been saved.");
+        } catch (IOException e) {
+            out.println("Sorry, your game couldn't be saved: " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // the old save is still there; the temporary file is only clutter
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the game saved under the hunter's name.
+     */
+    private void loadFromFile() {
+        try {
+            loadGame(ByteBuffer.wrap(Files.readAllBytes(saveFile())));
+            out.println("Your saved game has been loaded.");
+        } catch (NoSuchFileException e) {
+            out.println("You don't have a saved game, " + hunter.getHunterName() + ".");
+        } catch (IOException | IllegalArgumentException e) {
+            out.println("Sorry, your saved game couldn't be loaded: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Names the save file with the letters and digits of the hunter's name. Names with any other characters
+     * also get a hash of the whole name, so e.g. "Bob" and "bob!" don't share a file.
+     *
+     * @return The save file in the save folder.
+     */
+    private Path saveFile() {
+        String name = hunter.getHunterName();
+        String fileName = name.replaceAll("[^a-z0-9]", "");
+        if (!fileName.equals(name)) {
+            fileName += "-" + Integer.toHexString(name.hashCode());
+        }
+        return saveFolder.resolve("treasurehunter-" + fileName + ".sav");
+    }
+
     /**
      * Takes the choice received from the menu and calls the appropriate method to carry out the instructions.
      * @param choice The action to process.
      */
-    private void processChoice(String choice) {
+    public void processChoice(String choice) {
+        processChoice(choice, null, true);
+    }
+
+    /**
+     * Takes a choice without asking the player anything, used when the game is played headless.<p>
+     * Buying or selling trades the given item straight away. Moving on a world map heads the given way.
+     *
+     * @param choice The action to process.
+     * @param item The item to buy or sell, or null to leave the shop without trading;
+     *             or when moving on a world map, the way to head ("n", "e", "s" or "w"), or null for east.
+     */
+    public void processChoice(String choice, String item) {
+        processChoice(choice, item, false);
+    }
+
+    /**
+     * Lets a strategy pick the next move and carries it out, used when the game is played by a bot.
+     *
+     * @param strategy The strategy picking the move.
+     * @return false if the strategy chose to quit.
+     */
+    public boolean playTurn(Strategy strategy) {
+        Move move = strategy.nextMove(view);
+        processChoice(move.getChoice(), move.getItemName(), false);
+        return move != Move.QUIT;
+    }
+
+    /**
+     * Carries out a choice, records it in the journal and adds its time to GameMetrics. Choices that ask the
+     * player something aren't timed, since their time would mostly be the player typing.
+     *
+     * @param choice The action to process.
+     * @param item The item to buy or sell (or the way to head) when not asking the player.
+     * @param askPlayer Whether the shop asks the player what to trade, and the world map which way to head.
+     */
+    private void processChoice(String choice, String item, boolean askPlayer) {
+        boolean onMap = world != null || sharedWorld != null;
+        boolean asks = askPlayer && (choice.equals("b") || choice.equals("s") || (choice.equals("m") && onMap));
+        boolean timed = GameMetrics.isTiming() && !asks;
+        boolean wasOver = isGameOver(); // a game that has ended isn't counted again
+        long started = 0;
+        if (timed) {
+            started = System.nanoTime();
+        }
+        turns++;
+        if (journal != null) {
+            journal.beginAction(choice);
+        }
+
         if (choice.equals("b") || choice.equals("s")) {
-            currentTown.enterShop(choice);
+            if (askPlayer) {
+                item = visit.enterShop(choice);
+            } else {
+                visit.enterShop(choice, item);
+            }
+            if (journal != null) {
+                journal.recordTrade(item);
+            }
+        } else if (choice.equals("m") && onMap) {
+            moveOnMap(item, askPlayer);
         } else if (choice.equals("m")) {
-            if (currentTown.leaveTown()) {
+            if (visit.leaveTown()) {
                 // This town is going away so print its news ahead of time.
-                System.out.println(currentTown.getLatestNews());
+                if (!Messages.isDiscarded(out)) {
+                    out.println(visit.getLatestNews());
+                }
                 enterTown();
+            } else {
+                stalls[currentTown.getTerrain().getNeededItem().ordinal()]++;
             }
         } else if (choice.equals("l")) {
-            currentTown.lookForTrouble();
+            visit.lookForTrouble();
         } else if (choice.equals("x")) {
-            System.out.println("Fare thee well, " + hunter.getHunterName() + "!");
+            if (!Messages.isDiscarded(out)) {
+                out.println("Fare thee well, " + hunter.getHunterName() + "!");
+            }
         } else if (choice.equals("h")) {
-            currentTown.huntForTreasure();
-            if (currentTown.checkTreasures()) {
-                System.out.println("\nYou win! You have collected all three treasures!");
-                System.out.println("-----------------------------------------------------------");
-                System.out.println("|Congratulations! You have collected all three treasures!|");
-                System.out.println("-----------------------------------------------------------");
-                System.exit(0);
+            visit.huntForTreasure();
+            if (visit.checkTreasures()) {
+                out.println("\nYou win! You have collected all three treasures!");
+                out.println("-----------------------------------------------------------");
+                out.println("|Congratulations! You have collected all three treasures!|");
+                out.println("-----------------------------------------------------------");
+                gameWon = true;
+                if (!wasOver) {
+                    GameMetrics.count(Metric.GAMES_WON);
+                }
             }
         } else if (choice.equals("d")) {
-            currentTown.digForGold();
+            visit.digForGold();
+        } else {
+            out.println("Yikes! That's an invalid option! Try again.");
+        }
+
+        if (hunter.isBankrupt()) {
+            out.println("Sorry, traveler, your gold has run out!");
+            out.println("--------------------");
+            out.println("|  ! GAME OVER !   |");
+            out.println("--------------------");
+            if (!wasOver && !gameWon) {
+                GameMetrics.count(Metric.GAMES_BANKRUPT);
+            }
+        }
+
+        endJournalRecord();
+        if (timed) {
+            GameMetrics.recordAction(choice, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Moves the Hunter to the next town on the world map, if they can cross the terrain around this town.
+     *
+     * @param way The way to head when not asking the player, or null for east.
+     * @param askPlayer Whether to ask the player which way to head.
+     */
+    private void moveOnMap(String way, boolean askPlayer) {
+        Direction direction = Direction.EAST;
+        if (askPlayer) {
+            out.print("Which way? (n)orth, (e)ast, (s)outh or (w)est? ");
+            direction = Direction.fromInput(in.nextLine());
+        } else if (way != null) {
+            direction = Direction.fromInput(way);
+        }
+        if (direction == null) {
+            out.println("There's no road that way.");
+            return;
+        }
+        if (journal != null) {
+            journal.recordDirection(direction);
+        }
+
+        if (visit.leaveTown()) {
+            // This town stays on the map but the news is about leaving it, so print it ahead of time.
+            if (!Messages.isDiscarded(out)) {
+                out.println(visit.getLatestNews());
+            }
+            leaveSharedTown();
+            townId = WorldMap.neighbor(townId, direction);
+            if (sharedWorld != null) {
+                enterSharedTown();
+            } else {
+                arrive(world.townAt(townId));
+            }
+            if (!Messages.isDiscarded(out)) {
+                out.println("You head " + direction + " to the town at (" + WorldMap.getX(townId) + ", "
+                        + WorldMap.getY(townId) + ").");
+            }
         } else {
-            System.out.println("Yikes! That's an invalid option! Try again.");
+            stalls[currentTown.getTerrain().getNeededItem().ordinal()]++;
+        }
+    }
+
+    /**
+     * Appends the action that just finished to the journal, if there is one.
+     */
+    private void endJournalRecord() {
+        if (journal != null) {
+            try {
+                journal.endRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 }
\ No newline at end of file
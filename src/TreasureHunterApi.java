@@ -0,0 +1,635 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The TreasureHunterApi serves games over HTTP, with JSON answers, so the game can sit behind a web frontend.<p>
+ * Every answer holds the whole state of the game, so a client never has to remember anything but the session id:
+ * <pre>
+ * POST   /sessions                    mode, name, seed, world and trace (all optional): starts a game
+ * GET    /sessions/{id}               the game's state
+ * POST   /sessions/{id}/actions       action (buy, sell, move, trouble, hunt, dig or quit), plus item for buy
+ *                                     and sell, or direction for move on a world map
+ * POST   /sessions/{id}/trace         enabled (true or false): starts or stops tracing the game's decisions
+ * DELETE /sessions/{id}               ends the session, answering with its last state
+ * </pre>
+ * Parameters can be sent in the query string, as a form, or as a flat JSON object, e.g.
+ * {"action": "buy", "item": "boat"}. The state's "output" is everything the game printed during the last request.<p>
+ * Games are played headless with processChoice(), so nothing ever waits on a player. Each request runs on its own
+ * virtual thread when the JVM has them (see TreasureHunterServer), and each session is only played by one request
+ * at a time. The port only listens on the loopback address.<p>
+ * Between requests a session is only a CompactSession, of about a hundred bytes. Each request loads it into one
+ * of a few pooled games, plays it and saves it back, so the server's memory grows with the number of requests
+ * being answered at once rather than with the number of sessions.<p>
+ * Tracing needs the API to have been given a DecisionTrace file; the state of a traced game says "traced": true.<p>
+ * A session that gets no requests for the idle timeout (30 minutes unless given) is ended as if it were deleted.<p>
+ * Usage: java TreasureHunterApi [port] [decision trace file, or - for none] [idle minutes]
+ */
+
+public class TreasureHunterApi implements Closeable {
+    // constants
+    public static final long DEFAULT_IDLE_MINUTES = 30;
+    private static final int DEFAULT_PORT = 8080;
+    private static final String JSON = "application/json";
+    private static final Item[] ITEMS = Item.values();
+
+    // instance variables
+    private HttpServer server;
+    private ExecutorService requests;
+    private ConcurrentHashMap<Long, Session> sessions;
+    private ConcurrentLinkedQueue<GameHost> hosts; // games that aren't playing a session right now
+    private AtomicLong nextId;
+    private SplittableRandom seeds; // guarded by itself
+    private DecisionTrace trace; // null if sessions can't be traced
+    private long idleNanos;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Opens the API's port and starts answering requests.
+     *
+     * @param port The local port to listen on, or 0 for any free port.
+     * @throws IOException If the port can't be opened.
+     */
+    public TreasureHunterApi(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * Opens the API's port and starts answering requests, letting sessions be traced.
+     *
+     * @param port The local port to listen on, or 0 for any free port.
+     * @param trace Where traced sessions' decisions are written, or null if sessions can't be traced.
+     * @throws IOException If the port can't be opened.
+     */
+    public TreasureHunterApi(int port, DecisionTrace trace) throws IOException {
+        this(port, trace, DEFAULT_IDLE_MINUTES);
+    }
+
+    /**
+     * Opens the API's port and starts answering requests, letting sessions be traced and ending idle sessions.
+     *
+     * @param port The local port to listen on, or 0 for any free port.
+     * @param trace Where traced sessions' decisions are written, or null if sessions can't be traced.
+     * @param idleMinutes How long a session can go without requests before it is ended.
+     * @throws IOException If the port can't be opened.
+     */
+    public TreasureHunterApi(int port, DecisionTrace trace, long idleMinutes) throws IOException {
+        this.trace = trace;
+        idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        sessions = new ConcurrentHashMap<Long, Session>();
+        hosts = new ConcurrentLinkedQueue<GameHost>();
+        nextId = new AtomicLong();
+        seeds = new SplittableRandom();
+        requests = TreasureHunterServer.newSessionExecutor();
+        // without this the server holds back each small answer until the client acknowledges the last
+        // one (Nagle's algorithm), which adds about 40 ms to every request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/sessions", this::handle);
+        server.setExecutor(requests);
+        server.start();
+
+        // idle sessions are looked for a few times per timeout, so none lives much past it
+        long sweepNanos = Math.max(idleNanos / 4, TimeUnit.SECONDS.toNanos(1));
+        sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::endIdleSessions, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The number of sessions that haven't been deleted.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops answering requests and closes the port.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        requests.shutdown();
+        sweeper.shutdown();
+    }
+
+    /**
+     * Ends every session that hasn't had a request for the idle timeout.
+     */
+    private void endIdleSessions() {
+        long now = System.nanoTime();
+        for (Session session : sessions.values()) {
+            if (now - session.lastUsed > idleNanos) {
+                // a request that found the session just before this still finishes; the session is only forgotten
+                sessions.remove(session.id, session);
+            }
+        }
+    }
+
+    /**
+     * Sends a request to the right place by its method and path.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            // path[0] is empty and path[1] is "sessions"
+            if (path.length == 2 && method.equals("POST")) {
+                Session session = create(readParameters(exchange));
+                respond(exchange, 201, session.toJson());
+                return;
+            }
+            Session session = null;
+            if (path.length >= 3) {
+                session = sessions.get(parseId(path[2]));
+            }
+            if (session != null) {
+                session.lastUsed = System.nanoTime();
+            }
+            if (session == null) {
+                respond(exchange, 404, error("No such session"));
+            } else if (path.length == 3 && method.equals("GET")) {
+                respond(exchange, 200, session.toJson());
+            } else if (path.length == 3 && method.equals("DELETE")) {
+                sessions.remove(session.id);
+                respond(exchange, 200, session.toJson());
+            } else if (path.length == 4 && path[3].equals("actions") && method.equals("POST")) {
+                Map<String, String> parameters = readParameters(exchange);
+                String choice = choiceFor(parameters.get("action"));
+                if (choice == null) {
+                    respond(exchange, 400, error("Unknown action, try buy, sell, move, trouble, hunt, dig or quit"));
+                } else {
+                    String item = parameters.get("item");
+                    if (choice.equals("m")) {
+                        item = parameters.get("direction");
+                    }
+                    String state = play(session, choice, item);
+                    if (state == null) {
+                        respond(exchange, 409, error("The game is over"));
+                    } else {
+                        respond(exchange, 200, state);
+                    }
+                }
+            } else if (path.length == 4 && path[3].equals("trace") && method.equals("POST")) {
+                if (trace == null) {
+                    respond(exchange, 409, error("This server wasn't started with a trace file"));
+                } else {
+                    boolean enabled = Boolean.parseBoolean(readParameters(exchange).get("enabled"));
+                    respond(exchange, 200, session.setTrace(enabled ? trace.forSession(session.id) : null));
+                }
+            } else {
+                respond(exchange, 405, error("Not allowed"));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            // a bug in the game shouldn't leave the client without an answer
+            System.err.println("Couldn't answer " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + ": " + e);
+            respond(exchange, 500, error("Something went wrong on the server"));
+        }
+    }
+
+    /**
+     * Starts a new game.
+     *
+     * @param parameters The request's mode, name, seed and world.
+     * @return The new session.
+     * @throws IllegalArgumentException If a parameter isn't valid.
+     */
+    private Session create(Map<String, String> parameters) {
+        GameMode mode = GameMode.NORMAL;
+        if (parameters.containsKey("mode")) {
+            mode = GameMode.valueOf(parameters.get("mode").toUpperCase());
+        }
+        String name = parameters.getOrDefault("name", "hunter");
+        long seed;
+        if (parameters.containsKey("seed")) {
+            seed = Long.parseLong(parameters.get("seed"));
+        } else {
+            synchronized (seeds) {
+                seed = seeds.nextLong();
+            }
+        }
+        Long world = null;
+        if (parameters.containsKey("world")) {
+            world = Long.parseLong(parameters.get("world"));
+        }
+        Session session = new Session(nextId.incrementAndGet());
+        if (trace != null && Boolean.parseBoolean(parameters.get("trace"))) {
+            session.trace = trace.forSession(session.id);
+        }
+        GameHost host = borrowHost();
+        try {
+            session.start(host, seed, name, mode, world);
+        } finally {
+            hosts.offer(host);
+        }
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /**
+     * Plays one action of a session on a pooled game.
+     *
+     * @return The game's state afterwards, or null if the game was already over.
+     */
+    private String play(Session session, String choice, String item) {
+        GameHost host = borrowHost();
+        try {
+            return session.act(host, choice, item);
+        } finally {
+            hosts.offer(host);
+        }
+    }
+
+    /**
+     * @return A game that isn't playing a session, made if they are all busy.
+     */
+    private GameHost borrowHost() {
+        GameHost host = hosts.poll();
+        if (host == null) {
+            host = new GameHost();
+        }
+        return host;
+    }
+
+    /**
+     * @param action An action's name.
+     * @return The menu choice for the action, or null if there's no such action.
+     */
+    private static String choiceFor(String action) {
+        if (action == null) {
+            return null;
+        }
+        switch (action.toLowerCase()) {
+            case "buy":
+                return "b";
+            case "sell":
+                return "s";
+            case "move":
+                return "m";
+            case "trouble":
+                return "l";
+            case "hunt":
+                return "h";
+            case "dig":
+                return "d";
+            case "quit":
+                return "x";
+            default:
+                return null;
+        }
+    }
+
+    private static long parseId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the parameters in the query string and the body, which can be a form or a flat JSON object.
+     */
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            readForm(query, parameters);
+        }
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+        if (body.startsWith("{")) {
+            readJson(body, parameters);
+        } else if (!body.isEmpty()) {
+            readForm(body, parameters);
+        }
+        return parameters;
+    }
+
+    private static void readForm(String form, Map<String, String> parameters) {
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Reads a JSON object whose values are all strings, numbers or booleans.
+     *
+     * @throws IllegalArgumentException If it isn't one.
+     */
+    private static void readJson(String json, Map<String, String> parameters) {
+        int position = 1;
+        while (position < json.length()) {
+            char next = json.charAt(position);
+            if (next == '}') {
+                return;
+            } else if (next == '"') {
+                StringBuilder key = new StringBuilder();
+                position = readJsonString(json, position, key);
+                position = json.indexOf(':', position);
+                if (position < 0) {
+                    break;
+                }
+                position++;
+                while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                    position++;
+                }
+                StringBuilder value = new StringBuilder();
+                if (position < json.length() && json.charAt(position) == '"') {
+                    position = readJsonString(json, position, value);
+                } else {
+                    while (position < json.length() && ",}".indexOf(json.charAt(position)) < 0) {
+                        value.append(json.charAt(position));
+                        position++;
+                    }
+                }
+                parameters.put(key.toString(), value.toString().trim());
+            } else {
+                position++;
+            }
+        }
+        throw new IllegalArgumentException("The body isn't a flat JSON object");
+    }
+
+    /**
+     * Reads a JSON string starting at its opening quote.
+     *
+     * @return The position just after its closing quote.
+     */
+    private static int readJsonString(String json, int position, StringBuilder string) {
+        position++;
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c == '"') {
+                return position + 1;
+            }
+            if (c == '\\' && position + 1 < json.length()) {
+                position++;
+                c = json.charAt(position);
+                if (c == 'n') {
+                    c = '\n';
+                } else if (c == 't') {
+                    c = '\t';
+                } else if (c == 'u' && position + 4 < json.length()) {
+                    c = (char) Integer.parseInt(json.substring(position + 1, position + 5), 16);
+                    position += 4;
+                }
+            }
+            string.append(c);
+            position++;
+        }
+        throw new IllegalArgumentException("The body has an unfinished string");
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Writes a JSON string, leaving out any ANSI color codes.
+     */
+    static void appendString(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\u001b') {
+                // skip the whole color code, up to its closing letter
+                while (i + 1 < text.length() && !Character.isLetter(text.charAt(i + 1))) {
+                    i++;
+                }
+                i++;
+            } else if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c == '\n') {
+                json.append("\\n");
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+
+    /**
+     * A game that plays sessions for requests, one at a time, with the output it printed.
+     */
+    private static class GameHost {
+        private final TreasureHunter game;
+        private final ByteArrayOutputStream printed;
+
+        GameHost() {
+            printed = new ByteArrayOutputStream();
+            game = new TreasureHunter(new PrintStream(printed, true, StandardCharsets.UTF_8), 0, false);
+        }
+
+        /**
+         * @return What the game printed since the last time, which is then cleared.
+         */
+        String takeOutput() {
+            if (printed.size() == 0) {
+                return "";
+            }
+            String output = printed.toString(StandardCharsets.UTF_8);
+            printed.reset();
+            return output;
+        }
+    }
+
+    /**
+     * One game, kept compact between requests, with everything it printed during the last request.
+     */
+    private static class Session {
+        private final long id;
+        private final CompactSession game;
+        private boolean quit;
+        private String output; // what the game printed during the last request
+        private SessionTrace trace; // null unless the session's decisions are traced
+        private volatile long lastUsed; // System.nanoTime() of the session's last request
+
+        Session(long id) {
+            this.id = id;
+            lastUsed = System.nanoTime();
+            game = new CompactSession();
+            quit = false;
+            output = "";
+        }
+
+        /**
+         * Starts the game.
+         *
+         * @param world The world seed, or null if every move makes a new town.
+         */
+        synchronized void start(GameHost host, long seed, String name, GameMode mode, Long world) {
+            host.takeOutput();
+            host.game.reset(seed);
+            host.game.setTrace(trace);
+            if (world != null) {
+                host.game.useWorld(world, WorldMap.DEFAULT_CACHE_SIZE);
+            }
+            host.game.start(name, mode);
+            host.game.setTrace(null);
+            host.game.saveGame(game);
+            output = host.takeOutput();
+        }
+
+        /**
+         * Carries out one action.
+         *
+         * @return The game's state afterwards, or null if the game was already over.
+         */
+        synchronized String act(GameHost host, String choice, String item) {
+            if (quit || game.isGameOver()) {
+                return null;
+            }
+            host.takeOutput();
+            host.game.loadGame(game);
+            host.game.setTrace(trace);
+            host.game.processChoice(choice, item);
+            host.game.setTrace(null);
+            host.game.saveGame(game);
+            if (choice.equals("x")) {
+                quit = true;
+            }
+            output = host.takeOutput();
+            return toJson();
+        }
+
+        /**
+         * Starts or stops tracing the game's decisions.
+         *
+         * @param sessionTrace Where the decisions are traced, or null to stop.
+         * @return The game's state.
+         */
+        synchronized String setTrace(SessionTrace sessionTrace) {
+            trace = sessionTrace;
+            return toJson();
+        }
+
+        synchronized String toJson() {
+            String result = "PLAYING";
+            if (game.isGameWon()) {
+                result = GameResult.WON.toString();
+            } else if (game.getGold() < 0) {
+                result = GameResult.BANKRUPT.toString();
+            } else if (quit) {
+                result = GameResult.QUIT.toString();
+            }
+
+            StringBuilder json = new StringBuilder(512);
+            json.append("{\"id\":").append(id);
+            json.append(",\"seed\":").append(game.getSeed());
+            json.append(",\"mode\":\"").append(game.getMode()).append('"');
+            json.append(",\"result\":\"").append(result).append('"');
+            json.append(",\"turns\":").append(game.getTurns());
+            json.append(",\"gold\":").append(game.getGold());
+            json.append(",\"name\":");
+            appendString(json, game.getHunterName());
+            json.append(",\"kit\":[");
+            boolean first = true;
+            for (Item item : ITEMS) {
+                if ((game.getKitBits() & item.getBit()) != 0) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    json.append('"').append(item.getName()).append('"');
+                    first = false;
+                }
+            }
+            json.append("],\"treasures\":[");
+            first = true;
+            for (String treasure : Hunter.getTreasureList(game.getTreasureSlots())) {
+                if (treasure != null) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    json.append('"').append(treasure).append('"');
+                    first = false;
+                }
+            }
+            json.append("],\"town\":{\"terrain\":\"").append(game.getTerrain().getTerrainName());
+            json.append("\",\"neededItem\":\"").append(game.getTerrain().getNeededItem().getName());
+            json.append("\",\"tough\":").append(game.isToughTown());
+            json.append(",\"searched\":").append(game.isSearched());
+            json.append(",\"dug\":").append(game.isDugged());
+            if (game.hasWorld()) {
+                json.append(",\"x\":").append(WorldMap.getX(game.getTownId()));
+                json.append(",\"y\":").append(WorldMap.getY(game.getTownId()));
+            }
+            json.append("},\"news\":");
+            appendString(json, game.getLatestNews());
+            json.append(",\"output\":");
+            appendString(json, output);
+            if (trace != null) {
+                json.append(",\"traced\":true");
+            }
+            return json.append('}').toString();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        if (args.length > 0) {
+            port = Integer.parseInt(args[0]);
+        }
+        DecisionTrace trace = null;
+        if (args.length > 1 && !args[1].equals("-")) {
+            trace = new DecisionTrace(Paths.get(args[1]), DecisionTrace.DEFAULT_BUFFER_SIZE);
+        }
+        long idleMinutes = DEFAULT_IDLE_MINUTES;
+        if (args.length > 2) {
+            idleMinutes = Long.parseLong(args[2]);
+        }
+        TreasureHunterApi api = new TreasureHunterApi(port, trace, idleMinutes);
+        System.out.println("Treasure Hunter API at http://localhost:" + api.getPort() + "/sessions");
+    }
+}
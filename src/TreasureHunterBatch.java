@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * The TreasureHunterBatch plays games from scripts instead of from a player, for regression tests.<p>
+ * A script holds the lines a player would type, one per line (see ScriptInput), and can hold many games
+ * separated by "---" lines. No prompts or game messages are printed; instead every game prints one result
+ * line that is easy for other programs to read:<p>
+ * RESULT game=1 seed=42 mode=HARD result=WON turns=17 gold=12 treasures=3<p>
+ * followed at the end by a SUMMARY line with the totals. Game number i is seeded with (seed + i), so the same
+ * scripts always give the same results. Batch games never touch the filesystem, so saving and loading ("v" and
+ * "r") are invalid choices like any other.<p>
+ * Usage: java TreasureHunterBatch [--seed=N] [script files...] (reads the script from stdin if no files are given)
+ */
+
+public class TreasureHunterBatch {
+    // constants
+    private static final PrintStream NO_OUTPUT = Messages.DISCARD;
+
+    // instance variables
+    private long seed;
+    private PrintStream results;
+    private SimulationStats stats;
+
+    /**
+     * @param seed The seed of the first game.
+     * @param results Where the result lines are printed.
+     */
+    public TreasureHunterBatch(long seed, PrintStream results) {
+        this.seed = seed;
+        this.results = results;
+        stats = new SimulationStats();
+    }
+
+    /**
+     * Plays every game in a script, printing a result line for each.
+     *
+     * @param script The script.
+     */
+    public void play(InputStream script) {
+        ScriptInput in = new ScriptInput(script);
+        while (in.nextGame()) {
+            long gameSeed = seed + stats.getGames();
+            TreasureHunter game = new TreasureHunter(in, NO_OUTPUT, gameSeed, true);
+            GameOutcome outcome = game.play();
+            stats.record(outcome);
+            results.println("RESULT game=" + stats.getGames() + " seed=" + gameSeed + " mode=" + game.getMode()
+                    + " result=" + outcome.getResult() + " turns=" + outcome.getTurns() + " gold=" + outcome.getGold()
+                    + " treasures=" + game.getHunter().getTreasureCount());
+        }
+    }
+
+    /**
+     * @return The totals of every game played so far.
+     */
+    public SimulationStats getStats() {
+        return stats;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = 0;
+        ArrayList<String> files = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else {
+                files.add(arg);
+            }
+        }
+        // the games aren't timed, only counted
+        GameMetrics.setTiming(false);
+
+        PrintStream results = new PrintStream(System.out, false);
+        TreasureHunterBatch batch = new TreasureHunterBatch(seed, results);
+        long startTime = System.nanoTime();
+        if (files.isEmpty()) {
+            batch.play(System.in);
+        } else {
+            for (String file : files) {
+                try (InputStream script = Files.newInputStream(Paths.get(file))) {
+                    batch.play(script);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        SimulationStats stats = batch.getStats();
+        results.println("SUMMARY games=" + stats.getGames() + " won=" + stats.getWins() + " bankrupt="
+                + stats.getBankruptcies() + " quit=" + stats.getQuits() + " ms=" + (elapsed / 1000000));
+        results.flush();
+    }
+}
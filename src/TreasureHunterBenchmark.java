@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+/**
+ * The TreasureHunterBenchmark times the game's hot paths so slowdowns show up before a change ships.<p>
+ * Each benchmark is warmed up and then run for several timed iterations. For every benchmark it reports
+ * throughput, average time per call and how many bytes each call allocates (and the resulting allocation rate).<p>
+ * Usage: java TreasureHunterBenchmark [name filter] [milliseconds per iteration]<p>
+ * or from the project folder: gradle benchmark --args="[name filter] [milliseconds per iteration]"
+ */
+
+public class TreasureHunterBenchmark {
+    // constants
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int BATCH_SIZE = 1000;
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // static variables
+    private static volatile long sink; // results are written here so the JIT can't throw the work away
+
+    // instance variables
+    private String filter;
+    private long iterationMillis;
+
+    /**
+     * Creates a benchmark runner.
+     *
+     * @param filter Only benchmarks whose name contains this text are run.
+     * @param iterationMillis How long each warmup and timed iteration lasts.
+     */
+    public TreasureHunterBenchmark(String filter, long iterationMillis) {
+        this.filter = filter;
+        this.iterationMillis = iterationMillis;
+    }
+
+    /**
+     * Runs every benchmark that matches the filter and prints a row for each.
+     *
+     * @throws IOException If the decision trace's temporary file can't be made.
+     */
+    public void runAll() throws IOException {
+        System.out.println(String.format("%-36s %14s %12s %12s %14s",
+                "Benchmark", "Thrpt(ops/ms)", "Avg(ns/op)", "Alloc(B/op)", "Alloc(MB/s)"));
+
+        Hunter hunter = newKittedHunter();
+        run("Hunter.hasItemInKit", () -> hunter.hasItemInKit(Item.SHOVEL) ? 1 : 0);
+        run("Hunter.hasItemInKit (missing)", () -> hunter.hasItemInKit(Item.SWORD) ? 1 : 0);
+        run("Hunter.hasItemInKit (by name)", () -> hunter.hasItemInKit("shovel") ? 1 : 0);
+        run("Hunter.addItem+removeItemFromKit", () -> {
+            hunter.removeItemFromKit(Item.BOAT);
+            return hunter.addItem(Item.BOAT) ? 1 : 0;
+        });
+        run("Hunter.getInventory", () -> hunter.getInventory().length());
+        run("Hunter.toString", () -> hunter.toString().length());
+        run("Hunter.toString (changed)", () -> {
+            // a change between every call, so the summary is built every time
+            hunter.changeGold(1);
+            return hunter.toString().length();
+        });
+
+        Shop shop = new Shop(GameMode.NORMAL, null, NO_OUTPUT); // the benchmarks never read any input
+        run("Shop.getCostOfItem", () -> shop.getCostOfItem("boat"));
+        run("Shop.getBuyBackCost", () -> shop.getBuyBackCost("boat"));
+
+        GameRandom random = new GameRandom(42);
+        run("Town.new (getNewTerrain)", () ->
+                new Town(shop, GameMode.NORMAL, Treasure.DUST, random, NO_OUTPUT).getTerrain().getNeededItem().ordinal());
+
+        Hunter[] traveler = {newKittedHunter()};
+        Treasure[] treasures = Treasure.values();
+        run("Town turn (trouble/hunt/leave)", () -> {
+            // a hunter holding every treasure can't find any more, so start over with a new one
+            if (traveler[0].getTreasureCount() == 3) {
+                traveler[0] = newKittedHunter();
+            }
+
+            Town town = new Town(shop, GameMode.NORMAL, treasures[random.nextInt(treasures.length)], random, NO_OUTPUT);
+            town.hunterArrives(traveler[0]);
+            town.lookForTrouble();
+            town.huntForTreasure();
+            boolean left = town.leaveTown();
+
+            // put back anything that broke so every turn starts with the same kit
+            traveler[0].addItem(town.getTerrain().getNeededItem());
+            return left ? 1 : 0;
+        });
+
+        // the same brawl with and without tracing; untraced, each decision only costs a null check
+        Hunter brawler = newKittedHunter();
+        Town brawlTown = new Town(shop, GameMode.NORMAL, Treasure.DUST, new GameRandom(42), NO_OUTPUT);
+        brawlTown.hunterArrives(brawler);
+        run("Town.lookForTrouble", () -> {
+            brawlTown.lookForTrouble();
+            return brawler.getGold();
+        });
+        Path traceFile = Files.createTempFile("benchmark", ".trace");
+        try (DecisionTrace trace = new DecisionTrace(traceFile, DecisionTrace.DEFAULT_BUFFER_SIZE)) {
+            GameRandom tracedRandom = new GameRandom(42);
+            tracedRandom.setTrace(trace.forSession(1));
+            Town tracedTown = new Town(shop, GameMode.NORMAL, Treasure.DUST, tracedRandom, NO_OUTPUT);
+            tracedTown.hunterArrives(brawler);
+            run("Town.lookForTrouble (traced)", () -> {
+                tracedTown.lookForTrouble();
+                return brawler.getGold();
+            });
+        } finally {
+            Files.delete(traceFile);
+        }
+
+        TreasureHunter game = new TreasureHunter(NO_OUTPUT, 42);
+        game.start("bench", GameMode.NORMAL);
+        GameState state = game.fork();
+        run("GameState.fork", () -> state.fork().getGold());
+        run("GameState.fork+reseed+play", () -> {
+            GameState fork = state.fork();
+            fork.reseed(42);
+            fork.play(Move.LOOK_FOR_TROUBLE);
+            return fork.getGold();
+        });
+    }
+
+    /**
+     * Warms up and times one benchmark, then prints its row.
+     *
+     * @param name The benchmark's name.
+     * @param op The code being timed; its result is kept so it can't be optimized away.
+     */
+    private void run(String name, LongSupplier op) {
+        if (!name.contains(filter)) {
+            return;
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(op);
+        }
+
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long count = iteration(op);
+            nanos += System.nanoTime() - start;
+            bytes += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            ops += count;
+        }
+
+        double throughput = ops / (nanos / 1000000.0);
+        double average = (double) nanos / ops;
+        double bytesPerOp = (double) bytes / ops;
+        double allocationRate = (bytes / (1024.0 * 1024.0)) / (nanos / 1000000000.0);
+        System.out.println(String.format("%-36s %14.1f %12.2f %12.1f %14.1f",
+                name, throughput, average, bytesPerOp, allocationRate));
+    }
+
+    /**
+     * Calls the benchmark in batches until the iteration time is up.
+     *
+     * @param op The code being timed.
+     * @return The number of calls made.
+     */
+    private long iteration(LongSupplier op) {
+        long deadline = System.nanoTime() + iterationMillis * 1000000;
+        long count = 0;
+        long result = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                result += op.getAsLong();
+            }
+            count += BATCH_SIZE;
+        }
+        sink = result;
+        return count;
+    }
+
+    /**
+     * @return A hunter with plenty of gold and every item the shop sells, like test mode.
+     */
+    private static Hunter newKittedHunter() {
+        Hunter hunter = new Hunter("bench", 1000000000);
+        hunter.addItem(Item.WATER);
+        hunter.addItem(Item.ROPE);
+        hunter.addItem(Item.MACHETE);
+        hunter.addItem(Item.HORSE);
+        hunter.addItem(Item.BOOTS);
+        hunter.addItem(Item.BOAT);
+        hunter.addItem(Item.SHOVEL);
+        return hunter;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String filter = "";
+        long iterationMillis = 500;
+        if (args.length > 0) {
+            filter = args[0];
+        }
+        if (args.length > 1) {
+            iterationMillis = Long.parseLong(args[1]);
+        }
+
+        new TreasureHunterBenchmark(filter, iterationMillis).runAll();
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The TreasureHunterContention checks that hunters sharing a town never both get its treasure or its gold.<p>
+ * Every round starts a new SharedWorld and lets all the hunters into its first town at once, split between the
+ * threads. Once they have all arrived they all hunt for treasure and dig for gold as close together as they can.
+ * Each round, exactly one hunter must find the treasure (or the dust) and exactly one must dig, and every hunter
+ * must still see their own welcome in the news. Once they have all left, the world must only remember that the
+ * town was searched and dug. Every hunter plays in test mode, so they all have a shovel.<p>
+ * It prints any round that breaks the rules and a summary at the end, and exits with status 1 if any did.<p>
+ * Usage: java TreasureHunterContention [hunters] [threads] [rounds]
+ */
+
+public class TreasureHunterContention {
+    // instance variables
+    private TreasureHunter[] games;
+    private int threads;
+    private ExecutorService pool;
+    private CyclicBarrier arrived;
+
+    /**
+     * @param hunters The number of hunters in the town each round.
+     * @param threads The number of threads the hunters are split between.
+     */
+    public TreasureHunterContention(int hunters, int threads) {
+        games = new TreasureHunter[hunters];
+        for (int i = 0; i < hunters; i++) {
+            games[i] = new TreasureHunter(Messages.DISCARD, i);
+        }
+        this.threads = threads;
+        pool = Executors.newFixedThreadPool(threads);
+        arrived = new CyclicBarrier(threads);
+    }
+
+    /**
+     * Plays one round in a new shared world.
+     *
+     * @param round The round's number, used as the world seed.
+     * @return What went wrong, or null if nothing did.
+     * @throws InterruptedException If interrupted while waiting for the hunters.
+     */
+    public String playRound(long round) throws InterruptedException {
+        SharedWorld world = new SharedWorld(round);
+        long searchesBefore = GameMetrics.get(Metric.TREASURES_FOUND) + GameMetrics.get(Metric.DUST_FOUND);
+        long digsBefore = GameMetrics.get(Metric.DIGS_WITH_GOLD) + GameMetrics.get(Metric.DIGS_WITH_DIRT);
+
+        Future<?>[] tasks = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            tasks[t] = pool.submit(() -> {
+                for (int i = first; i < games.length; i += threads) {
+                    games[i].reset(round * games.length + i);
+                    games[i].useSharedWorld(world);
+                    games[i].start("hunter" + i, GameMode.TEST);
+                }
+                try {
+                    arrived.await();
+                } catch (BrokenBarrierException e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = first; i < games.length; i += threads) {
+                    games[i].processChoice("h", null);
+                    games[i].processChoice("d", null);
+                }
+                return null;
+            });
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                return "a hunter failed: " + e.getCause();
+            }
+        }
+
+        long searches = GameMetrics.get(Metric.TREASURES_FOUND) + GameMetrics.get(Metric.DUST_FOUND) - searchesBefore;
+        long digs = GameMetrics.get(Metric.DIGS_WITH_GOLD) + GameMetrics.get(Metric.DIGS_WITH_DIRT) - digsBefore;
+        if (world.getTownCount() != 1) {
+            return "the hunters were spread over " + world.getTownCount() + " towns";
+        }
+        if (searches != 1) {
+            return searches + " hunters found the treasure";
+        }
+        if (digs != 1) {
+            return digs + " hunters dug for gold";
+        }
+        for (int i = 0; i < games.length; i++) {
+            if (!games[i].getLatestNews().contains("hunter" + i + ".")) {
+                return "hunter" + i + " saw someone else's news: " + games[i].getLatestNews();
+            }
+        }
+
+        // once everyone has left, only the searched and dug flags are kept
+        for (TreasureHunter game : games) {
+            game.useSharedWorld(null);
+        }
+        if (world.getTownCount() != 0 || world.getVisitedCount() != 1) {
+            return "after everyone left, " + world.getTownCount() + " towns were kept and "
+                    + world.getVisitedCount() + " remembered";
+        }
+        return null;
+    }
+
+    /**
+     * Stops the threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int hunters = 400;
+        int threads = 8;
+        int rounds = 2000;
+        if (args.length > 0) {
+            hunters = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            rounds = Integer.parseInt(args[2]);
+        }
+
+        TreasureHunterContention check = new TreasureHunterContention(hunters, threads);
+        int failed = 0;
+        long startTime = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            String problem = check.playRound(round);
+            if (problem != null) {
+                System.out.println("Round " + round + ": " + problem);
+                failed++;
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+        check.shutdown();
+
+        System.out.println(hunters + " hunters on " + threads + " threads, " + rounds + " rounds: " + failed
+                + " broke the rules (" + (elapsed / 1000000) + " ms)");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
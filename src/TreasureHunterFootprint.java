@@ -0,0 +1,118 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The TreasureHunterFootprint measures how much heap idle sessions take, for capacity planning.<p>
+ * It plays the given number of games a few moves in, keeps each one as a CompactSession in a map by id the way
+ * the TreasureHunterApi does, and reports the heap they take. For comparison it then keeps a smaller number of
+ * live games, each a TreasureHunter with its own output like the API used to have, and reports their size too.<p>
+ * Run it with a small heap to check the sessions fit, e.g.
+ * java -Xmx256m TreasureHunterFootprint 1000000<p>
+ * Usage: java TreasureHunterFootprint [sessions] [moves per session] [mode] [live games]
+ */
+
+public class TreasureHunterFootprint {
+    // constants
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    /**
+     * Keeps compact sessions.
+     *
+     * @param count The number of sessions.
+     * @param moves The moves played in each session before it is kept.
+     * @param mode The mode of every game.
+     * @return The sessions, by id.
+     */
+    public static ConcurrentHashMap<Long, CompactSession> keepSessions(int count, int moves, GameMode mode) {
+        ConcurrentHashMap<Long, CompactSession> sessions = new ConcurrentHashMap<Long, CompactSession>();
+        Strategy strategy = new SimpleStrategy();
+        TreasureHunter host = new TreasureHunter(Messages.DISCARD, 0);
+        for (long id = 1; id <= count; id++) {
+            host.reset(id);
+            host.start("hunter" + id, mode); // every session has its own name, like real players
+            for (int i = 0; i < moves && !host.isGameOver(); i++) {
+                host.playTurn(strategy);
+            }
+            CompactSession session = new CompactSession();
+            host.saveGame(session);
+            sessions.put(id, session);
+        }
+        return sessions;
+    }
+
+    /**
+     * Keeps live games, each with the output a TreasureHunterApi session used to have.
+     *
+     * @param count The number of games.
+     * @param moves The moves played in each game.
+     * @param mode The mode of every game.
+     * @return The games, by id.
+     */
+    public static ConcurrentHashMap<Long, TreasureHunter> keepLiveGames(int count, int moves, GameMode mode) {
+        ConcurrentHashMap<Long, TreasureHunter> games = new ConcurrentHashMap<Long, TreasureHunter>();
+        Strategy strategy = new SimpleStrategy();
+        for (long id = 1; id <= count; id++) {
+            PrintStream out = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+            TreasureHunter game = new TreasureHunter(out, id, false);
+            game.start("hunter" + id, mode);
+            for (int i = 0; i < moves && !game.isGameOver(); i++) {
+                game.playTurn(strategy);
+            }
+            games.put(id, game);
+        }
+        return games;
+    }
+
+    /**
+     * @return The bytes of heap in use once the garbage has been collected.
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void report(String what, int count, long before, long after) {
+        double bytes = after - before;
+        System.out.println(String.format(Locale.ROOT, "%s: %d in %.1f MB, %.0f bytes each",
+                what, count, bytes / (1024 * 1024), bytes / count));
+    }
+
+    public static void main(String[] args) {
+        int count = 1000000;
+        int moves = 10;
+        GameMode mode = GameMode.NORMAL;
+        int liveCount = 1000;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            moves = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            mode = GameMode.valueOf(args[2].toUpperCase());
+        }
+        if (args.length > 3) {
+            liveCount = Integer.parseInt(args[3]);
+        }
+        System.out.println("Max heap: " + Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB, "
+                + moves + " moves per game in " + mode);
+
+        long before = usedHeap();
+        ConcurrentHashMap<Long, CompactSession> sessions = keepSessions(count, moves, mode);
+        long after = usedHeap();
+        report("Compact sessions", sessions.size(), before, after);
+        sessions = null;
+
+        before = usedHeap();
+        ConcurrentHashMap<Long, TreasureHunter> games = keepLiveGames(liveCount, moves, mode);
+        after = usedHeap();
+        report("Live games", games.size(), before, after);
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * The TreasureHunterIdleSessions measures what an idle TreasureHunterServer session costs, for capacity planning.<p>
+ * It starts a server in this JVM, connects the given number of players, lets each one name their hunter and pick
+ * a mode, and then leaves them all sitting at the menu. It reports the heap, the platform threads and (on Linux)
+ * the resident memory the idle sessions take, and whether they run on virtual threads or platform threads. The
+ * players' ends of the connections are in the same JVM, so the numbers include them too.<p>
+ * Run it on Java 21 to measure virtual threads; on older JVMs the server falls back to platform threads.
+ * Every session takes two file descriptors, so raise ulimit -n for big runs, e.g.
+ * ulimit -n 50000; java TreasureHunterIdleSessions 20000<p>
+ * Usage: java TreasureHunterIdleSessions [sessions]
+ */
+
+public class TreasureHunterIdleSessions {
+    // constants
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Path STATUS = Paths.get("/proc/self/status");
+    private static final String MENU_PROMPT = "What's your next move?";
+
+    /**
+     * Reads from a player's connection until the game shows its menu, so the session is idle.
+     *
+     * @param player The player's connection.
+     * @throws IOException If the connection closes first.
+     */
+    private static void waitForMenu(Socket player) throws IOException {
+        InputStream in = player.getInputStream();
+        StringBuilder seen = new StringBuilder();
+        byte[] buffer = new byte[4096];
+        while (seen.indexOf(MENU_PROMPT) < 0) {
+            int read = in.read(buffer);
+            if (read < 0) {
+                throw new IOException("The session ended before it showed the menu");
+            }
+            seen.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return The bytes of heap in use once the garbage has been collected.
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return The process's resident memory in bytes, or -1 where /proc isn't available.
+     */
+    private static long residentMemory() {
+        try {
+            for (String line : Files.readAllLines(STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    private static void report(String what, int count, long before, long after) {
+        double bytes = after - before;
+        System.out.println(String.format(Locale.ROOT, "%s: %.1f MB, %.0f bytes per session",
+                what, bytes / (1024 * 1024), bytes / count));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int count = 2000;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+
+        TreasureHunterServer server = new TreasureHunterServer(0, null);
+        Thread acceptor = new Thread(server::serve, "accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println(count + " idle sessions on " + (server.isUsingVirtualThreads() ? "virtual" : "platform")
+                + " threads, Java " + Runtime.version().feature());
+
+        long heapBefore = usedHeap();
+        long residentBefore = residentMemory();
+        int threadsBefore = THREADS.getThreadCount();
+        Socket[] players = new Socket[count];
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            players[i] = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            players[i].getOutputStream().write(("idle" + i + "\nn\n").getBytes(StandardCharsets.UTF_8));
+        }
+        for (Socket player : players) {
+            waitForMenu(player);
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long heapAfter = usedHeap();
+        long residentAfter = residentMemory();
+        int threadsAfter = THREADS.getThreadCount();
+
+        System.out.println(server.getActiveSessions() + " sessions at the menu after " + elapsed / 1000000 + " ms");
+        report("Heap", count, heapBefore, heapAfter);
+        if (residentBefore >= 0) {
+            report("Resident memory", count, residentBefore, residentAfter);
+        }
+        System.out.println("Platform threads: " + threadsBefore + " before, " + threadsAfter + " after");
+
+        for (Socket player : players) {
+            player.close();
+        }
+        server.close();
+    }
+}
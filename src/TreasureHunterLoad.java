@@ -0,0 +1,245 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The TreasureHunterLoad drives a TreasureHunterApi with made-up players and reports how fast it answered, for
+ * capacity planning.<p>
+ * Each synthetic session starts a game and keeps sending random actions until the game ends, then deletes it and
+ * starts another. Starting, every action and deleting are each a request of their own, timed on their own slot. Together the sessions send the target number of requests per second, each on a fixed schedule.
+ * A request's latency is counted from when it was meant to be sent, not from when it actually was, so a server
+ * that falls behind shows up in the numbers instead of quietly slowing the load down. Requests sent during the
+ * warmup, while both ends are still being compiled, are sent but not counted.<p>
+ * If no URL is given, an API is started in this program on a free local port.<p>
+ * Usage: java TreasureHunterLoad [sessions] [requests per second] [seconds] [warmup seconds] [mode] [API URL]<br>
+ * e.g. java TreasureHunterLoad 200 5000 30 5 normal http://localhost:8080
+ */
+
+public class TreasureHunterLoad implements Closeable {
+    // constants
+    private static final String[] ACTIONS = {"buy", "sell", "move", "trouble", "hunt", "dig"};
+    private static final Item[] ITEMS = Item.values();
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    // instance variables
+    private HttpClient client;
+    private ExecutorService clientThreads;
+    private String baseUrl;
+    private String mode;
+    private LatencyHistogram latency;
+    private LongAdder errors;
+    private LongAdder games;
+
+    /**
+     * Creates a load generator.
+     *
+     * @param baseUrl The API's URL, without the /sessions part.
+     * @param mode The mode of every game.
+     */
+    public TreasureHunterLoad(String baseUrl, String mode) {
+        this.baseUrl = baseUrl;
+        this.mode = mode;
+        clientThreads = TreasureHunterServer.newSessionExecutor();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientThreads).build();
+        latency = new LatencyHistogram();
+        errors = new LongAdder();
+        games = new LongAdder();
+    }
+
+    /**
+     * Runs the sessions until the time is up.
+     *
+     * @param sessions The number of sessions.
+     * @param requestsPerSecond The number of requests all the sessions send each second, together.
+     * @param seconds How long to count requests for.
+     * @param warmupSeconds How long to send requests for before counting them.
+     * @throws InterruptedException If interrupted while waiting for the sessions.
+     */
+    public void run(int sessions, double requestsPerSecond, long seconds, long warmupSeconds)
+            throws InterruptedException {
+        long interval = (long) (sessions * 1e9 / requestsPerSecond); // between one session's requests
+        long start = System.nanoTime();
+        long counted = start + warmupSeconds * 1000000000L;
+        long end = counted + seconds * 1000000000L;
+        SplittableRandom seeds = new SplittableRandom(42);
+        CountDownLatch done = new CountDownLatch(sessions);
+        ExecutorService runners = TreasureHunterServer.newSessionExecutor();
+        for (int i = 0; i < sessions; i++) {
+            // the sessions' schedules are spread out, so they don't all send at once
+            long first = start + interval * i / sessions;
+            SplittableRandom random = seeds.split();
+            runners.execute(() -> {
+                try {
+                    runSession(first, interval, counted, end, random);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        runners.shutdown();
+    }
+
+    /**
+     * Stops the client's threads.
+     */
+    @Override
+    public void close() {
+        clientThreads.shutdown();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getGames() {
+        return games.sum();
+    }
+
+    /**
+     * Plays games one request at a time until the time is up.
+     */
+    private void runSession(long next, long interval, long counted, long end, SplittableRandom random) {
+        String session = null;
+        String finished = null; // a game that has ended and is deleted by the next request
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String body;
+            if (finished != null) {
+                send("DELETE", finished);
+                finished = null;
+            } else if (session == null) {
+                body = send("POST", "/sessions?mode=" + mode);
+                if (body != null) {
+                    session = "/sessions/" + jsonNumber(body, "id");
+                    games.increment();
+                }
+            } else {
+                String action = ACTIONS[random.nextInt(ACTIONS.length)];
+                String query = "?action=" + action;
+                if (action.equals("buy") || action.equals("sell")) {
+                    query += "&item=" + ITEMS[random.nextInt(ITEMS.length)].getName();
+                }
+                body = send("POST", session + "/actions" + query);
+                if (body == null || !body.contains("\"result\":\"PLAYING\"")) {
+                    // the game is over (or broken), so the next requests delete it and start a new one
+                    finished = session;
+                    session = null;
+                }
+            }
+            if (next >= counted) {
+                latency.record(System.nanoTime() - next);
+            }
+            next += interval;
+        }
+        // cleaning up after the time is up isn't counted
+        if (finished != null) {
+            send("DELETE", finished);
+        }
+        if (session != null) {
+            send("DELETE", session);
+        }
+    }
+
+    /**
+     * @return The response's body, or null if the request failed.
+     */
+    private String send(String method, String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 400) {
+                errors.increment();
+                return null;
+            }
+            return response.body();
+        } catch (IOException e) {
+            errors.increment();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String jsonNumber(String json, String key) {
+        int start = json.indexOf("\"" + key + "\":") + key.length() + 3;
+        int end = start;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) {
+            end++;
+        }
+        return json.substring(start, end);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int sessions = 100;
+        double requestsPerSecond = 1000;
+        long seconds = 10;
+        long warmupSeconds = 2;
+        String mode = "normal";
+        if (args.length > 0) {
+            sessions = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            requestsPerSecond = Double.parseDouble(args[1]);
+        }
+        if (args.length > 2) {
+            seconds = Long.parseLong(args[2]);
+        }
+        if (args.length > 3) {
+            warmupSeconds = Long.parseLong(args[3]);
+        }
+        if (args.length > 4) {
+            mode = args[4];
+        }
+        TreasureHunterApi api = null;
+        String baseUrl;
+        if (args.length > 5) {
+            baseUrl = args[5];
+        } else {
+            api = new TreasureHunterApi(0);
+            baseUrl = "http://localhost:" + api.getPort();
+        }
+
+        System.out.println("Sessions: " + sessions + ", target: " + (long) requestsPerSecond + " requests/s for "
+                + seconds + " s after " + warmupSeconds + " s of warmup, against " + baseUrl);
+        TreasureHunterLoad load = new TreasureHunterLoad(baseUrl, mode);
+        long startTime = System.nanoTime();
+        load.run(sessions, requestsPerSecond, seconds, warmupSeconds);
+        double elapsed = (System.nanoTime() - startTime) / 1e9 - warmupSeconds;
+        load.close();
+        if (api != null) {
+            api.close();
+        }
+
+        LatencyHistogram latency = load.getLatency();
+        System.out.println("Requests: " + latency.getCount() + " (" + load.getErrors() + " failed), games: "
+                + load.getGames());
+        System.out.println(String.format(Locale.ROOT, "Throughput: %.0f requests/s", latency.getCount() / elapsed));
+        String line = "Latency:";
+        for (double quantile : QUANTILES) {
+            line += String.format(Locale.ROOT, " p%s %.3f ms", GameMetrics.quantileLabel(quantile),
+                    latency.getValueAtQuantile(quantile) / 1e6);
+        }
+        line += String.format(Locale.ROOT, " max %.3f ms", latency.getMax() / 1e6);
+        System.out.println(line);
+    }
+}
@@ -1,6 +1,54 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
 public class TreasureHunterRunner {
-    public static void main(String[] args) {
-        TreasureHunter game = new TreasureHunter();
-        game.play();
+    public static void main(String[] args) throws IOException {
+        // colors are on unless turned off with --no-color or the NO_COLOR environment variable
+        boolean color = System.getenv("NO_COLOR") == null;
+        Long seed = null;
+        String journalFile = null;
+        Long worldSeed = null;
+        String saveFolder = ".";
+        for (String arg : args) {
+            if (arg.equals("--no-color")) {
+                color = false;
+            } else if (arg.startsWith("--journal=")) {
+                // record the game so it can be replayed with JournalReplay
+                journalFile = arg.substring("--journal=".length());
+            } else if (arg.startsWith("--saves=")) {
+                // keep saved games in the given folder instead of the working directory
+                saveFolder = arg.substring("--saves=".length());
+            } else if (arg.startsWith("--world=")) {
+                // play on a world map whose towns stay put, made from the given seed
+                worldSeed = Long.parseLong(arg.substring("--world=".length()));
+            } else {
+                // replay a game from its seed
+                seed = Long.parseLong(arg);
+            }
+        }
+
+        TreasureHunter game;
+        if (seed != null || !color || journalFile != null) {
+            if (seed == null) {
+                seed = System.nanoTime();
+            }
+            game = new TreasureHunter(new PlayerInput(System.in, System.out), System.out, seed, color);
+        } else {
+            game = new TreasureHunter();
+        }
+
+        game.setSaveFolder(Paths.get(saveFolder));
+        if (worldSeed != null) {
+            game.useWorld(worldSeed, WorldMap.DEFAULT_CACHE_SIZE);
+        }
+
+        if (journalFile != null) {
+            try (ActionJournal journal = new ActionJournal(Paths.get(journalFile))) {
+                game.setJournal(journal);
+                game.play();
+            }
+        } else {
+            game.play();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,221 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The TreasureHunterServer lets many players play Treasure Hunter at once over TCP (for example with telnet or nc).<p>
+ * Every connection gets its own game, with its own input, output, random numbers, Hunter and Towns,
+ * so sessions never affect each other. Players can't save or load games, so no session can touch files on the
+ * host or another player's save. Each session runs on its own virtual thread when the JVM has them,
+ * which keeps tens of thousands of idle players cheap; on older JVMs it falls back to platform threads, and says
+ * so when it starts. TreasureHunterIdleSessions measures what an idle session costs either way.<p>
+ * If a journal folder is given, every session is recorded there as session-(seed).thj (see ActionJournal).
+ * If a metrics port is given, GameMetrics for all sessions are served on it (see MetricsReporter), and if
+ * dump seconds are given they are also printed that often. If a leaderboard file is given, every finished
+ * session is added to it (see Leaderboard).<p>
+ * If a shared world seed is given, every session plays in one SharedWorld, where players can meet in the same
+ * towns and race each other for their treasure and gold. Sessions in a shared world aren't journaled, since
+ * other players change their towns.<p>
+ * Usage: java TreasureHunterServer [port] [journal folder, or - for none] [metrics port, or - for none]
+ * [dump seconds, or - for none] [leaderboard file, or - for none] [shared world seed]
+ */
+
+public class TreasureHunterServer {
+    // constants
+    private static final int DEFAULT_PORT = 4000;
+    private static final int OUTPUT_BUFFER_SIZE = 1024;
+
+    // instance variables
+    private ServerSocket serverSocket;
+    private ExecutorService sessions;
+    private AtomicInteger activeSessions;
+    private SplittableRandom seeds;
+    private Path journalFolder;
+    private Leaderboard leaderboard;
+    private SharedWorld sharedWorld;
+
+    /**
+     * Opens the server's port on this machine only (the loopback address).
+     *
+     * @param port The TCP port to listen on.
+     * @param journalFolder The folder sessions are recorded in, or null to not record them.
+     * @throws IOException If the port can't be opened.
+     */
+    public TreasureHunterServer(int port, Path journalFolder) throws IOException {
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.journalFolder = journalFolder;
+        sessions = newSessionExecutor();
+        activeSessions = new AtomicInteger();
+        seeds = new SplittableRandom();
+    }
+
+    /**
+     * Accepts players until the server is closed.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                // only this thread touches the seed generator
+                long seed = seeds.nextLong();
+                sessions.execute(() -> playSession(socket, seed));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Couldn't accept a player: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting players and closes the port.
+     *
+     * @throws IOException If the port can't be closed.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdown();
+    }
+
+    /**
+     * @param leaderboard Where finished sessions are added, or null to not keep them.
+     */
+    public void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * @param sharedWorld The world every session started from now on plays in, or null for every session to
+     *                    have its own towns.
+     */
+    public void setSharedWorld(SharedWorld sharedWorld) {
+        this.sharedWorld = sharedWorld;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Whether each session runs on a virtual thread, rather than a platform thread.
+     */
+    public boolean isUsingVirtualThreads() {
+        return usesVirtualThreads(sessions);
+    }
+
+    /**
+     * @return The number of players currently connected.
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Plays one game with one connected player, then hangs up.
+     *
+     * @param socket The player's connection.
+     * @param seed The seed for the game's random numbers.
+     */
+    private void playSession(Socket socket, long seed) {
+        activeSessions.incrementAndGet();
+        try (Socket player = socket) {
+            PrintStream out = new PrintStream(new BufferedOutputStream(player.getOutputStream(), OUTPUT_BUFFER_SIZE),
+                    false, StandardCharsets.UTF_8);
+            PlayerInput in = new PlayerInput(player.getInputStream(), out);
+            TreasureHunter game = new TreasureHunter(in, out, seed, true);
+            game.useSharedWorld(sharedWorld);
+            try {
+                if (journalFolder != null && sharedWorld == null) {
+                    try (ActionJournal journal = new ActionJournal(journalFolder.resolve("session-" + seed
+                            + ".thj"))) {
+                        game.setJournal(journal);
+                        game.play();
+                    }
+                } else {
+                    game.play();
+                }
+            } finally {
+                game.useSharedWorld(null); // the hunter leaves their town, even if the player hung up
+            }
+            if (leaderboard != null) {
+                leaderboard.record(game);
+            }
+            out.flush();
+        } catch (IOException | UncheckedIOException e) {
+            // the player disconnected; their game simply ends
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Uses a virtual thread per session when the JVM supports them (Java 21, or 19/20 with --enable-preview).
+     * On other JVMs the lookup fails, e.g. with an InvocationTargetException on 19/20 without the flag, and it
+     * falls back to a cached pool of platform threads.
+     *
+     * @return The executor sessions run on.
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * @param executor An executor from newSessionExecutor().
+     * @return Whether it runs tasks on virtual threads; the fallback is a ThreadPoolExecutor.
+     */
+    static boolean usesVirtualThreads(ExecutorService executor) {
+        return !(executor instanceof ThreadPoolExecutor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        Path journalFolder = null;
+        if (args.length > 0) {
+            port = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1 && !args[1].equals("-")) {
+            journalFolder = Paths.get(args[1]);
+            Files.createDirectories(journalFolder);
+        }
+
+        MetricsReporter metrics = new MetricsReporter();
+        if (args.length > 2 && !args[2].equals("-")) {
+            metrics.serve(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3 && !args[3].equals("-")) {
+            metrics.dumpEvery(System.out, Long.parseLong(args[3]), false);
+        }
+
+        TreasureHunterServer server = new TreasureHunterServer(port, journalFolder);
+        if (args.length > 4 && !args[4].equals("-")) {
+            server.setLeaderboard(new Leaderboard(Paths.get(args[4])));
+        }
+        if (args.length > 5) {
+            server.setSharedWorld(new SharedWorld(Long.parseLong(args[5])));
+            System.out.println("Every session plays in the shared world " + args[5]);
+        }
+        System.out.println("Treasure Hunter server listening on port " + server.getPort() + ", with a "
+                + (server.isUsingVirtualThreads() ? "virtual" : "platform") + " thread per session");
+        if (metrics.getPort() != -1) {
+            System.out.println("Metrics at http://localhost:" + metrics.getPort() + "/metrics");
+        }
+        server.serve();
+    }
+}
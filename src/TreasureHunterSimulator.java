@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The TreasureHunterSimulator plays many complete games of Treasure Hunter with no console I/O
+ * and reports how they turned out.<p>
+ * Games are split between the cores of the machine with a fork-join pool. Every game has its own
+ * Hunter, Town, Shop and random number generator, so games never affect each other. Finished games
+ * go back to a GamePool, which keeps one per thread, and are reset for the next game instead of being thrown
+ * away.<p>
+ * Game number i is seeded with (seed + i), so any game can be replayed from its seed.<p>
+ * Shop prices are reloaded whenever catalog.properties is saved, so they can be retuned mid-run.<p>
+ * If a leaderboard file is given, every game is added to it (see Leaderboard) and the best games are printed.<p>
+ * Usage: java TreasureHunterSimulator [games] [mode] [threads] [seed] [leaderboard file]
+ */
+
+public class TreasureHunterSimulator {
+    // constants
+    private static final int MAX_TURNS = 1000; // a game still going after this many turns counts as giving up
+    private static final int GAMES_PER_TASK = 1024;
+    private static final PrintStream NO_OUTPUT = Messages.DISCARD;
+    private static final Strategy BOT = new SimpleStrategy();
+    private static final GamePool GAMES = new GamePool(NO_OUTPUT);
+
+    // instance variables
+    private GameMode mode;
+    private long seed;
+    private ForkJoinPool pool;
+    private Leaderboard leaderboard;
+
+    /**
+     * Creates a simulator that plays games in the given mode.
+     *
+     * @param mode The difficulty mode for every game.
+     * @param threads The number of threads to play games on.
+     * @param seed The seed of the first game.
+     */
+    public TreasureHunterSimulator(GameMode mode, int threads, long seed) {
+        this.mode = mode;
+        this.seed = seed;
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Plays the given number of games and adds up their outcomes.
+     *
+     * @param games The number of games to play.
+     * @return The combined stats of all the games.
+     */
+    public SimulationStats run(long games) {
+        return pool.invoke(new GameBatch(0, games));
+    }
+
+    /**
+     * @param leaderboard Where every game is added from now on, or null to not keep them.
+     */
+    public void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Shuts down the simulator's threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Plays a single game from start to finish with the SimpleStrategy.
+     *
+     * @param mode The difficulty mode.
+     * @param seed The seed for the game's random numbers.
+     * @return How the game turned out.
+     */
+    public static GameOutcome playGame(GameMode mode, long seed) {
+        return playGame(mode, seed, BOT, null);
+    }
+
+    /**
+     * Plays a single game from start to finish.
+     *
+     * @param mode The difficulty mode.
+     * @param seed The seed for the game's random numbers.
+     * @param strategy The strategy picking every move.
+     * @param goldCurve Where the hunter's gold is recorded as the game goes on, or null.
+     * @return How the game turned out.
+     */
+    public static GameOutcome playGame(GameMode mode, long seed, Strategy strategy, SimulationStats goldCurve) {
+        return playGame(mode, seed, strategy, goldCurve, null);
+    }
+
+    /**
+     * Plays a single game from start to finish and adds it to a sweep's stats.
+     *
+     * @param mode The difficulty mode.
+     * @param seed The seed for the game's random numbers.
+     * @param strategy The strategy picking every move.
+     * @param goldCurve Where the hunter's gold is recorded as the game goes on, or null.
+     * @param sweepStats Where the finished game is added, or null.
+     * @return How the game turned out.
+     */
+    public static GameOutcome playGame(GameMode mode, long seed, Strategy strategy, SimulationStats goldCurve,
+                                       SweepStats sweepStats) {
+        return playGame(mode, seed, strategy, goldCurve, sweepStats, null);
+    }
+
+    /**
+     * Plays a single game from start to finish, adding it to a sweep's stats and a leaderboard.
+     *
+     * @param mode The difficulty mode.
+     * @param seed The seed for the game's random numbers.
+     * @param strategy The strategy picking every move.
+     * @param goldCurve Where the hunter's gold is recorded as the game goes on, or null.
+     * @param sweepStats Where the finished game is added, or null.
+     * @param leaderboard Where the finished game is recorded, or null.
+     * @return How the game turned out.
+     */
+    public static GameOutcome playGame(GameMode mode, long seed, Strategy strategy, SimulationStats goldCurve,
+                                       SweepStats sweepStats, Leaderboard leaderboard) {
+        TreasureHunter game = GAMES.acquire(seed);
+        game.start("bot", mode);
+        if (goldCurve != null) {
+            goldCurve.recordGold(0, game.getHunter().getGold());
+        }
+        boolean playing = true;
+        while (playing && !game.isGameOver() && game.getTurns() < MAX_TURNS) {
+            playing = game.playTurn(strategy);
+            if (goldCurve != null) {
+                goldCurve.recordGold(game.getTurns(), game.getHunter().getGold());
+            }
+        }
+        GameOutcome outcome = game.getOutcome();
+        if (sweepStats != null) {
+            sweepStats.record(game);
+        }
+        if (leaderboard != null) {
+            leaderboard.record(game);
+        }
+        GAMES.release(game);
+        return outcome;
+    }
+
+    /**
+     * A range of games played by one fork-join task, split in half until it is small enough.
+     */
+    private class GameBatch extends RecursiveTask<SimulationStats> {
+        private static final long serialVersionUID = 1L;
+
+        private long start;
+        private long end;
+
+        GameBatch(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (end - start <= GAMES_PER_TASK) {
+                SimulationStats stats = new SimulationStats();
+                for (long i = start; i < end; i++) {
+                    stats.record(playGame(mode, seed + i, BOT, null, null, leaderboard));
+                }
+                return stats;
+            }
+
+            long middle = (start + end) / 2;
+            GameBatch left = new GameBatch(start, middle);
+            left.fork();
+            SimulationStats right = new GameBatch(middle, end).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long games = 100000;
+        GameMode mode = GameMode.NORMAL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        // only throughput matters here, so actions are counted but not timed
+        GameMetrics.setTiming(false);
+        if (args.length > 0) {
+            games = Long.parseLong(args[0]);
+        }
+        if (args.length > 1) {
+            mode = GameMode.valueOf(args[1].toUpperCase());
+        }
+        if (args.length > 2) {
+            threads = Integer.parseInt(args[2]);
+        }
+        if (args.length > 3) {
+            seed = Long.parseLong(args[3]);
+        }
+        Leaderboard leaderboard = null;
+        if (args.length > 4) {
+            leaderboard = new Leaderboard(Paths.get(args[4]));
+        }
+
+        Path catalogFile = Paths.get(ItemCatalog.DEFAULT_FILE);
+        if (Files.isRegularFile(catalogFile)) {
+            CatalogWatcher.start(catalogFile);
+        }
+
+        TreasureHunterSimulator simulator = new TreasureHunterSimulator(mode, threads, seed);
+        simulator.setLeaderboard(leaderboard);
+        long startTime = System.nanoTime();
+        SimulationStats stats = simulator.run(games);
+        long elapsed = System.nanoTime() - startTime;
+        simulator.shutdown();
+
+        System.out.println("Mode: " + mode + ", threads: " + threads + ", seed: " + seed);
+        System.out.println(stats);
+        System.out.println("Time: " + (elapsed / 1000000) + " ms");
+        if (leaderboard != null) {
+            System.out.println(leaderboard.getCount() + " games on the leaderboard, best " + mode + " games:");
+            int place = 1;
+            for (LeaderboardEntry entry : leaderboard.getTop(mode, 5)) {
+                System.out.println(place + ". " + entry);
+                place++;
+            }
+            leaderboard.close();
+        }
+    }
+}
@@ -0,0 +1,575 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The TreasureHunterSolver works out the best move in every situation of a game, and the chance of
+ * winning a game with perfect play, without playing any games.<p>
+ * A situation is the hunter's gold, kit and treasures, and the town's terrain, toughness and whether it
+ * has been dug. The chances of every outcome come from the mode's TownOdds and the current ItemCatalog,
+ * so a balance change can be checked in seconds.<p>
+ * Hunting for treasure is free and can't go wrong, so the best first move in a town is always to hunt.
+ * The solver uses this to only keep the situations after a town has been searched.<p>
+ * The chance of winning from each situation is found by value iteration. Treasures can only be gained,
+ * so the situations are solved one set of treasures at a time, starting with the sets closest to winning.
+ * Each sweep over a set is split between the cores by kit: a kit's situations are updated in place, and
+ * other kits are read from the previous sweep, so the result doesn't depend on the number of threads.
+ * Sweeps stop once no chance changes by more than EPSILON.<p>
+ * Gold above the cap is thrown away, so the chances are a (very slightly) low estimate.<p>
+ * Usage: java TreasureHunterSolver [mode] [max gold] [threads]
+ */
+
+public class TreasureHunterSolver {
+    // constants
+    public static final int DEFAULT_MAX_GOLD = 100;
+    private static final double EPSILON = 1e-10;
+    private static final int MAX_SWEEPS = 100000;
+    private static final int KITS_PER_TASK = 4;
+    private static final Terrain[] TERRAINS = Terrain.values();
+    private static final Treasure[] TREASURES = Treasure.values();
+    private static final int TOWN_STATES = TERRAINS.length * 2 * 2; // terrain, tough town, dugged
+
+    // the moves kept in the policy; buying and selling add the item's kit bit number
+    private static final byte QUIT = 0;
+    private static final byte MOVE = 1;
+    private static final byte TROUBLE = 2;
+    private static final byte DIG = 3;
+    private static final byte BUY = 4;
+
+    // instance variables
+    private GameMode mode;
+    private int maxGold;
+    private ForkJoinPool pool;
+
+    private Item[] items; // the items a kit can hold, kit bit j is items[j]
+    private int kits;
+    private int kitSize;
+    private int[] buyPrices;
+    private int[] sellPrices;
+    private int[] neededBits; // by Terrain ordinal, 0 if the needed item can't be had
+    private int shovelBit;
+    private int swordBit;
+    private int startKit;
+    private int startGold;
+
+    private Treasure[] goal; // the treasures needed to win, treasure bit x is goal[x]
+    private int allTreasures;
+    private double[] goalChances; // by treasure bit
+    private double noTreasureChance; // dust, or anything else that isn't kept
+    private double[] terrainChances;
+    private double toughChance;
+    private double[] troubleChances; // by toughness, 0 for mild and 1 for tough
+    private double[] winChances;
+    private double[] brawlGoldChances; // by gold - 1
+    private double digChance;
+    private double[] digGoldChances;
+    private double breakChance;
+
+    private double[][] values; // by treasures held, the chance of winning from each searched town
+    private double[][] arrivals; // by treasures held, the chance of winning on arriving in a new town
+    private byte[][] policy;
+    private int sweeps;
+
+    // the set of treasures being solved, only changed between sweeps
+    private double[] current;
+    private double[] previous;
+    private double[] currentArrivals;
+    private double[] previousArrivals;
+    private byte[] currentPolicy;
+    private int currentTreasures;
+
+    /**
+     * Sets up a solver for a mode with the current prices and odds. Call solve() before asking it anything.
+     *
+     * @param mode The difficulty mode.
+     * @param maxGold The most gold the solver keeps track of.
+     * @param threads The number of threads to solve with.
+     */
+    public TreasureHunterSolver(GameMode mode, int maxGold, int threads) {
+        this.mode = mode;
+        pool = new ForkJoinPool(threads);
+
+        // the hunter a new game starts with, so test mode's kit comes along too
+        TreasureHunter game = new TreasureHunter(Messages.DISCARD, 0);
+        game.start("solver", mode);
+        GameView start = game.getView();
+        startGold = start.getGold();
+        this.maxGold = Math.max(maxGold, startGold);
+        kitSize = mode.getKitSize();
+
+        ItemCatalog catalog = ItemCatalog.current();
+        int itemCount = 0;
+        Item[] kitItems = new Item[Item.values().length];
+        for (Item item : Item.values()) {
+            if (catalog.getPrice(item, mode) > 0 || start.hasItem(item)) {
+                kitItems[itemCount++] = item;
+            }
+        }
+        items = new Item[itemCount];
+        buyPrices = new int[itemCount];
+        sellPrices = new int[itemCount];
+        for (int j = 0; j < itemCount; j++) {
+            items[j] = kitItems[j];
+            buyPrices[j] = catalog.getPrice(items[j], mode);
+            sellPrices[j] = catalog.getBuyBackPrice(items[j], mode);
+        }
+        kits = 1 << itemCount;
+        startKit = kitOf(start);
+        shovelBit = bitOf(Item.SHOVEL);
+        swordBit = bitOf(Item.SWORD);
+        neededBits = new int[TERRAINS.length];
+        for (Terrain terrain : TERRAINS) {
+            neededBits[terrain.ordinal()] = bitOf(terrain.getNeededItem());
+        }
+
+        TownOdds odds = TownOdds.forMode(mode);
+        int goalCount = 0;
+        Treasure[] goalTreasures = new Treasure[TREASURES.length];
+        for (Treasure treasure : TREASURES) {
+            if (treasure != Treasure.DUST) {
+                goalTreasures[goalCount++] = treasure;
+            }
+        }
+        goal = new Treasure[goalCount];
+        goalChances = new double[goalCount];
+        noTreasureChance = 1;
+        for (int x = 0; x < goalCount; x++) {
+            goal[x] = goalTreasures[x];
+            goalChances[x] = odds.getTreasureChance(goal[x]);
+            noTreasureChance -= goalChances[x];
+        }
+        allTreasures = (1 << goalCount) - 1;
+
+        terrainChances = new double[TERRAINS.length];
+        for (Terrain terrain : TERRAINS) {
+            terrainChances[terrain.ordinal()] = odds.getTerrainChance(terrain);
+        }
+        toughChance = mode.getToughness();
+        troubleChances = new double[] {odds.getTroubleChance(false), odds.getTroubleChance(true)};
+        winChances = new double[] {odds.getWinChance(false), odds.getWinChance(true)};
+        brawlGoldChances = new double[odds.getMaxBrawlGold()];
+        for (int gold = 1; gold <= brawlGoldChances.length; gold++) {
+            brawlGoldChances[gold - 1] = odds.getBrawlGoldChance(gold);
+        }
+        digChance = odds.getDigChance();
+        digGoldChances = new double[odds.getMaxDigGold()];
+        for (int gold = 1; gold <= digGoldChances.length; gold++) {
+            digGoldChances[gold - 1] = odds.getDigGoldChance(gold);
+        }
+        breakChance = mode.itemsCanBreak() ? odds.getBreakChance() : 0;
+    }
+
+    /**
+     * Works out the chance of winning and the best move for every situation.
+     */
+    public void solve() {
+        values = new double[allTreasures + 1][];
+        arrivals = new double[allTreasures + 1][];
+        policy = new byte[allTreasures + 1][];
+        sweeps = 0;
+
+        // the sets closest to winning first, since finding a treasure only ever leads to a bigger set
+        for (int held = Integer.bitCount(allTreasures) - 1; held >= 0; held--) {
+            for (int treasures = 0; treasures < allTreasures; treasures++) {
+                if (Integer.bitCount(treasures) == held) {
+                    solveTreasures(treasures);
+                }
+            }
+        }
+        current = null;
+        previous = null;
+        currentArrivals = null;
+        previousArrivals = null;
+        currentPolicy = null;
+    }
+
+    /**
+     * Shuts down the solver's threads. The solved chances can still be looked up.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // accessors
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public int getMaxGold() {
+        return maxGold;
+    }
+
+    /**
+     * @return The number of situations solved.
+     */
+    public long getStateCount() {
+        return (long) allTreasures * kits * (maxGold + 1) * TOWN_STATES;
+    }
+
+    /**
+     * @return The number of sweeps it took to solve every set of treasures.
+     */
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    /**
+     * @return The chance of winning a new game with perfect play.
+     */
+    public double getWinChance() {
+        return arrivals[0][arrivalIndex(startKit, startGold)];
+    }
+
+    /**
+     * Finds the chance of winning from a game in progress with perfect play.
+     *
+     * @param game The game, which must be in the solver's mode.
+     * @return The chance of winning.
+     */
+    public double getWinChance(GameView game) {
+        int treasures = treasuresOf(game);
+        if (treasures == allTreasures) {
+            return 1;
+        }
+        if (game.getGold() < 0) {
+            return 0;
+        }
+        int index = townIndex(game);
+        if (game.isSearched()) {
+            return values[treasures][index];
+        }
+        return huntValue(treasures, index, values[treasures]);
+    }
+
+    /**
+     * Finds the best move for a game in progress.
+     *
+     * @param game The game, which must be in the solver's mode.
+     * @return The best move; hunting in a town that hasn't been searched, and quitting if the game can't be won.
+     */
+    public Move getBestMove(GameView game) {
+        int treasures = treasuresOf(game);
+        if (treasures == allTreasures || game.getGold() < 0) {
+            return Move.QUIT;
+        }
+        if (!game.isSearched()) {
+            return Move.HUNT;
+        }
+
+        byte move = policy[treasures][townIndex(game)];
+        if (move == MOVE) {
+            return Move.MOVE_ON;
+        } else if (move == TROUBLE) {
+            return Move.LOOK_FOR_TROUBLE;
+        } else if (move == DIG) {
+            return Move.DIG;
+        } else if (move >= BUY + items.length) {
+            return Move.sell(items[move - BUY - items.length]);
+        } else if (move >= BUY) {
+            return Move.buy(items[move - BUY]);
+        }
+        return Move.QUIT;
+    }
+
+    /**
+     * Runs sweeps over every situation with the given treasures until the chances stop changing.
+     *
+     * @param treasures The treasures held, one bit per goal treasure.
+     */
+    private void solveTreasures(int treasures) {
+        int size = kits * (maxGold + 1) * TOWN_STATES;
+        currentTreasures = treasures;
+        current = new double[size];
+        previous = new double[size];
+        currentArrivals = new double[kits * (maxGold + 1)];
+        previousArrivals = new double[currentArrivals.length];
+        currentPolicy = new byte[size];
+        values[treasures] = current;
+        arrivals[treasures] = currentArrivals;
+        policy[treasures] = currentPolicy;
+
+        double change;
+        int levelSweeps = 0;
+        do {
+            System.arraycopy(current, 0, previous, 0, size);
+            System.arraycopy(currentArrivals, 0, previousArrivals, 0, currentArrivals.length);
+            change = pool.invoke(new Sweep(0, kits));
+            levelSweeps++;
+        } while (change > EPSILON && levelSweeps < MAX_SWEEPS);
+        sweeps += levelSweeps;
+    }
+
+    /**
+     * Updates every situation with one kit, richest first.
+     *
+     * @param kit The kit.
+     * @return The biggest change to any chance.
+     */
+    private double sweepKit(int kit) {
+        if (Integer.bitCount(kit) > kitSize) {
+            return 0; // too many items to ever carry
+        }
+
+        double change = 0;
+        for (int gold = maxGold; gold >= 0; gold--) {
+            for (int terrain = 0; terrain < TERRAINS.length; terrain++) {
+                for (int tough = 0; tough < 2; tough++) {
+                    // digging leads to a dug town, so the dug town goes first
+                    for (int dugged = 1; dugged >= 0; dugged--) {
+                        int index = townIndex(kit, gold, terrain, tough, dugged);
+                        double value = updateTown(kit, gold, terrain, tough, dugged, index);
+                        change = Math.max(change, Math.abs(value - current[index]));
+                        current[index] = value;
+                    }
+                }
+            }
+        }
+
+        for (int gold = 0; gold <= maxGold; gold++) {
+            int index = arrivalIndex(kit, gold);
+            double value = arrivalValue(kit, gold);
+            change = Math.max(change, Math.abs(value - currentArrivals[index]));
+            currentArrivals[index] = value;
+        }
+        return change;
+    }
+
+    /**
+     * Finds the best move in a searched town and records it in the policy.<p>
+     * Moves are tried in the order move on, dig, look for trouble, buy, sell, quit, and a later move is only
+     * picked if it is better by more than EPSILON, so near ties never send a bot around in circles.
+     *
+     * @return The chance of winning with the best move.
+     */
+    private double updateTown(int kit, int gold, int terrain, int tough, int dugged, int index) {
+        // a town with one more gold is TOWN_STATES further on, and a town with the next kit is kitStride further on
+        int kitStride = (maxGold + 1) * TOWN_STATES;
+        int room = maxGold - gold;
+        double max = 0;
+        double best = -1;
+        byte bestMove = QUIT;
+
+        int needed = neededBits[terrain];
+        if (needed != 0 && (kit & needed) != 0) {
+            double value = currentArrivals[arrivalIndex(kit, gold)];
+            if (breakChance > 0) {
+                value = (1 - breakChance) * value + breakChance * previousArrivals[arrivalIndex(kit & ~needed, gold)];
+            }
+            max = value;
+            best = value;
+            bestMove = MOVE;
+        }
+
+        if (dugged == 0 && (kit & shovelBit) != 0) {
+            int dugIndex = index + 1;
+            double found = 0;
+            for (int amount = 1; amount <= digGoldChances.length; amount++) {
+                found += digGoldChances[amount - 1] * current[dugIndex + Math.min(amount, room) * TOWN_STATES];
+            }
+            double value = (1 - digChance) * current[dugIndex] + digChance * found;
+            max = Math.max(max, value);
+            if (value > best + EPSILON) {
+                best = value;
+                bestMove = DIG;
+            }
+        }
+
+        // finding no trouble changes nothing, so only the brawls matter
+        if (troubleChances[tough] > 0) {
+            double win = (kit & swordBit) != 0 ? 1 : winChances[tough];
+            double won = 0;
+            double lost = 0;
+            for (int stake = 1; stake <= brawlGoldChances.length; stake++) {
+                double chance = brawlGoldChances[stake - 1];
+                won += chance * current[index + Math.min(stake, room) * TOWN_STATES];
+                if (stake <= gold) {
+                    lost += chance * current[index - stake * TOWN_STATES];
+                }
+            }
+            double value = win * won + (1 - win) * lost;
+            max = Math.max(max, value);
+            if (value > best + EPSILON) {
+                best = value;
+                bestMove = TROUBLE;
+            }
+        }
+
+        // trading always changes the kit, so these come from the last sweep
+        boolean kitIsFull = Integer.bitCount(kit) >= kitSize;
+        for (int j = 0; j < items.length; j++) {
+            int bit = 1 << j;
+            int price = buyPrices[j];
+            if ((kit & bit) == 0 && !kitIsFull && price > 0 && gold >= price) {
+                double value = previous[index + bit * kitStride - price * TOWN_STATES];
+                max = Math.max(max, value);
+                if (value > best + EPSILON) {
+                    best = value;
+                    bestMove = (byte) (BUY + j);
+                }
+            }
+        }
+        for (int j = 0; j < items.length; j++) {
+            int bit = 1 << j;
+            if ((kit & bit) != 0 && sellPrices[j] > 0) {
+                double value = previous[index - bit * kitStride + Math.min(sellPrices[j], room) * TOWN_STATES];
+                max = Math.max(max, value);
+                if (value > best + EPSILON) {
+                    best = value;
+                    bestMove = (byte) (BUY + items.length + j);
+                }
+            }
+        }
+
+        if (max == 0) {
+            bestMove = QUIT;
+        }
+        currentPolicy[index] = bestMove;
+        return max;
+    }
+
+    /**
+     * @return The chance of winning on arriving in a new town, before its terrain, toughness and treasure are known.
+     */
+    private double arrivalValue(int kit, int gold) {
+        double value = 0;
+        for (int terrain = 0; terrain < TERRAINS.length; terrain++) {
+            if (terrainChances[terrain] == 0) {
+                continue;
+            }
+            for (int tough = 0; tough < 2; tough++) {
+                double chance = terrainChances[terrain] * (tough == 1 ? toughChance : 1 - toughChance);
+                if (chance > 0) {
+                    value += chance * huntValue(currentTreasures, townIndex(kit, gold, terrain, tough, 0), current);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param treasures The treasures held before hunting.
+     * @param index The town after it has been searched.
+     * @param sameTreasures The chances for the treasures held before hunting.
+     * @return The chance of winning after hunting in a town whose treasure isn't known yet.
+     */
+    private double huntValue(int treasures, int index, double[] sameTreasures) {
+        double value = noTreasureChance * sameTreasures[index];
+        for (int x = 0; x < goal.length; x++) {
+            int found = treasures | (1 << x);
+            if (found == treasures) {
+                value += goalChances[x] * sameTreasures[index];
+            } else if (found == allTreasures) {
+                value += goalChances[x];
+            } else {
+                value += goalChances[x] * values[found][index];
+            }
+        }
+        return value;
+    }
+
+    private int townIndex(int kit, int gold, int terrain, int tough, int dugged) {
+        return (((kit * (maxGold + 1) + gold) * TERRAINS.length + terrain) * 2 + tough) * 2 + dugged;
+    }
+
+    /**
+     * @return The game's situation, with any gold above the cap thrown away. Whether the town was searched is left out.
+     */
+    private int townIndex(GameView game) {
+        return townIndex(kitOf(game), Math.min(game.getGold(), maxGold), game.getTerrain().ordinal(),
+                game.isToughTown() ? 1 : 0, game.isDugged() ? 1 : 0);
+    }
+
+    private int arrivalIndex(int kit, int gold) {
+        return kit * (maxGold + 1) + gold;
+    }
+
+    /**
+     * @return The item's kit bit, or 0 if a kit can never hold it.
+     */
+    private int bitOf(Item item) {
+        for (int j = 0; j < items.length; j++) {
+            if (items[j] == item) {
+                return 1 << j;
+            }
+        }
+        return 0;
+    }
+
+    private int kitOf(GameView game) {
+        int kit = 0;
+        for (int j = 0; j < items.length; j++) {
+            if (game.hasItem(items[j])) {
+                kit |= 1 << j;
+            }
+        }
+        return kit;
+    }
+
+    private int treasuresOf(GameView game) {
+        int treasures = 0;
+        for (int x = 0; x < goal.length; x++) {
+            if (game.hasTreasure(goal[x])) {
+                treasures |= 1 << x;
+            }
+        }
+        return treasures;
+    }
+
+    /**
+     * A range of kits swept by one fork-join task, split in half until it is small enough.
+     */
+    private class Sweep extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private int start;
+        private int end;
+
+        Sweep(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Double compute() {
+            if (end - start <= KITS_PER_TASK) {
+                double change = 0;
+                for (int kit = start; kit < end; kit++) {
+                    change = Math.max(change, sweepKit(kit));
+                }
+                return change;
+            }
+
+            int middle = (start + end) / 2;
+            Sweep left = new Sweep(start, middle);
+            left.fork();
+            double right = new Sweep(middle, end).compute();
+            return Math.max(right, left.join());
+        }
+    }
+
+    public static void main(String[] args) {
+        GameMode[] modes = GameMode.values();
+        int maxGold = DEFAULT_MAX_GOLD;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 0 && !args[0].equals("all")) {
+            modes = new GameMode[] {GameMode.valueOf(args[0].toUpperCase())};
+        }
+        if (args.length > 1) {
+            maxGold = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            threads = Integer.parseInt(args[2]);
+        }
+
+        for (GameMode mode : modes) {
+            TreasureHunterSolver solver = new TreasureHunterSolver(mode, maxGold, threads);
+            long startTime = System.nanoTime();
+            solver.solve();
+            long elapsed = System.nanoTime() - startTime;
+            solver.shutdown();
+
+            System.out.println(mode + ": " + String.format("%.2f", solver.getWinChance() * 100)
+                    + "% chance to win with perfect play (" + solver.getStateCount() + " situations, "
+                    + solver.getSweeps() + " sweeps, " + (elapsed / 1000000) + " ms)");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The TreasureHunterSweep plays a huge number of games across several modes with the SimpleStrategy and keeps
+ * per-mode running stats (see ModeStats), printing a report every few seconds while the sweep is still going.<p>
+ * Nothing is kept per game, so even a billion-game sweep runs in a few megabytes. Each thread claims
+ * GAMES_PER_CHUNK games at a time, adds them up in its own SweepStats, and merges that into the shared totals
+ * once per chunk, so threads only meet once every thousand or so games.<p>
+ * Game number i is played in mode (i mod number of modes) and seeded with (seed + i).<p>
+ * Usage: java TreasureHunterSweep [games] [modes] [threads] [seed] [report seconds]<br>
+ * e.g. java TreasureHunterSweep 1000000000 easy,normal,hard,samurai,test 8 42 30
+ */
+
+public class TreasureHunterSweep {
+    // constants
+    private static final int GAMES_PER_CHUNK = 1024;
+    private static final Strategy BOT = new SimpleStrategy();
+
+    // instance variables
+    private GameMode[] modes;
+    private long games;
+    private long seed;
+    private AtomicLong nextGame;
+    private SweepStats totals; // guarded by itself
+
+    /**
+     * Creates a sweep.
+     *
+     * @param modes The modes played, taking turns.
+     * @param games The number of games to play.
+     * @param seed The seed of the first game.
+     */
+    public TreasureHunterSweep(GameMode[] modes, long games, long seed) {
+        this.modes = modes;
+        this.games = games;
+        this.seed = seed;
+        nextGame = new AtomicLong();
+        totals = new SweepStats();
+    }
+
+    /**
+     * Plays chunks of games until every game has been claimed. Call this from every worker thread.
+     */
+    public void work() {
+        SweepStats local = new SweepStats();
+        while (true) {
+            long start = nextGame.getAndAdd(GAMES_PER_CHUNK);
+            if (start >= games) {
+                return;
+            }
+            long end = Math.min(games, start + GAMES_PER_CHUNK);
+            for (long i = start; i < end; i++) {
+                TreasureHunterSimulator.playGame(modes[(int) (i % modes.length)], seed + i, BOT, null, local);
+            }
+            synchronized (totals) {
+                totals.merge(local);
+            }
+            local.reset();
+        }
+    }
+
+    /**
+     * @return A copy of the totals of every chunk finished so far.
+     */
+    public SweepStats snapshot() {
+        synchronized (totals) {
+            return new SweepStats().merge(totals);
+        }
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = 10000000;
+        GameMode[] modes = GameMode.values();
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        long reportSeconds = 10;
+        // only throughput matters here, so actions are counted but not timed
+        GameMetrics.setTiming(false);
+        if (args.length > 0) {
+            games = Long.parseLong(args[0]);
+        }
+        if (args.length > 1) {
+            String[] names = args[1].split(",");
+            modes = new GameMode[names.length];
+            for (int i = 0; i < names.length; i++) {
+                modes[i] = GameMode.valueOf(names[i].toUpperCase());
+            }
+        }
+        if (args.length > 2) {
+            threads = Integer.parseInt(args[2]);
+        }
+        if (args.length > 3) {
+            seed = Long.parseLong(args[3]);
+        }
+        if (args.length > 4) {
+            reportSeconds = Long.parseLong(args[4]);
+        }
+
+        TreasureHunterSweep sweep = new TreasureHunterSweep(modes, games, seed);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.execute(sweep::work);
+        }
+        workers.shutdown();
+
+        System.out.println("Games: " + games + ", threads: " + threads + ", seed: " + seed);
+        long startTime = System.nanoTime();
+        while (!workers.awaitTermination(reportSeconds, TimeUnit.SECONDS)) {
+            SweepStats stats = sweep.snapshot();
+            long elapsed = System.nanoTime() - startTime;
+            System.out.println("--- " + stats.getGames() + " of " + games + " games after " + (elapsed / 1000000000)
+                    + " s (" + (long) (stats.getGames() / (elapsed / 1e9)) + " games/s)");
+            System.out.print(stats);
+        }
+        long elapsed = System.nanoTime() - startTime;
+        System.out.println("=== Final, after " + (elapsed / 1000000) + " ms");
+        System.out.print(sweep.snapshot());
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The TreasureHunterTournament plays the same seeded games with several strategies and compares how they do.<p>
+ * Every strategy plays game i with seed (seed + i), so they all face the same luck.
+ * Games are split between the cores with a fork-join pool; each task adds up its own games in its own
+ * SimulationStats and the totals are merged on the way back up, so threads never share a counter.<p>
+ * Strategies: simple (see SimpleStrategy), optimal (see OptimalStrategy, solved once per mode before playing)
+ * and mcts (see MonteCarloStrategy, which searches before every move, so give it far fewer games).<p>
+ * Usage: java TreasureHunterTournament [games] [strategies] [modes] [threads] [seed]<br>
+ * e.g. java TreasureHunterTournament 1000000 simple,optimal normal,hard
+ */
+
+public class TreasureHunterTournament {
+    // constants
+    private static final int GAMES_PER_TASK = 1024;
+
+    // instance variables
+    private long seed;
+    private int threads;
+    private ForkJoinPool pool;
+
+    /**
+     * Creates a tournament.
+     *
+     * @param threads The number of threads to play games on.
+     * @param seed The seed of the first game.
+     */
+    public TreasureHunterTournament(int threads, long seed) {
+        this.threads = threads;
+        this.seed = seed;
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Plays the given number of games with one strategy in one mode.
+     *
+     * @param strategy The strategy picking every move.
+     * @param mode The difficulty mode.
+     * @param games The number of games to play.
+     * @return The combined stats of all the games, with their gold curves.
+     */
+    public SimulationStats run(Strategy strategy, GameMode mode, long games) {
+        return pool.invoke(new GameBatch(strategy, mode, 0, games));
+    }
+
+    /**
+     * Shuts down the tournament's threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Looks up a strategy by name.
+     *
+     * @param name "simple", "optimal" or "mcts".
+     * @param mode The mode the strategy will play.
+     * @return The strategy.
+     * @throws IllegalArgumentException If there is no strategy with that name.
+     */
+    public Strategy strategyFor(String name, GameMode mode) {
+        if (name.equals("simple")) {
+            return new SimpleStrategy();
+        } else if (name.equals("optimal")) {
+            TreasureHunterSolver solver = new TreasureHunterSolver(mode, TreasureHunterSolver.DEFAULT_MAX_GOLD, threads);
+            solver.solve();
+            solver.shutdown();
+            return new OptimalStrategy(solver);
+        } else if (name.equals("mcts")) {
+            return new MonteCarloStrategy(MonteCarloStrategy.DEFAULT_ITERATIONS, seed);
+        }
+        throw new IllegalArgumentException("Unknown strategy: " + name);
+    }
+
+    /**
+     * A range of games played by one fork-join task, split in half until it is small enough.
+     */
+    private class GameBatch extends RecursiveTask<SimulationStats> {
+        private static final long serialVersionUID = 1L;
+
+        private Strategy strategy;
+        private GameMode mode;
+        private long start;
+        private long end;
+
+        GameBatch(Strategy strategy, GameMode mode, long start, long end) {
+            this.strategy = strategy;
+            this.mode = mode;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (end - start <= GAMES_PER_TASK) {
+                SimulationStats stats = new SimulationStats();
+                for (long i = start; i < end; i++) {
+                    stats.record(TreasureHunterSimulator.playGame(mode, seed + i, strategy, stats));
+                }
+                return stats;
+            }
+
+            long middle = (start + end) / 2;
+            GameBatch left = new GameBatch(strategy, mode, start, middle);
+            left.fork();
+            SimulationStats right = new GameBatch(strategy, mode, middle, end).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = 100000;
+        String[] strategies = {"simple", "optimal"};
+        String[] modes = {"easy", "normal", "hard"};
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        // only throughput matters here, so actions are counted but not timed
+        GameMetrics.setTiming(false);
+        if (args.length > 0) {
+            games = Long.parseLong(args[0]);
+        }
+        if (args.length > 1) {
+            strategies = args[1].split(",");
+        }
+        if (args.length > 2) {
+            modes = args[2].split(",");
+        }
+        if (args.length > 3) {
+            threads = Integer.parseInt(args[3]);
+        }
+        if (args.length > 4) {
+            seed = Long.parseLong(args[4]);
+        }
+
+        TreasureHunterTournament tournament = new TreasureHunterTournament(threads, seed);
+        System.out.println("Games: " + games + ", threads: " + threads + ", seed: " + seed);
+        for (String modeName : modes) {
+            GameMode mode = GameMode.valueOf(modeName.trim().toUpperCase());
+            for (String name : strategies) {
+                Strategy strategy = tournament.strategyFor(name.trim(), mode);
+                long startTime = System.nanoTime();
+                SimulationStats stats = tournament.run(strategy, mode, games);
+                long elapsed = System.nanoTime() - startTime;
+
+                System.out.println();
+                System.out.println(strategy.getName() + " in " + mode + " (" + (elapsed / 1000000) + " ms)");
+                System.out.println(stats);
+                System.out.println("Gold by turn:");
+                System.out.print(stats.getGoldCurve());
+            }
+        }
+        tournament.shutdown();
+    }
+}
@@ -0,0 +1,126 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The VisitedTowns remember which towns of a world have been searched or dug, so the towns themselves don't have
+ * to be kept: any other town can be made again from the world seed (see WorldMap.makeTown()).<p>
+ * Only towns where something happened take any room, 9 bytes each in an open-addressing table.
+ * Not safe to use from more than one thread at once.
+ */
+
+public class VisitedTowns {
+    // constants
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final int INITIAL_TABLE_BITS = 6;
+
+    // instance variables
+    private long[] visitedIds;
+    private byte[] visitedFlags; // 0 marks an empty slot
+    private int visitedCount;
+    private int tableBits;
+
+    /**
+     * Creates a table where no town has been searched or dug yet.
+     */
+    public VisitedTowns() {
+        tableBits = INITIAL_TABLE_BITS;
+        visitedIds = new long[1 << tableBits];
+        visitedFlags = new byte[1 << tableBits];
+        visitedCount = 0;
+    }
+
+    /**
+     * Remembers whether a town has been searched or dug. Towns with nothing to remember take no room.
+     *
+     * @param townId The town's id.
+     * @param flags The town's flags, from Town.getVisitFlags().
+     */
+    public void remember(long townId, int flags) {
+        if (flags == 0) {
+            return;
+        }
+        int slot = slotFor(townId);
+        if (visitedFlags[slot] == 0) {
+            visitedIds[slot] = townId;
+            visitedCount++;
+        }
+        visitedFlags[slot] = (byte) flags;
+
+        if (visitedCount * 2 > visitedIds.length) {
+            growTable();
+        }
+    }
+
+    /**
+     * @param townId The town's id.
+     * @return The flags remembered for a town, or 0 if it has never been searched or dug.
+     */
+    public int recall(long townId) {
+        return visitedFlags[slotFor(townId)];
+    }
+
+    /**
+     * Reads back the towns written with writeTo().
+     *
+     * @param saved The saved game, positioned at the towns.
+     */
+    public void readFrom(ByteBuffer saved) {
+        int count = saved.getInt();
+        for (int i = 0; i < count; i++) {
+            remember(saved.getLong(), saved.get());
+        }
+    }
+
+    /**
+     * Saves the number of towns, then each town's id and flags.
+     *
+     * @param save Where the towns are written; it needs getSavedSize() bytes.
+     */
+    public void writeTo(ByteBuffer save) {
+        save.putInt(visitedCount);
+        for (int slot = 0; slot < visitedIds.length; slot++) {
+            if (visitedFlags[slot] != 0) {
+                save.putLong(visitedIds[slot]);
+                save.put(visitedFlags[slot]);
+            }
+        }
+    }
+
+    // accessors
+    public int getCount() {
+        return visitedCount;
+    }
+
+    /**
+     * @return The bytes writeTo() writes.
+     */
+    public int getSavedSize() {
+        return 4 + 9 * visitedCount;
+    }
+
+    /**
+     * @return The town's slot in the table, or the empty slot where it would go.
+     */
+    private int slotFor(long townId) {
+        int mask = visitedIds.length - 1;
+        int slot = (int) ((townId * GOLDEN_GAMMA) >>> (64 - tableBits));
+        while (visitedFlags[slot] != 0 && visitedIds[slot] != townId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growTable() {
+        long[] oldIds = visitedIds;
+        byte[] oldFlags = visitedFlags;
+        tableBits++;
+        visitedIds = new long[1 << tableBits];
+        visitedFlags = new byte[1 << tableBits];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldFlags[i] != 0) {
+                int slot = slotFor(oldIds[i]);
+                visitedIds[slot] = oldIds[i];
+                visitedFlags[slot] = oldFlags[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The WorldMap is an endless grid of towns that stay where they are, so a hunter can head back to a town
+ * they have already visited and find it just as they left it.<p>
+ * Every town is made from the world seed and its place on the grid, so the same world always has the same
+ * terrain, toughness and treasure in the same places, no matter which way the hunter wanders. The only thing
+ * that has to be remembered about a town is whether it has been searched or dug, and only for towns where
+ * that happened, in a table of 9 bytes per town (see VisitedTowns). The most recently visited towns are also
+ * kept whole in a small LRU cache; a town that falls out of the cache is made again from the seed when the
+ * hunter returns.<p>
+ * Towns are numbered by their place on the grid, see townId().
+ */
+
+public class WorldMap {
+    // constants
+    public static final int DEFAULT_CACHE_SIZE = 64;
+    public static final long ORIGIN = 0; // the town at (0, 0), where every hunter starts
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // instance variables
+    private long worldSeed;
+    private GameMode mode;
+    private Shop shop;
+    private GameRandom random;
+    private PrintStream out;
+    private GameRandom generator; // re-seeded for every town that is made
+    private LinkedHashMap<Long, Town> cache;
+    private VisitedTowns visited; // towns that have been searched or dug
+
+    /**
+     * Creates a world where no town has been visited yet.
+     *
+     * @param worldSeed The seed every town is made from.
+     * @param mode The game's mode.
+     * @param shop The shop every town shares.
+     * @param random The game's random number generator, used for every roll in town.
+     * @param out Where the results of hunting and digging are printed.
+     * @param cacheSize The most towns kept whole at once.
+     */
+    public WorldMap(long worldSeed, GameMode mode, Shop shop, GameRandom random, PrintStream out, final int cacheSize) {
+        this.worldSeed = worldSeed;
+        this.mode = mode;
+        this.shop = shop;
+        this.random = random;
+        this.out = out;
+        generator = new GameRandom(0);
+        cache = new LinkedHashMap<Long, Town>(cacheSize * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Town> eldest) {
+                if (size() > cacheSize) {
+                    visited.remember(eldest.getKey(), eldest.getValue().getVisitFlags());
+                    return true;
+                }
+                return false;
+            }
+        };
+        visited = new VisitedTowns();
+    }
+
+    /**
+     * Reads a world saved with writeTo().
+     *
+     * @param saved The saved game, positioned at the world.
+     * @param mode The game's mode.
+     * @param shop The shop every town shares.
+     * @param random The game's random number generator, used for every roll in town.
+     * @param out Where the results of hunting and digging are printed.
+     * @param cacheSize The most towns kept whole at once.
+     * @return The saved world.
+     */
+    public static WorldMap readFrom(ByteBuffer saved, GameMode mode, Shop shop, GameRandom random, PrintStream out,
+                                    int cacheSize) {
+        WorldMap world = new WorldMap(saved.getLong(), mode, shop, random, out, cacheSize);
+        world.visited.readFrom(saved);
+        return world;
+    }
+
+    /**
+     * Saves the world: its seed and which towns have been searched or dug.
+     *
+     * @param save Where the world is written; it needs getSavedSize() bytes.
+     */
+    public void writeTo(ByteBuffer save) {
+        for (Map.Entry<Long, Town> entry : cache.entrySet()) {
+            visited.remember(entry.getKey(), entry.getValue().getVisitFlags());
+        }
+        save.putLong(worldSeed);
+        visited.writeTo(save);
+    }
+
+    /**
+     * @return The most bytes writeTo() can write.
+     */
+    public int getSavedSize() {
+        return 8 + visited.getSavedSize() + 9 * cache.size();
+    }
+
+    /**
+     * Numbers a place on the grid.
+     *
+     * @param x How far east the town is from the first town.
+     * @param y How far north the town is from the first town.
+     * @return The town's id.
+     */
+    public static long townId(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int getX(long townId) {
+        return (int) (townId >> 32);
+    }
+
+    public static int getY(long townId) {
+        return (int) townId;
+    }
+
+    /**
+     * @param townId A town.
+     * @param direction The way the hunter is heading.
+     * @return The id of the next town that way.
+     */
+    public static long neighbor(long townId, Direction direction) {
+        return townId(getX(townId) + direction.getDx(), getY(townId) + direction.getDy());
+    }
+
+    /**
+     * Finds a town, making it from the seed if it isn't in the cache.
+     *
+     * @param townId The town's id.
+     * @return The town, searched and dug if it was before.
+     */
+    public Town townAt(long townId) {
+        Town town = cache.get(townId);
+        if (town == null) {
+            town = makeTown(townId);
+            town.setVisitFlags(visited.recall(townId));
+            cache.put(townId, town);
+        }
+        return town;
+    }
+
+    // accessors
+    public long getWorldSeed() {
+        return worldSeed;
+    }
+
+    /**
+     * @return The number of towns kept whole in the cache.
+     */
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * @return The number of towns remembered as searched or dug, not counting towns only in the cache.
+     */
+    public int getVisitedCount() {
+        return visited.getCount();
+    }
+
+    /**
+     * Makes a town from the world seed and its id. The town's own draws never touch the game's random numbers,
+     * but they are traced with the game's decisions.
+     */
+    private Town makeTown(long townId) {
+        generator.setTrace(random.getTrace());
+        return makeTown(worldSeed, townId, mode, generator, shop, random, out);
+    }
+
+    /**
+     * Makes a town from a world seed and its id, the same way for every world made from that seed.
+     *
+     * @param generator A generator that is re-seeded for the town; the game's random numbers aren't touched.
+     *                  The town's treasure, terrain and toughness are traced to its trace, if it has one.
+     * @param shop The town's shoppe.
+     * @param random The random number generator of the town's own visit.
+     * @param out Where the results of the town's own visit are printed.
+     */
+    static Town makeTown(long worldSeed, long townId, GameMode mode, GameRandom generator, Shop shop,
+                         GameRandom random, PrintStream out) {
+        TownOdds odds = TownOdds.forMode(mode);
+        generator.setState(worldSeed ^ (townId * GOLDEN_GAMMA));
+        Treasure treasure = odds.pickTreasure(generator);
+        Terrain terrain = odds.pickTerrain(generator);
+        double roll = generator.nextDouble();
+        boolean toughTown = roll < mode.getToughness();
+        SessionTrace trace = generator.getTrace();
+        if (trace != null) {
+            trace.record(TraceEvent.TREASURE, treasure.ordinal());
+            trace.record(TraceEvent.TERRAIN, terrain.ordinal());
+            trace.record(TraceEvent.TOUGH_TOWN, roll, mode.getToughness(), toughTown ? 1 : 0);
+        }
+        return new Town(shop, mode, terrain, toughTown, treasure, random, out);
+    }
+}
\ No newline at end of file